@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares recognizing the air date cells of a season with {@link DateRecognizer} against extracting the bracket with
+ * a regular expression and parsing it with {@link Utils#parseDate(String, DateTimeFormatter...)}<br>
+ * Run with {@code gradle jmh}
+ * @author mithun.gonsalvez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateRecognizerBenchmark {
+
+  /** Same as the pattern the parser extracted the dates with */
+  private static final Pattern IN_BRACKET = Pattern.compile("\\((.+?)\\)");
+
+  /** Shape of the air date cells of the season */
+  @Param({"bracketed", "plain", "mixed"})
+  public String shape;
+
+  /** Air date cells of a season */
+  private String[] cells;
+
+  /** Standard error, which the formatters report to when a date does not parse */
+  private PrintStream err;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    switch (this.shape) {
+      case "bracketed":
+        this.cells = new String[]{"October 1, 2011 (2011-10-01)", "October 8, 2011 (2011-10-08)",
+            "October 15, 2011 (2011-10-15)", "October 22, 2011 (2011-10-22)"};
+        break;
+      case "plain":
+        this.cells = new String[]{"October 1, 2011", "October 8, 2011", "October 15, 2011", "October 22, 2011"};
+        break;
+      default:
+        this.cells = new String[]{"October 1, 2011 (2011-10-01)", "May 2012", "2013", "TBA"};
+        break;
+    }
+    this.err = System.err;
+    System.setErr(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+        // discarded
+      }
+    }));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.setErr(this.err);
+  }
+
+  @Benchmark
+  public void formatters(Blackhole blackhole) {
+    for (String cell : this.cells) {
+      Matcher matcher = IN_BRACKET.matcher(cell);
+      blackhole.consume(Utils.parseDate(matcher.find() ? matcher.group(1) : cell, (DateTimeFormatter) null));
+    }
+  }
+
+  @Benchmark
+  public void recognizer(Blackhole blackhole) {
+    DateRecognizer recognizer = new DateRecognizer(-1);
+    for (String cell : this.cells) {
+      blackhole.consume(recognizer.recognizeCell(cell));
+    }
+  }
+
+}
@@ -76,7 +76,7 @@ public class Episode implements Comparable<Episode> {
    * @param temporal temporal to be converted
    * @return LocalDate
    */
-  private LocalDate toLocalDate(Temporal temporal) {
+  static LocalDate toLocalDate(Temporal temporal) {
     LocalDate iLocalDate;
     if (temporal instanceof LocalDate) {
       iLocalDate = (LocalDate) temporal;
@@ -14,6 +14,9 @@
 
 package me.mikujo.series;
 
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -22,6 +25,7 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
+import java.util.regex.Pattern;
 
 /**
  * Main class that starts everything
@@ -42,7 +46,12 @@ public class Main {
     Path cacheDir = null;
     String outputFormat = null;
     boolean offline = false;
+    boolean refreshAll = false;
+    boolean stale = false;
+    boolean prefetch = false;
     boolean purgeCache = false;
+    boolean migrateCache = false;
+    Pattern purgePattern = null;
 
     for (int i = 0; i < args.length; i++) {
       String arg = args[i].toLowerCase();
@@ -64,9 +73,24 @@ public class Main {
       } else if (arg.equals("-offline")) {
         offline = true;
 
+      } else if (arg.equals("-refreshall")) {
+        refreshAll = true;
+
+      } else if (arg.equals("-stale")) {
+        stale = true;
+
+      } else if (arg.equals("-prefetch")) {
+        prefetch = true;
+
       } else if (arg.equals("-purgecache")) {
         purgeCache = true;
 
+      } else if (arg.equals("-migratecache")) {
+        migrateCache = true;
+
+      } else if (arg.equals("-purge")) {
+        purgePattern = Pattern.compile(fetch("-purge", ++i, args), Pattern.CASE_INSENSITIVE);
+
       } else {
         throw new IllegalArgumentException("Unknown argument [" + args[i] + "], all arguments: [" + Arrays.toString(args) + "]");
       }
@@ -90,8 +114,30 @@ public class Main {
       });
     }
 
-    SeriesTracker tracker = new SeriesTracker(seriesList, watchedList, output, cacheDir, outputFormat, offline);
-    tracker.process();
+    // drop the cached pages of a few series (by title or URL), leaving the rest of the cache intact
+    if (purgePattern != null) {
+      try (PageCache wikiCache = PageCache.open(cacheDir.resolve(Keyz.TYPE_WIKI))) {
+        int count = wikiCache.purge(purgePattern);
+        System.out.println("Purged [" + count + "] cached pages matching [" + purgePattern + "]");
+      }
+    }
+
+    // pages cached before they were stored compressed remain readable, but only a migration reclaims the space
+    if (migrateCache) {
+      try (PageCache wikiCache = PageCache.open(cacheDir.resolve(Keyz.TYPE_WIKI))) {
+        int count = wikiCache.migrate();
+        System.out.println("Migrated [" + count + "] cached pages to codec [" + wikiCache.getCodec().getName() + "]");
+      }
+    }
+
+    // a prefetch only fills the cache, so that the runs that follow can be run offline
+    SeriesTracker tracker = new SeriesTracker(seriesList, watchedList, output, cacheDir, outputFormat,
+            offline && !prefetch, refreshAll, stale);
+    if (prefetch) {
+      tracker.prefetch();
+    } else {
+      tracker.process();
+    }
   }
 
   private static String fetch(String key, int nextPos, String[] args) {
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series;
+
+import me.mikujo.series.utils.Tuple2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the output progressively, i.e. the block of a series is written as soon as it is known to come before the
+ * series that are yet to be processed, so that the most urgent series show up first in the output without waiting for
+ * the rest<br>
+ * Where the series that are yet to be processed would go is predicted out of the episodes parsed by the last run. A
+ * series whose prediction turns out to be wrong (e.g. the page has changed), or cannot be made (e.g. the page is not
+ * cached) can make the blocks written so far out of order, in which case the output is rewritten as a whole, see
+ * {@link #finish(String)}
+ * @author mithun.gonsalvez
+ */
+class ProgressiveOutput {
+
+  /**
+   * Renders the block of a single series
+   */
+  interface Renderer {
+
+    /**
+     * Render the block of the series
+     * @param series Series along with the first episode that passes the filter of the series
+     * @return Block of the series
+     * @throws IOException If there is a problem while rendering the data
+     */
+    String render(Tuple2<Series, Episode> series) throws IOException;
+
+  }
+
+  /** Output file path */
+  private final Path output;
+
+  /** Expected position of each series (by its position in the input), null where it is not known */
+  private final List<Tuple2<Series, Episode>> predictions;
+
+  /** Renders the block of a single series */
+  private final Renderer renderer;
+
+  /** Order of the output */
+  private final SeriesComparator comparator = new SeriesComparator();
+
+  /** Series (by their position in the input) that have not been processed yet */
+  private final Set<Integer> pending = new TreeSet<>();
+
+  /** Series (by their position in the input) that have been processed but not written yet, in the output order */
+  private final TreeSet<Integer> ready;
+
+  /** Series processed so far, by their position in the input */
+  private final Tuple2<Series, Episode>[] processed;
+
+  /** Output written so far */
+  private final StringBuilder written = new StringBuilder();
+
+  /**
+   * Constructor
+   * @param output Output file path
+   * @param predictions Expected position of each series (by its position in the input), as the series along with the
+   * first episode that passes its filter, null where it is not known
+   * @param renderer Renders the block of a single series
+   */
+  @SuppressWarnings("unchecked")
+  ProgressiveOutput(Path output, List<Tuple2<Series, Episode>> predictions, Renderer renderer) {
+    this.output = output;
+    this.predictions = predictions;
+    this.renderer = renderer;
+    this.processed = new Tuple2[predictions.size()];
+    for (int i = 0; i < predictions.size(); i++) {
+      this.pending.add(i);
+    }
+    // the output is sorted with a stable sort, so series that compare equal retain the order of the input
+    Comparator<Integer> order = (a, b) -> {
+      int result = this.comparator.compare(this.processed[a], this.processed[b]);
+      return result == 0 ? Integer.compare(a, b) : result;
+    };
+    this.ready = new TreeSet<>(order);
+  }
+
+  /**
+   * Record a series that has been processed, and write the blocks of the series that are known to come next
+   * @param index Position of the series in the input
+   * @param series Series along with the first episode that passes the filter of the series, null if the series
+   * cannot be processed (it is then left out of the output)
+   * @throws IOException If there is a problem while writing the data
+   */
+  void processed(int index, Tuple2<Series, Episode> series) throws IOException {
+    this.pending.remove(index);
+    if (series != null) {
+      this.processed[index] = series;
+      this.ready.add(index);
+    }
+    while (!this.ready.isEmpty() && isNext(this.ready.first())) {
+      String block = this.renderer.render(this.processed[this.ready.pollFirst()]);
+      write(block);
+      this.written.append(block);
+    }
+  }
+
+  /**
+   * Complete the output, once all the series have been processed
+   * @param output Output as a whole
+   * @return true, if the output has been completed, false if nothing has been written yet or the blocks written so
+   * far are out of order, in which case the output is to be written as a whole
+   * @throws IOException If there is a problem while writing the data
+   */
+  boolean finish(String output) throws IOException {
+    if (this.written.length() == 0) {
+      return false;
+    }
+    if (!output.startsWith(this.written.toString())) {
+      System.err.println("The order of the series changed as they were refreshed, rewriting the output");
+      return false;
+    }
+    write(output.substring(this.written.length()));
+    return true;
+  }
+
+  /**
+   * Append to the output file, the output file is replaced by the first block written
+   * @param data Data to append
+   * @throws IOException If there is a problem while writing the data
+   */
+  private void write(String data) throws IOException {
+    OpenOption mode = this.written.length() == 0 ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+    try (Writer writer = Files.newBufferedWriter(this.output, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, mode)) {
+      writer.write(data);
+    }
+  }
+
+  /**
+   * Check if the series comes before all the series that have not been processed yet
+   * @param index Position of the series in the input
+   * @return true, if the series comes next in the output
+   */
+  private boolean isNext(int index) {
+    for (int pendingIndex : this.pending) {
+      Tuple2<Series, Episode> prediction = this.predictions.get(pendingIndex);
+      if (prediction == null) {
+        return false;
+      }
+      int result = this.comparator.compare(this.processed[index], prediction);
+      if (result > 0 || (result == 0 && pendingIndex < index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
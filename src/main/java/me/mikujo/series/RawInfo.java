@@ -15,6 +15,7 @@
 package me.mikujo.series;
 
 import me.mikujo.series.utils.Configs;
+import me.mikujo.series.wiki.ColumnMatcher;
 
 import java.util.List;
 import java.util.Map;
@@ -29,12 +30,16 @@ public class RawInfo {
 
   private final Configs layoutConfig;
 
-  private final Map<String, List<String>> tableHints;
+  private final ColumnMatcher columnMatcher;
 
   public RawInfo(Map<String, Object> seriesInfo, Configs layoutConfig, Map<String, List<String>> tableHints) {
+    this(seriesInfo, layoutConfig, tableHints == null ? null : ColumnMatcher.compile(tableHints));
+  }
+
+  public RawInfo(Map<String, Object> seriesInfo, Configs layoutConfig, ColumnMatcher columnMatcher) {
     this.seriesInfo = seriesInfo;
     this.layoutConfig = layoutConfig;
-    this.tableHints = tableHints;
+    this.columnMatcher = columnMatcher;
   }
 
   public Map<String, Object> getSeriesInfo() {
@@ -46,7 +51,11 @@ public class RawInfo {
   }
 
   public Map<String, List<String>> getTableHints() {
-    return this.tableHints;
+    return this.columnMatcher == null ? null : this.columnMatcher.getHints();
+  }
+
+  public ColumnMatcher getColumnMatcher() {
+    return this.columnMatcher;
   }
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series;
+
+import me.mikujo.series.wiki.Keyz;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long the cached page of a series can be used before it has to be revalidated<br>
+ * Completed series are never revalidated, while the page of an active series is revalidated as often as its schedule
+ * suggests it may change: every run while an episode airs around now, and less often as the next known air date moves
+ * further away or is known only roughly (a month, a year, or not at all). Each series can override this through the
+ * setting {@link Keyz#REFRESH}, with 'always', 'never' or a duration such as '12h', '3d' or '2w'
+ * @author mithun.gonsalvez
+ */
+public class RefreshPolicy {
+
+  /** Revalidate the page on every run */
+  public static final String ALWAYS = "always";
+
+  /** Never revalidate the page once it is cached */
+  public static final String NEVER = "never";
+
+  /** Number of days around an air date, during which the page is revalidated on every run */
+  private static final int AIRING_DAYS = 7;
+
+  /** Number of days until the next air date, below which the page is revalidated daily */
+  private static final int SOON_DAYS = 30;
+
+  /** Number of days until the next air date, below which the page is revalidated every few days */
+  private static final int LATER_DAYS = 90;
+
+  /**
+   * Constructor
+   */
+  private RefreshPolicy() {
+  }
+
+  /**
+   * Returns how long the cached page of the series can be used before it has to be revalidated
+   * @param override Value of the setting {@link Keyz#REFRESH} of the series, can be null
+   * @param episodes Episodes parsed out of the cached page, can be null if they are not known
+   * @param today Today's date
+   * @return Maximum age (in millis) of the cached page
+   * @throws IllegalArgumentException If the override is not valid
+   */
+  public static long getMaxAge(Object override, List<List<Episode>> episodes, LocalDate today)
+          throws IllegalArgumentException {
+    if (override != null) {
+      return parse(override.toString());
+    } else if (episodes == null) {
+      return 0;
+    }
+
+    long nextDays = Long.MAX_VALUE; // days until the next air date known to the day
+    boolean roughlySoon = false; // an episode airs this month or the next
+    for (List<Episode> season : episodes) {
+      for (Episode episode : season) {
+        Temporal date = episode.date;
+        if (date instanceof LocalDate) {
+          long days = ChronoUnit.DAYS.between(today, (LocalDate) date);
+          if (Math.abs(days) <= AIRING_DAYS) {
+            return 0;
+          } else if (days > 0) {
+            nextDays = Math.min(nextDays, days);
+          }
+        } else if (date instanceof YearMonth) {
+          long months = ChronoUnit.MONTHS.between(YearMonth.from(today), (YearMonth) date);
+          roughlySoon |= months == 0 || months == 1;
+        }
+      }
+    }
+
+    if (nextDays <= SOON_DAYS || roughlySoon) {
+      return TimeUnit.DAYS.toMillis(1);
+    } else if (nextDays <= LATER_DAYS) {
+      return TimeUnit.DAYS.toMillis(3);
+    }
+    return TimeUnit.DAYS.toMillis(7); // months away, or known only by the year (if at all)
+  }
+
+  /**
+   * Parse the value of the setting {@link Keyz#REFRESH}
+   * @param value 'always', 'never', or a number followed by the unit h (hours), d (days) or w (weeks)
+   * @return Maximum age (in millis) of the cached page
+   * @throws IllegalArgumentException If the value is not valid
+   */
+  static long parse(String value) throws IllegalArgumentException {
+    String lcValue = value.trim().toLowerCase();
+    if (lcValue.equals(ALWAYS)) {
+      return 0;
+    } else if (lcValue.equals(NEVER)) {
+      return Long.MAX_VALUE;
+    }
+
+    try {
+      long amount = Long.parseLong(lcValue.substring(0, lcValue.length() - 1));
+      switch (lcValue.charAt(lcValue.length() - 1)) {
+        case 'h':
+          return TimeUnit.HOURS.toMillis(amount);
+        case 'd':
+          return TimeUnit.DAYS.toMillis(amount);
+        case 'w':
+          return TimeUnit.DAYS.toMillis(amount * 7);
+        default:
+          break;
+      }
+    } catch (NumberFormatException | StringIndexOutOfBoundsException ex) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid value [" + value + "] for [" + Keyz.REFRESH + "], expected one of ["
+            + ALWAYS + "], [" + NEVER + "] or a duration such as [12h], [3d] or [2w]");
+  }
+
+}
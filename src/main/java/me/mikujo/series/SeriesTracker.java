@@ -14,22 +14,41 @@
 
 package me.mikujo.series;
 
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.EpisodeCache;
+import me.mikujo.series.cache.PageCache;
 import me.mikujo.series.filters.IFilter;
 import me.mikujo.series.utils.Configs;
 import me.mikujo.series.utils.Tuple2;
 import me.mikujo.series.utils.Utils;
+import me.mikujo.series.wiki.ColumnMatcher;
 import me.mikujo.series.wiki.Keyz;
 import me.mikujo.series.wiki.WikiParser;
 import me.mikujo.series.writer.IFormatter;
 import me.mikujo.series.writer.TextFormatter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Series tracker class that ties up all the code together
@@ -38,6 +57,25 @@ import java.util.Map.Entry;
  */
 public class SeriesTracker {
 
+  /** Number of pages that are downloaded concurrently */
+  private static final int FETCH_THREADS = Integer.getInteger(Keyz.FETCH_THREADS, 4);
+
+  /** Number of pages that are parsed concurrently */
+  private static final int PARSE_THREADS = Integer.getInteger(Keyz.PARSE_THREADS,
+          Runtime.getRuntime().availableProcessors());
+
+  /** Number of threads the seasons of the pages are extracted on, 0 to extract them on the parse stage */
+  private static final int SEASON_THREADS = Integer.getInteger(Keyz.PARSE_SEASON_THREADS, 0);
+
+  /** Number of tasks that can wait for a stage before the previous stage is made to wait */
+  private static final int QUEUE_SIZE = Integer.getInteger(Keyz.PIPELINE_QUEUE_SIZE, 16);
+
+  /** Maximum size (in bytes) of the cached pages */
+  private static final long CACHE_MAX_SIZE = Long.getLong(Keyz.CACHE_MAX_SIZE, 256) * 1024 * 1024;
+
+  /** Maximum time (in millis) a cached page or parsed entry is retained after it was last used */
+  private static final long CACHE_MAX_AGE = TimeUnit.DAYS.toMillis(Long.getLong(Keyz.CACHE_MAX_AGE, 90));
+
   /**
    * Output file path
    */
@@ -63,6 +101,16 @@ public class SeriesTracker {
    */
   private final boolean offline;
 
+  /**
+   * Write the output out of the cached pages first, and rewrite it once the pages are revalidated if anything changed
+   */
+  private final boolean stale;
+
+  /**
+   * Revalidate the pages of all the series, regardless of the {@link RefreshPolicy}
+   */
+  private final boolean refreshAll;
+
   /**
    * Filters map for each series that we are interested in
    */
@@ -73,7 +121,7 @@ public class SeriesTracker {
    */
   private final Path cacheDir;
 
-  private final Map<String, Map<String, List<String>>> hints;
+  private final Map<String, ColumnMatcher> hints;
 
   /**
    * Series tracker constructor
@@ -84,16 +132,42 @@ public class SeriesTracker {
    * @param cacheDir     Cache directory
    * @param outputFormat Output format that defines the output format
    * @param offline      Use cached data if available, if data is not available, then connect and fetch data
+   * @param refreshAll   Revalidate the pages of all the series, regardless of the {@link RefreshPolicy}
+   * @param stale        Write the output out of the cached pages first, and rewrite it once the pages are
+   *                     revalidated if anything changed
    * @throws IOException If something goes wrong while reading the data
    */
-  public SeriesTracker(Path seriesList, Path watchedList, Path output, Path cacheDir, String outputFormat, boolean offline) throws IOException {
+  public SeriesTracker(Path seriesList, Path watchedList, Path output, Path cacheDir, String outputFormat,
+                       boolean offline, boolean refreshAll, boolean stale) throws IOException {
 
     Map<String, Object> rawData = Utils.readData(seriesList);
     Map<String, Map<String, Object>> rawFormats = Utils.cast(rawData, Keyz.FORMATS);
     List<Map<String, Object>> allSeries = Utils.cast(rawData, Keyz.SERIES);
+    List<Map<String, Object>> completedSeries = Utils.cast(rawData, Keyz.COMPLETED_SERIES);
+    if (completedSeries != null && Boolean.getBoolean(Keyz.OUTPUT_COMPLETED)) {
+      // completed series no longer change, so once cached, they need not be refreshed unless asked for
+      for (Map<String, Object> series : completedSeries) {
+        series.putIfAbsent(Keyz.REFRESH, RefreshPolicy.NEVER);
+        allSeries.add(series);
+      }
+    }
+    for (Map<String, Object> series : allSeries) {
+      Object refresh = series.get(Keyz.REFRESH);
+      try {
+        if (refresh != null) {
+          RefreshPolicy.parse(refresh.toString());
+        }
+      } catch (IllegalArgumentException ex) {
+        System.err.println("Refreshing [" + series.get(Keyz.TITLE) + "] as per its schedule: " + ex.getMessage());
+        series.remove(Keyz.REFRESH);
+      }
+    }
     Map<String, Map<String, List<String>>> hints = Utils.cast(rawData, Keyz.HINTS);
     // apply the lower-case transformation to each hint value
     hints.values().forEach(hint -> hint.values().forEach(vals -> vals.replaceAll(String::toLowerCase)));
+    // compile each set of hints once, to be shared by all the series that use it
+    Map<String, ColumnMatcher> matchers = new HashMap<>(hints.size());
+    hints.forEach((name, hint) -> matchers.put(name, ColumnMatcher.compile(hint)));
 
     Map<String, Object> userRawData = Utils.readData(watchedList);
     Map<String, IFilter<Episode>> filters = Utils.readFilters(userRawData);
@@ -104,54 +178,722 @@ public class SeriesTracker {
     this.allSeries = allSeries;
     this.filters = filters;
     this.formats = processFormats(rawFormats);
-    this.hints = hints;
+    this.hints = matchers;
     this.offline = offline;
+    this.refreshAll = refreshAll;
+    this.stale = stale;
   }
 
   /**
-   * Start processing
+   * Start processing<br>
+   * Each series goes through a fetch stage (network bound) followed by a parse stage (CPU bound), each stage runs on
+   * its own pool of threads and the stages are connected via bounded queues. A page that is downloaded is read into
+   * a document by the fetch stage as it arrives, leaving only the extraction of the episodes to the parse stage. Once
+   * every page has been read, the caches are compacted in the background while the output is written<br>
+   * Before anything is fetched, the cached pages that are due are revalidated in batches through the revisions of the
+   * pages, see {@link #revalidate(Map, PageCache, EpisodeCache)}<br>
+   * When serving stale data, the output is first rendered out of the cached pages alone, and is rewritten once the
+   * pages are revalidated only if any of the series changed
    *
    * @throws IOException If there is a problem while writing the data
    */
   public void process() throws IOException {
 
-    Path wikiDir = this.cacheDir.resolve(Keyz.TYPE_WIKI);
-    Files.createDirectories(wikiDir);
+    ExecutorService fetchPool = Utils.newBoundedExecutor("fetch", FETCH_THREADS, QUEUE_SIZE);
+    ExecutorService parsePool = Utils.newBoundedExecutor("parse", PARSE_THREADS, QUEUE_SIZE);
+    ExecutorService compactionPool = Utils.newBoundedExecutor("compaction", 1, 1);
+    ForkJoinPool seasonPool = SEASON_THREADS > 0 ? new ForkJoinPool(SEASON_THREADS) : null;
+    long partial = WikiParser.getPartialCount();
+    long fallbacks = WikiParser.getFallbackCount();
+    try (PageCache wikiCache = PageCache.open(this.cacheDir.resolve(Keyz.TYPE_WIKI))) {
+      EpisodeCache episodeCache = EpisodeCache.open(this.cacheDir.resolve(Keyz.PARSED));
+      Map<String, String> staleOutputs = null;
+      String staleOutput = null;
+      if (this.stale) {
+        staleOutputs = new HashMap<>();
+        staleOutput = processCached(wikiCache, episodeCache, parsePool, seasonPool, staleOutputs);
+      }
+
+      // nothing is fetched until every series is submitted and revalidated, see schedule(..)
+      int i = 0;
+      List<CompletableFuture<Series>> jobs = new ArrayList<>(this.allSeries.size());
+      List<Tuple2<Series, Episode>> predictions = new ArrayList<>(this.allSeries.size());
+      Map<String, SharedPage> pages = new HashMap<>();
+      for (Map<String, Object> rawSeries : this.allSeries) {
+        jobs.add(submit(rawSeries, i++, wikiCache, episodeCache, parsePool, seasonPool, pages, predictions));
+      }
+      revalidate(pages, wikiCache, episodeCache);
+      schedule(pages.values(), wikiCache, fetchPool);
+
+      // the output served from the cache is already in place, so it is rewritten only once everything is known
+      ProgressiveOutput progressive = null;
+      if (staleOutput == null) {
+        progressive = new ProgressiveOutput(this.output, predictions, this::render);
+      }
+      List<Tuple2<Series, Episode>> allSeries = collect(jobs, "they are missing from the output", progressive);
+
+      // the pages the run reads are evicted by age or size just like any other page, hence the compaction starts only
+      // once nothing is going to be read out of the caches anymore
+      CompletableFuture<Void> compaction = CompletableFuture.runAsync(() -> compact(wikiCache, episodeCache),
+              compactionPool);
+      try {
+        finish(allSeries, progressive, staleOutput, staleOutputs, WikiParser.getPartialCount() - partial,
+                WikiParser.getFallbackCount() - fallbacks);
+      } finally {
+        // the compaction works on the cache, so it must be over before the cache is closed, also if the run failed
+        awaitCompaction(compaction);
+      }
+    } finally {
+      fetchPool.shutdownNow();
+      parsePool.shutdownNow();
+      compactionPool.shutdownNow();
+      if (seasonPool != null) {
+        seasonPool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Render the output of the series and write it, unless the output served from the cache is up to date
+   *
+   * @param allSeries    Series along with the first episode that passes the filter of the series
+   * @param progressive  Output written progressively, null when serving stale data
+   * @param staleOutput  Output served from the cache, null when not serving stale data
+   * @param staleOutputs Output of each series served from the cache, keyed by the title of the series
+   * @param partial      Number of pages whose episodes were extracted without reading them into a document
+   * @param fallbacks    Number of pages that had to be read into a document
+   * @throws IOException If there is a problem while writing the data
+   */
+  private void finish(List<Tuple2<Series, Episode>> allSeries, ProgressiveOutput progressive, String staleOutput,
+                      Map<String, String> staleOutputs, long partial, long fallbacks) throws IOException {
+    if (partial + fallbacks > 0) {
+      System.err.println("Extracted the episodes of [" + partial + "] pages without reading them into a document, ["
+              + fallbacks + "] pages had to be read into a document");
+    }
+
+    Map<String, String> outputs = new HashMap<>();
+    String output = render(allSeries, outputs);
+    if (staleOutput == null) {
+      if (!progressive.finish(output)) {
+        writeOutput(output);
+      }
+    } else if (output.equals(staleOutput)) {
+      System.err.println("None of the series changed, the output served from the cache is up to date");
+    } else {
+      List<String> changed = new ArrayList<>();
+      for (Entry<String, String> entry : outputs.entrySet()) {
+        if (!entry.getValue().equals(staleOutputs.get(entry.getKey()))) {
+          changed.add(entry.getKey());
+        }
+      }
+      System.err.println("Rewriting the output, [" + changed.size() + "] series changed: " + changed);
+      writeOutput(output);
+    }
+  }
 
+  /**
+   * Render the output out of the cached pages alone, without connecting, and write it<br>
+   * Series whose pages have not been cached yet are left out, and the age of every series that is served from the
+   * cache is reported
+   *
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @param parsePool    Executor running the parse stage
+   * @param seasonPool   Pool the seasons of the pages are extracted on, null to extract them on the parse stage
+   * @param outputs      Populated with the output of each series, keyed by the title of the series
+   * @return Output that was written
+   * @throws IOException If there is a problem while writing the data
+   */
+  private String processCached(PageCache wikiCache, EpisodeCache episodeCache, ExecutorService parsePool,
+                               ForkJoinPool seasonPool, Map<String, String> outputs) throws IOException {
+    Map<String, Long> fetchTimes = new ConcurrentHashMap<>();
     int i = 0;
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    Tuple2<Series, Episode>[] allSeries = new Tuple2[this.allSeries.size()];
+    List<CompletableFuture<Series>> jobs = new ArrayList<>(this.allSeries.size());
+    Map<String, SharedPage> pages = new HashMap<>();
     for (Map<String, Object> rawSeries : this.allSeries) {
-      Configs formatDef = getFormatDef(rawSeries, i);
-      Map<String, List<String>> tableHints = getTableHints(rawSeries, i);
-      Set<Integer> seasonSkip = getSeasonSkipList(rawSeries);
-      Object type = formatDef.get(Keyz.TYPE);
+      jobs.add(submitCached(rawSeries, i++, wikiCache, episodeCache, parsePool, seasonPool, pages, fetchTimes));
+    }
+    List<Tuple2<Series, Episode>> allSeries = collect(jobs, "they are missing from the output served from the cache",
+            null);
+
+    String output = render(allSeries, outputs);
+    writeOutput(output);
+
+    long now = System.currentTimeMillis();
+    for (Map<String, Object> rawSeries : this.allSeries) {
+      String title = (String) rawSeries.get(Keyz.TITLE);
+      Long fetchTime = fetchTimes.get(title);
+      if (fetchTime == null) {
+        System.err.println("Not cached yet: " + title);
+      } else {
+        System.err.println("Served from the cache: " + title + ", last refreshed [" + Utils.formatAge(now - fetchTime)
+                + "] ago");
+      }
+    }
+    return output;
+  }
+
+  /**
+   * Fill and revalidate the cache of the pages only, without parsing them or writing the output, so that a later run
+   * can be run offline<br>
+   * The pages that are due are revalidated in batches first (see {@link #revalidate(Map, PageCache, EpisodeCache)}),
+   * the rest are then fetched one after the other in the order of urgency (see
+   * {@link #getUrgency(SharedPage, PageCache, EpisodeCache, Episode)}), until the budget of time or of bytes
+   * downloaded runs out. Pages are fetched sequentially to keep to that order and to the budget
+   *
+   * @throws IOException If the cache cannot be opened
+   */
+  public void prefetch() throws IOException {
+    long deadline = System.currentTimeMillis()
+            + TimeUnit.SECONDS.toMillis(Long.getLong(Keyz.PREFETCH_MAX_TIME, 300));
+    long maxSize = Long.getLong(Keyz.PREFETCH_MAX_SIZE, 64) * 1024 * 1024;
+    AtomicLong downloaded = new AtomicLong();
+    int fetched = 0;
+    int skipped = 0;
+    try (PageCache wikiCache = PageCache.open(this.cacheDir.resolve(Keyz.TYPE_WIKI))) {
+      EpisodeCache episodeCache = EpisodeCache.open(this.cacheDir.resolve(Keyz.PARSED));
+      Map<String, SharedPage> pages = new LinkedHashMap<>();
+      int i = 0;
+      for (Map<String, Object> rawSeries : this.allSeries) {
+        try {
+          RawInfo rawInfo = getRawInfo(rawSeries, i++, wikiCache);
+          pages.computeIfAbsent(WikiParser.getSource(rawInfo), k -> new SharedPage())
+                  .add(rawInfo, getSeasonSkipList(rawSeries));
+        } catch (IOException | RuntimeException ex) {
+          System.err.println("Unable to prefetch [" + rawSeries.get(Keyz.TITLE) + "]: " + ex);
+        }
+      }
+      revalidate(pages, wikiCache, episodeCache);
+
+      Episode today = new Episode(0, 0, null, LocalDate.now());
+      List<SharedPage> shared = new ArrayList<>(pages.values());
+      List<Tuple2<Integer, LocalDate>> ordered = new ArrayList<>(shared.size());
+      for (int j = 0; j < shared.size(); j++) {
+        ordered.add(new Tuple2<>(j, getUrgency(shared.get(j), wikiCache, episodeCache, today)));
+      }
+      // most pages have no upcoming episode, they keep to the order of the input
+      ordered.sort(Comparator.comparing((Tuple2<Integer, LocalDate> page) -> page.t2,
+              Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(page -> page.t1));
+
+      for (Tuple2<Integer, LocalDate> urgency : ordered) {
+        SharedPage page = shared.get(urgency.t1);
+        RawInfo rawInfo = page.getUsers().get(0).t1;
+        if (System.currentTimeMillis() >= deadline || downloaded.get() >= maxSize) {
+          skipped++;
+          continue;
+        }
+        try {
+          page.prefetch(rawInfo, wikiCache, page.getMaxAge(), downloaded);
+          fetched++;
+        } catch (IOException ex) {
+          System.err.println("Unable to prefetch [" + rawInfo.getSeriesInfo().get(Keyz.TITLE) + "]: " + ex);
+        }
+      }
+    }
+    System.err.println("Prefetched [" + fetched + "] pages, [" + downloaded.get() + "] bytes downloaded, [" + skipped
+            + "] pages left out as the budget ran out");
+  }
+
+  /**
+   * Returns how urgently the page needs to be prefetched, as the date to order it by<br>
+   * Pages that are not cached come first (they cannot be served offline at all), followed by the pages whose next
+   * unwatched episode, as per the episodes parsed out of the cached page by the last run, airs soonest. Pages that
+   * have no such episode (or were not parsed) come last
+   *
+   * @param shared       Page shared by the series
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @param today        Episode airing today, episodes airing before it do not count
+   * @return Air date of the next episode, {@link LocalDate#MIN} if the page is not cached, null if there is no such
+   * episode
+   */
+  private LocalDate getUrgency(SharedPage shared, PageCache wikiCache, EpisodeCache episodeCache, Episode today) {
+    LocalDate urgency = null;
+    for (Tuple2<RawInfo, Set<Integer>> user : shared.getUsers()) {
+      RawInfo rawInfo = user.t1;
       try {
-        if (Keyz.TYPE_WIKI.equals(type)) { // When we add more types here, put a lookup mechanism
-          RawInfo rawInfo = new RawInfo(rawSeries, formatDef, tableHints);
-          Series series = WikiParser.parse(rawInfo, wikiDir, seasonSkip, this.offline);
-          IFilter<Episode> filter = this.filters.computeIfAbsent(series.title, k -> Utils.getAllowAllFilter());
-
-          this.filters.putIfAbsent(series.title, Utils.getAllowAllFilter());
-          Episode episode = Utils.getFirstEpisode(series, filter);
-          allSeries[i++] = new Tuple2<>(series, episode);
-        } else {
-          throw new IOException("Unknown Type specified for series: " + rawSeries);
+        CachedPage page = WikiParser.peek(rawInfo, wikiCache);
+        if (page == null) {
+          return LocalDate.MIN;
+        }
+        List<List<Episode>> episodes = episodeCache.get(EpisodeCache.key(page.hash,
+                WikiParser.fingerprint(rawInfo, user.t2)));
+        if (episodes != null) {
+          String title = (String) rawInfo.getSeriesInfo().get(Keyz.TITLE);
+          IFilter<Episode> filter = this.filters.getOrDefault(title, Utils.getAllowAllFilter());
+          Episode next = Utils.getFirstEpisode(new Series(page.url, title, episodes),
+                  episode -> filter.allow(episode) && episode.compareTo(today) >= 0);
+          if (next != null && next.date != null) {
+            LocalDate date = Episode.toLocalDate(next.date);
+            if (urgency == null || date.isBefore(urgency)) {
+              urgency = date;
+            }
+          }
         }
-      } catch (Exception ex) {
-        ex.printStackTrace();
-        // TODO : Save this and do stuff with it
+      } catch (IOException ex) {
+        return LocalDate.MIN; // e.g. the layout of the page has changed
       }
     }
+    return urgency;
+  }
+
+  /**
+   * Wait for the series to be processed, the series are taken up as they complete, and are passed on to the
+   * progressive output (if any) right away
+   *
+   * @param jobs        Futures of the series, they may complete with null for series that are to be left out
+   * @param consequence What happens to the series that cannot be processed, reported along with them
+   * @param progressive Output written progressively, can be null
+   * @return Series along with the first episode that passes the filter of the series, in the order of the input
+   * @throws IOException If there is a problem while writing the output progressively
+   */
+  private List<Tuple2<Series, Episode>> collect(List<CompletableFuture<Series>> jobs, String consequence,
+                                                ProgressiveOutput progressive) throws IOException {
+    BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+    for (int j = 0; j < jobs.size(); j++) {
+      int index = j;
+      jobs.get(j).whenComplete((series, ex) -> completed.add(index));
+    }
 
-    Arrays.sort(allSeries, new SeriesComparator());
-    try (Writer writer = Files.newBufferedWriter(this.output, StandardCharsets.UTF_8)) {
-      IFormatter formatter = buildFormatter(this.outputFormat, writer);
-      for (Tuple2<Series, Episode> seriesTuple : allSeries) {
-        IFilter<Episode> filter = this.filters.get(seriesTuple.t1.title);
-        formatter.write(seriesTuple.t1, filter);
+    List<Tuple2<Series, Episode>> allSeries = new ArrayList<>(Collections.nCopies(jobs.size(), null));
+    String[] failures = new String[jobs.size()];
+    for (int k = 0; k < jobs.size(); k++) {
+      int j;
+      try {
+        j = completed.take();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the series to be processed");
+      }
+      try {
+        Series series = jobs.get(j).join();
+        if (series != null) {
+          allSeries.set(j, toTuple(series));
+        }
+      } catch (CompletionException ex) {
+        Throwable cause = ex.getCause() instanceof UncheckedIOException ? ex.getCause().getCause() : ex.getCause();
+        cause.printStackTrace();
+        failures[j] = this.allSeries.get(j).get(Keyz.TITLE) + " (" + cause + ")";
+      }
+      if (progressive != null) {
+        progressive.processed(j, allSeries.get(j));
       }
     }
+    allSeries.removeIf(Objects::isNull);
+
+    List<String> failed = new ArrayList<>();
+    for (String failure : failures) {
+      if (failure != null) {
+        failed.add(failure);
+      }
+    }
+    if (!failed.isEmpty()) {
+      System.err.println("Unable to process [" + failed.size() + "] series, " + consequence + ":");
+      failed.forEach(failure -> System.err.println("  " + failure));
+    }
+    return allSeries;
+  }
+
+  /**
+   * Pair the series with the first episode that passes its filter, i.e. the episode the output is ordered by
+   *
+   * @param series Series
+   * @return Series along with the first episode that passes the filter of the series
+   */
+  private Tuple2<Series, Episode> toTuple(Series series) {
+    IFilter<Episode> filter = this.filters.computeIfAbsent(series.title, k -> Utils.getAllowAllFilter());
+    return new Tuple2<>(series, Utils.getFirstEpisode(series, filter));
+  }
+
+  /**
+   * Render the output
+   *
+   * @param allSeries Series along with the first episode that passes the filter of the series
+   * @param outputs   Populated with the output of each series, keyed by the title of the series
+   * @return Output
+   * @throws IOException If there is a problem while rendering the data
+   */
+  private String render(List<Tuple2<Series, Episode>> allSeries, Map<String, String> outputs) throws IOException {
+    // the sort is stable, so series that compare equal retain the order of the input
+    allSeries.sort(new SeriesComparator());
+    StringBuilder output = new StringBuilder();
+    for (Tuple2<Series, Episode> seriesTuple : allSeries) {
+      String block = render(seriesTuple);
+      outputs.put(seriesTuple.t1.title, block);
+      output.append(block);
+    }
+    return output.toString();
+  }
+
+  /**
+   * Render the block of a single series
+   *
+   * @param seriesTuple Series along with the first episode that passes the filter of the series
+   * @return Block of the series
+   * @throws IOException If there is a problem while rendering the data
+   */
+  private String render(Tuple2<Series, Episode> seriesTuple) throws IOException {
+    StringWriter writer = new StringWriter();
+    IFormatter formatter = buildFormatter(this.outputFormat, writer);
+    IFilter<Episode> filter = this.filters.get(seriesTuple.t1.title);
+    formatter.write(seriesTuple.t1, filter);
+    return writer.toString();
+  }
+
+  /**
+   * Write the output, the output is written to a temporary file which then replaces the output file, so that readers
+   * of the output never see it partially written
+   *
+   * @param output Output
+   * @throws IOException If there is a problem while writing the data
+   */
+  private void writeOutput(String output) throws IOException {
+    Path temp = this.output.resolveSibling(this.output.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      writer.write(output);
+    }
+    Files.move(temp, this.output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Compact the caches, evicting the entries that exceed the maximum size (pages only) or age
+   *
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   */
+  private static void compact(PageCache wikiCache, EpisodeCache episodeCache) {
+    try {
+      int pages = wikiCache.compact(CACHE_MAX_SIZE, CACHE_MAX_AGE);
+      int parsed = episodeCache.compact(CACHE_MAX_AGE);
+      if (pages > 0 || parsed > 0) {
+        System.err.println("Evicted [" + pages + "] cached pages and [" + parsed + "] parsed entries");
+      }
+    } catch (IOException ex) {
+      System.err.println("Unable to compact the cache: " + ex);
+    }
+  }
+
+  /**
+   * Wait for the compaction of the caches to be over, a compaction that failed is only reported
+   *
+   * @param compaction Compaction, see {@link #compact(PageCache, EpisodeCache)}
+   */
+  private static void awaitCompaction(CompletableFuture<Void> compaction) {
+    try {
+      compaction.join();
+    } catch (CompletionException | CancellationException ex) {
+      System.err.println("Unable to compact the cache: " + ex);
+    }
+  }
+
+  /**
+   * Submit a single series to the pipeline, its page is fetched once it is scheduled, see
+   * {@link #schedule(Collection, PageCache, ExecutorService)}<br>
+   * Pages cached before the cache was indexed are imported right away (see {@link #getRawInfo(Map, int, PageCache)}),
+   * so that a page shared by several series is imported before any of them is fetched. Series that are parsed out of
+   * the same page share its fetch and parse, see {@link SharedPage}
+   *
+   * @param rawSeries    Raw Series data
+   * @param count        Position of the series in the input
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @param parsePool    Executor running the parse stage
+   * @param seasonPool   Pool the seasons of the pages are extracted on, null to extract them on the parse stage
+   * @param pages        Pages of the series submitted so far, keyed by their source
+   * @param predictions  Populated with where the series is expected to go in the output, see
+   *                     {@link #predict(RawInfo, Set, PageCache, EpisodeCache)}
+   * @return Future that completes with the parsed series
+   */
+  private CompletableFuture<Series> submit(Map<String, Object> rawSeries, int count, PageCache wikiCache,
+                                           EpisodeCache episodeCache, ExecutorService parsePool,
+                                           ForkJoinPool seasonPool, Map<String, SharedPage> pages,
+                                           List<Tuple2<Series, Episode>> predictions) {
+    Set<Integer> seasonSkip = getSeasonSkipList(rawSeries);
+    RawInfo rawInfo;
+    try {
+      rawInfo = getRawInfo(rawSeries, count, wikiCache);
+    } catch (IOException ex) {
+      predictions.add(null);
+      CompletableFuture<Series> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new UncheckedIOException(ex));
+      return failed;
+    }
+
+    Tuple2<Series, Episode> prediction = predict(rawInfo, seasonSkip, wikiCache, episodeCache);
+    predictions.add(prediction);
+    SharedPage shared = pages.computeIfAbsent(WikiParser.getSource(rawInfo), k -> new SharedPage());
+    shared.add(rawInfo, seasonSkip);
+    shared.prioritize(prediction);
+    return shared.fetch(CompletableFuture::new).thenApplyAsync(page -> {
+      try {
+        return parse(rawInfo, page, seasonSkip, episodeCache, seasonPool, shared);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, parsePool);
+  }
+
+  /**
+   * Fetch the pages, the most urgent first, i.e. the pages of the series that are expected to come first in the
+   * output, so that they can be written out first (see {@link ProgressiveOutput}). Pages whose series cannot be placed
+   * (e.g. they are not cached) come before all others, as they could go anywhere
+   *
+   * @param pages     Pages of all the series
+   * @param wikiCache Cache of the raw wiki pages
+   * @param fetchPool Executor running the fetch stage
+   */
+  private void schedule(Collection<SharedPage> pages, PageCache wikiCache, ExecutorService fetchPool) {
+    Comparator<Tuple2<Series, Episode>> comparator = Comparator.nullsFirst(new SeriesComparator());
+    List<SharedPage> ordered = new ArrayList<>(pages);
+    ordered.sort((a, b) -> comparator.compare(a.getPriority(), b.getPriority()));
+    for (SharedPage shared : ordered) {
+      CompletableFuture<CachedPage> fetch = shared.fetch(CompletableFuture::new);
+      RawInfo rawInfo = shared.getUsers().get(0).t1;
+      fetchPool.execute(() -> {
+        try {
+          fetch.complete(shared.download(rawInfo, wikiCache, this.offline, shared.getMaxAge()));
+        } catch (IOException | RuntimeException ex) {
+          fetch.completeExceptionally(ex);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns where the series is expected to go in the output, as per the episodes parsed out of the cached page by
+   * the last run
+   *
+   * @param rawInfo      Series data
+   * @param seasonSkip   Seasons (1 based) that should be skipped
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @return Series along with the first episode that passes its filter, or null if the page was not cached or parsed
+   */
+  private Tuple2<Series, Episode> predict(RawInfo rawInfo, Set<Integer> seasonSkip, PageCache wikiCache,
+                                          EpisodeCache episodeCache) {
+    try {
+      CachedPage page = WikiParser.peek(rawInfo, wikiCache);
+      if (page == null) {
+        return null;
+      }
+      List<List<Episode>> episodes = episodeCache.get(EpisodeCache.key(page.hash,
+              WikiParser.fingerprint(rawInfo, seasonSkip)));
+      if (episodes == null) {
+        return null;
+      }
+      return toTuple(new Series(WikiParser.getPageUrl(rawInfo), (String) rawInfo.getSeriesInfo().get(Keyz.TITLE),
+              episodes));
+    } catch (IOException ex) {
+      return null; // e.g. the layout of the page has changed
+    }
+  }
+
+  /**
+   * Render a single series out of its cached page as is, without connecting
+   *
+   * @param rawSeries    Raw Series data
+   * @param count        Position of the series in the input
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @param parsePool    Executor running the parse stage
+   * @param seasonPool   Pool the seasons of the pages are extracted on, null to extract them on the parse stage
+   * @param pages        Pages of the series submitted so far, keyed by their source
+   * @param fetchTimes   Populated with the time (epoch millis) when the page was last fetched or revalidated, keyed by
+   *                     the title of the series
+   * @return Future that completes with the parsed series, or with null if the page of the series is not cached
+   */
+  private CompletableFuture<Series> submitCached(Map<String, Object> rawSeries, int count, PageCache wikiCache,
+                                                 EpisodeCache episodeCache, ExecutorService parsePool,
+                                                 ForkJoinPool seasonPool, Map<String, SharedPage> pages,
+                                                 Map<String, Long> fetchTimes) {
+    Set<Integer> seasonSkip = getSeasonSkipList(rawSeries);
+    RawInfo rawInfo;
+    try {
+      rawInfo = getRawInfo(rawSeries, count, wikiCache);
+    } catch (IOException ex) {
+      CompletableFuture<Series> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new UncheckedIOException(ex));
+      return failed;
+    }
+
+    SharedPage shared = pages.computeIfAbsent(WikiParser.getSource(rawInfo), k -> new SharedPage());
+    shared.add(rawInfo, seasonSkip);
+    return shared.fetch(() -> CompletableFuture.supplyAsync(() -> {
+      try {
+        return WikiParser.peek(rawInfo, wikiCache);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, parsePool)).thenApplyAsync(page -> {
+      if (page == null) {
+        return null;
+      }
+      try {
+        fetchTimes.put((String) rawSeries.get(Keyz.TITLE), WikiParser.getFetchTime(rawInfo, wikiCache));
+        return parse(rawInfo, page, seasonSkip, episodeCache, seasonPool, shared);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, parsePool);
+  }
+
+  /**
+   * Resolve the format and the hints of the series, and import the page that was cached for it before the cache was
+   * indexed
+   *
+   * @param rawSeries Raw Series data
+   * @param count     Position of the series in the input
+   * @param wikiCache Cache of the raw wiki pages
+   * @return Series data
+   * @throws IOException If the type of the series is not known, or the page cannot be imported
+   */
+  private RawInfo getRawInfo(Map<String, Object> rawSeries, int count, PageCache wikiCache) throws IOException {
+    Configs formatDef = getFormatDef(rawSeries, count);
+    ColumnMatcher columnMatcher = getTableHints(rawSeries, count);
+    Object type = formatDef.get(Keyz.TYPE);
+    if (!Keyz.TYPE_WIKI.equals(type)) { // When we add more types here, put a lookup mechanism
+      throw new IOException("Unknown Type specified for series: " + rawSeries);
+    }
+
+    RawInfo rawInfo = new RawInfo(rawSeries, formatDef, columnMatcher);
+    WikiParser.importLegacy(rawInfo, wikiCache);
+    return rawInfo;
+  }
+
+  /**
+   * Resolve how long the cached copy of every page can be used as is, and revalidate the cached copies that are due,
+   * in batches, through the current revisions of the pages (see {@link WikiParser#getRevisions(Collection)})<br>
+   * Cached copies of the current revision are used as is, so only the pages that have been edited since they were
+   * cached (or were never looked up) are fetched, and their revision is recorded along with them. If the revisions
+   * cannot be looked up, then the pages are revalidated one by one as they are fetched
+   *
+   * @param pages        Pages of all the series, keyed by their source
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   */
+  private void revalidate(Map<String, SharedPage> pages, PageCache wikiCache, EpisodeCache episodeCache) {
+    long now = System.currentTimeMillis();
+    Map<String, List<Tuple2<SharedPage, RawInfo>>> due = new LinkedHashMap<>();
+    for (SharedPage shared : pages.values()) {
+      RawInfo rawInfo = shared.getUsers().get(0).t1;
+      try {
+        long maxAge = getMaxAge(shared, wikiCache, episodeCache);
+        shared.setMaxAge(maxAge);
+        long fetchTime = WikiParser.getFetchTime(rawInfo, wikiCache);
+        if (fetchTime < 0 || now - fetchTime >= maxAge) {
+          String page = WikiParser.getPageName(rawInfo);
+          due.computeIfAbsent(page, k -> new ArrayList<>()).add(new Tuple2<>(shared, rawInfo));
+        }
+      } catch (IOException ex) {
+        System.err.println("Unable to check the cached page of [" + rawInfo.getSeriesInfo().get(Keyz.TITLE)
+                + "], revalidating it: " + ex);
+        shared.setMaxAge(0);
+      }
+    }
+    if (this.offline || due.isEmpty()) {
+      return;
+    }
+
+    Map<String, Long> revisions;
+    try {
+      revisions = WikiParser.getRevisions(due.keySet());
+    } catch (IOException ex) {
+      System.err.println("Unable to look up the revisions of [" + due.size() + "] pages, revalidating them one by one: "
+              + ex);
+      return;
+    }
+    int unchanged = 0;
+    for (Entry<String, List<Tuple2<SharedPage, RawInfo>>> entry : due.entrySet()) {
+      Long revision = revisions.get(entry.getKey());
+      if (revision == null) { // e.g. the page has been deleted, the fetch reports it
+        continue;
+      }
+      for (Tuple2<SharedPage, RawInfo> page : entry.getValue()) {
+        try {
+          if (WikiParser.confirm(page.t2, wikiCache, revision)) {
+            page.t1.setMaxAge(Long.MAX_VALUE);
+            unchanged++;
+          } else {
+            page.t1.setRevision(revision, now);
+          }
+        } catch (IOException ex) {
+          System.err.println("Unable to revalidate the cached page of [" + page.t2.getSeriesInfo().get(Keyz.TITLE)
+                  + "] through its revision: " + ex);
+        }
+      }
+    }
+    System.err.println("Looked up the revisions of [" + due.size() + "] pages, [" + unchanged
+            + "] cached pages are current");
+  }
+
+  /**
+   * Returns how long the cached page can be used before it has to be revalidated, i.e. the shortest of the maximum
+   * ages of the series parsed out of it
+   *
+   * @param shared       Page shared by the series
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @return Maximum age (in millis) of the cached page
+   * @throws IOException If the cached episodes cannot be read
+   */
+  private long getMaxAge(SharedPage shared, PageCache wikiCache, EpisodeCache episodeCache) throws IOException {
+    long maxAge = Long.MAX_VALUE;
+    for (Tuple2<RawInfo, Set<Integer>> user : shared.getUsers()) {
+      maxAge = Math.min(maxAge, getMaxAge(user.t1, user.t2, wikiCache, episodeCache));
+    }
+    return maxAge;
+  }
+
+  /**
+   * Returns how long the cached page of the series can be used before it has to be revalidated, as per the
+   * {@link RefreshPolicy} applied to the episodes parsed out of the cached page
+   *
+   * @param rawInfo      Series data
+   * @param seasonSkip   Seasons (1 based) that should be skipped
+   * @param wikiCache    Cache of the raw wiki pages
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @return Maximum age (in millis) of the cached page
+   * @throws IOException If the cached episodes cannot be read
+   */
+  private long getMaxAge(RawInfo rawInfo, Set<Integer> seasonSkip, PageCache wikiCache, EpisodeCache episodeCache)
+          throws IOException {
+    if (this.refreshAll) {
+      return 0;
+    }
+
+    Object override = rawInfo.getSeriesInfo().get(Keyz.REFRESH);
+    List<List<Episode>> episodes = null;
+    if (override == null) {
+      CachedPage page;
+      try {
+        page = WikiParser.peek(rawInfo, wikiCache);
+      } catch (IOException ex) {
+        page = null; // e.g. the layout of the page has changed, so revalidate it
+      }
+      if (page != null) {
+        episodes = episodeCache.get(EpisodeCache.key(page.hash, WikiParser.fingerprint(rawInfo, seasonSkip)));
+      }
+    }
+    return RefreshPolicy.getMaxAge(override, episodes, LocalDate.now());
+  }
+
+  /**
+   * Parse the page of the series, unless the episodes parsed out of the same page with the same settings are cached,
+   * or are being parsed for another series
+   *
+   * @param rawInfo      Series data
+   * @param page         Cached copy of the page
+   * @param seasonSkip   Seasons (1 based) that should be skipped
+   * @param episodeCache Cache of the episodes parsed out of the wiki pages
+   * @param seasonPool   Pool the seasons of the pages are extracted on, null to extract them on the parse stage
+   * @param shared       Page shared by the series parsed out of it
+   * @return Series instance
+   * @throws IOException If something goes wrong while parsing or caching
+   */
+  private static Series parse(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip, EpisodeCache episodeCache,
+                              ForkJoinPool seasonPool, SharedPage shared) throws IOException {
+    List<List<Episode>> episodes = shared.parse(rawInfo, page, seasonSkip, episodeCache, seasonPool);
+    return new Series(WikiParser.getPageUrl(rawInfo), (String) rawInfo.getSeriesInfo().get(Keyz.TITLE), episodes);
   }
 
   private Set<Integer> getSeasonSkipList(Map<String, Object> rawSeries) {
@@ -168,10 +910,10 @@ public class SeriesTracker {
     }
   }
 
-  private Map<String, List<String>> getTableHints(Map<String, Object> rawSeries, int count) {
+  private ColumnMatcher getTableHints(Map<String, Object> rawSeries, int count) {
     Object hintInfo = rawSeries.get(Keyz.HINTS);
     if (hintInfo == null) {
-      Map<String, List<String>> defHints = this.hints.get("wiki:auto");
+      ColumnMatcher defHints = this.hints.get("wiki:auto");
       if (defHints == null) {
         throw new IllegalArgumentException("No default hints provided for series [" + count + "]");
       }
@@ -181,7 +923,7 @@ public class SeriesTracker {
     } else if (hintInfo instanceof Map) {
       @SuppressWarnings("unchecked") // TODO : find a better way
           Map<String, List<String>> tableHints = (Map<String, List<String>>) hintInfo;
-      return tableHints;
+      return ColumnMatcher.compile(tableHints);
     } else {
       throw new IllegalArgumentException("Unknown type specified for hints [" + hintInfo + "]");
     }
@@ -0,0 +1,338 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.mikujo.series;
+
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.EpisodeCache;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.utils.Tuple2;
+import me.mikujo.series.wiki.PageLayout;
+import me.mikujo.series.wiki.WikiParser;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Work shared, within a run, by the series that are parsed out of the same page (see
+ * {@link WikiParser#getSource(RawInfo)}), e.g. spin-offs listed on the page of the franchise, or a series listed
+ * under different titles<br>
+ * The page is fetched once for all of them, its document is read once (while the page is being downloaded, if it is
+ * downloaded) and held only until every series has been parsed, and series with the same parse settings are parsed
+ * only once, even while the parse is in progress. Series whose page is streamed or sliced (see
+ * {@link WikiParser#isPartial(RawInfo)}) are parsed straight out of the cached copy, the document is read only if
+ * the page turns out to need it<br>
+ * The current revision of the page, if it was looked up, is recorded along with the cached copy once the page is
+ * fetched, so that the next run can tell whether the page has been edited without fetching it
+ * @author mithun.gonsalvez
+ */
+public class SharedPage {
+
+  /** Series parsed out of the page, along with the seasons (1 based) that are skipped for each of them */
+  private final List<Tuple2<RawInfo, Set<Integer>>> users = new ArrayList<>();
+
+  /** Parses of the page, keyed by the key of the episode cache (i.e. the hash of the page and the parse settings) */
+  private final ConcurrentMap<String, CompletableFuture<List<List<Episode>>>> parses = new ConcurrentHashMap<>();
+
+  /** Fetch of the page */
+  private CompletableFuture<CachedPage> fetch;
+
+  /** Number of series that have not been parsed yet */
+  private int pending;
+
+  /** Document of the page, held only while it may still be needed */
+  private Document document;
+
+  /** Hash of the contents of the page the document was read out of */
+  private String documentHash;
+
+  /** Number of times the document has been read */
+  private int reads;
+
+  /** Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used as is */
+  private long maxAge;
+
+  /** Current revision of the page, recorded along with the cached copy once it is fetched, -1 if not known */
+  private long revision = -1;
+
+  /** Time (epoch millis) when the current revision of the page was looked up */
+  private long revisionTime;
+
+  /** Series parsed out of the page that is expected to come first in the output, see {@link #prioritize(Tuple2)} */
+  private Tuple2<Series, Episode> priority;
+
+  /** Set if where any of the series parsed out of the page goes in the output is not known */
+  private boolean unknownPriority;
+
+  /**
+   * Add a series that is parsed out of the page, every series added must be parsed exactly once, see
+   * {@link #parse(RawInfo, CachedPage, Set, EpisodeCache)}
+   * @param rawInfo Series data
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   */
+  public synchronized void add(RawInfo rawInfo, Set<Integer> seasonSkip) {
+    this.users.add(new Tuple2<>(rawInfo, seasonSkip));
+    this.pending++;
+  }
+
+  /**
+   * Returns the series that are parsed out of the page
+   * @return Series data along with the seasons (1 based) that are skipped for each of them
+   */
+  public synchronized List<Tuple2<RawInfo, Set<Integer>>> getUsers() {
+    return new ArrayList<>(this.users);
+  }
+
+  /**
+   * Record where a series parsed out of the page is expected to go in the output, the page is as urgent as the most
+   * urgent of them
+   * @param expected Series along with the first episode that passes its filter, as parsed by the last run, null if it
+   * is not known
+   */
+  public synchronized void prioritize(Tuple2<Series, Episode> expected) {
+    if (expected == null) {
+      this.unknownPriority = true;
+    } else if (this.priority == null || new SeriesComparator().compare(expected, this.priority) < 0) {
+      this.priority = expected;
+    }
+  }
+
+  /**
+   * Returns the series parsed out of the page that is expected to come first in the output
+   * @return Series along with the first episode that passes its filter, null if it is not known
+   */
+  public synchronized Tuple2<Series, Episode> getPriority() {
+    return this.unknownPriority ? null : this.priority;
+  }
+
+  /**
+   * Returns the fetch of the page, the fetch is started (or created, to be completed once it is scheduled) by the
+   * first series that asks for it
+   * @param fetcher Starts or creates the fetch
+   * @return Future that completes with the cached copy of the page
+   */
+  public synchronized CompletableFuture<CachedPage> fetch(Supplier<CompletableFuture<CachedPage>> fetcher) {
+    if (this.fetch == null) {
+      this.fetch = fetcher.get();
+    }
+    return this.fetch;
+  }
+
+  /**
+   * Returns how long the cached page can be used before it has to be revalidated
+   * @return Maximum age (in millis)
+   */
+  public synchronized long getMaxAge() {
+    return this.maxAge;
+  }
+
+  /**
+   * Set how long the cached page can be used before it has to be revalidated
+   * @param maxAge Maximum age (in millis)
+   */
+  public synchronized void setMaxAge(long maxAge) {
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Set the current revision of the page, which is recorded along with the cached copy once the page is fetched
+   * @param revision Current revision of the page
+   * @param time Time (epoch millis) when the revision was looked up
+   */
+  public synchronized void setRevision(long revision, long time) {
+    this.revision = revision;
+    this.revisionTime = time;
+  }
+
+  /**
+   * Fetch the page, if the page is downloaded then its document is read while it is being downloaded (unless the page
+   * is streamed or sliced, see {@link WikiParser#isPartial(RawInfo)}), see
+   * {@link PageCache#fetch(String, String, boolean, long, PageCache.DownloadReader)}
+   * @param rawInfo Series data
+   * @param cache Cache where the raw series data should be stored
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it
+   * @return Cached copy of the page
+   * @throws IOException If something goes wrong while fetching, or while recording the revision
+   */
+  public CachedPage download(RawInfo rawInfo, PageCache cache, boolean offline, long maxAge) throws IOException {
+    AtomicReference<Document> downloaded = new AtomicReference<>();
+    CachedPage page = WikiParser.fetch(rawInfo, cache, offline, maxAge, WikiParser.isPartial(rawInfo) ? null
+            : in -> downloaded.set(WikiParser.read(rawInfo, in)));
+    synchronized (this) {
+      if (downloaded.get() != null) {
+        this.document = downloaded.get();
+        this.documentHash = page.hash;
+        this.reads++;
+      }
+    }
+    recordRevision(rawInfo, cache);
+    return page;
+  }
+
+  /**
+   * Fetch the page into the cache only, without reading it, see
+   * {@link PageCache#fetch(String, String, boolean, long, PageCache.DownloadReader)}
+   * @param rawInfo Series data
+   * @param cache Cache where the raw series data should be stored
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it
+   * @param downloaded Incremented by the number of bytes of the page, if it is downloaded
+   * @throws IOException If something goes wrong while fetching, or while recording the revision
+   */
+  public void prefetch(RawInfo rawInfo, PageCache cache, long maxAge, AtomicLong downloaded) throws IOException {
+    WikiParser.fetch(rawInfo, cache, false, maxAge, in -> {
+      byte[] buffer = new byte[8192];
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        downloaded.addAndGet(read);
+      }
+    });
+    recordRevision(rawInfo, cache);
+  }
+
+  /**
+   * Record the current revision of the page along with the cached copy, if it was looked up
+   * @param rawInfo Series data
+   * @param cache Cache where the raw series data is stored
+   * @throws IOException If the revision cannot be recorded
+   */
+  private void recordRevision(RawInfo rawInfo, PageCache cache) throws IOException {
+    long current;
+    long since;
+    synchronized (this) {
+      current = this.revision;
+      since = this.revisionTime;
+    }
+    if (current >= 0) {
+      WikiParser.setRevision(rawInfo, cache, current, since);
+    }
+  }
+
+  /**
+   * Parse the series out of the page, unless a series with the same settings has been (or is being) parsed out of
+   * the same page, or the episodes are in the episode cache<br>
+   * The page is parsed along the layout learned by the last parse of the page (for the same settings), which is
+   * stored again if the page no longer follows it
+   * @param rawInfo Series data
+   * @param page Cached copy of the page
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param episodeCache Cache of the episodes parsed out of the pages
+   * @return Episodes (seasons of episodes), shared by all the series with the same settings and hence not to be
+   * modified
+   * @throws IOException If something goes wrong while parsing or caching
+   */
+  public List<List<Episode>> parse(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip,
+                                   EpisodeCache episodeCache) throws IOException {
+    return parse(rawInfo, page, seasonSkip, episodeCache, null);
+  }
+
+  /**
+   * Parse the series out of the page, see {@link #parse(RawInfo, CachedPage, Set, EpisodeCache)}, extracting the
+   * seasons of the page on the provided pool
+   * @param rawInfo Series data
+   * @param page Cached copy of the page
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param episodeCache Cache of the episodes parsed out of the pages
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
+   * @return Episodes (seasons of episodes), shared by all the series with the same settings and hence not to be
+   * modified
+   * @throws IOException If something goes wrong while parsing or caching
+   */
+  public List<List<Episode>> parse(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip,
+                                   EpisodeCache episodeCache, ForkJoinPool seasonPool) throws IOException {
+    try {
+      String fingerprint = WikiParser.fingerprint(rawInfo, seasonSkip);
+      String key = EpisodeCache.key(page.hash, fingerprint);
+      CompletableFuture<List<List<Episode>>> parse = new CompletableFuture<>();
+      CompletableFuture<List<List<Episode>>> existing = this.parses.putIfAbsent(key, parse);
+      if (existing != null) {
+        try {
+          return existing.join();
+        } catch (CompletionException ex) {
+          throw new IOException("Unable to parse [" + page.url + "]", ex.getCause());
+        }
+      }
+
+      try {
+        List<List<Episode>> episodes = episodeCache.get(key);
+        if (episodes == null) {
+          String layoutKey = EpisodeCache.layoutKey(WikiParser.getSource(rawInfo), fingerprint);
+          PageLayout layout = episodeCache.getLayout(layoutKey);
+          episodes = WikiParser.extract(rawInfo, page, seasonSkip, layout, seasonPool);
+          if (episodes == null) {
+            episodes = WikiParser.parse(rawInfo, getDocument(rawInfo, page), seasonSkip, layout, seasonPool);
+          }
+          episodeCache.put(key, episodes);
+          if (layout.isChanged()) {
+            episodeCache.putLayout(layoutKey, layout);
+          }
+        }
+        parse.complete(episodes);
+        return episodes;
+      } catch (IOException | RuntimeException ex) {
+        parse.completeExceptionally(ex);
+        throw ex;
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Returns the number of times the document of the page has been read
+   * @return Number of reads
+   */
+  public synchronized int getReads() {
+    return this.reads;
+  }
+
+  /**
+   * Returns the document of the page, reading it if it has not been read yet
+   * @param rawInfo Series data
+   * @param page Cached copy of the page
+   * @return Document
+   * @throws IOException If the page cannot be read
+   */
+  private synchronized Document getDocument(RawInfo rawInfo, CachedPage page) throws IOException {
+    if (this.document == null || !this.documentHash.equals(page.hash)) {
+      this.document = WikiParser.read(rawInfo, page);
+      this.documentHash = page.hash;
+      this.reads++;
+    }
+    return this.document;
+  }
+
+  /**
+   * Mark a series as parsed, the document is dropped once all the series have been parsed
+   */
+  private synchronized void release() {
+    if (--this.pending == 0) {
+      this.document = null;
+    }
+  }
+
+}
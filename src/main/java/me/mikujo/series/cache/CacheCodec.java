@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codecs in which the cached pages can be stored on disk<br>
+ * Reading does not depend on the codec of the cache directory, the format is detected from the content itself, this
+ * allows a directory to hold entries written with different codecs (for example while it is being migrated)
+ * @author mithun.gonsalvez
+ */
+public enum CacheCodec {
+
+  /** Stored as received */
+  NONE {
+    @Override
+    public OutputStream wrap(OutputStream out) {
+      return out;
+    }
+  },
+
+  /** Stored as gzip with the default compression level */
+  GZIP {
+    @Override
+    public OutputStream wrap(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+  },
+
+  /** Stored as gzip with the fastest compression level, trades some disk space for a lot less CPU while writing */
+  GZIP_FAST {
+    @Override
+    public OutputStream wrap(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE) {
+        {
+          this.def.setLevel(Deflater.BEST_SPEED);
+        }
+      };
+    }
+  };
+
+  /** Size of the buffers used while compressing and decompressing */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Wrap the stream so that the data written to it is encoded by this codec
+   * @param out Stream to wrap
+   * @return Encoding stream, closing it closes the wrapped stream
+   * @throws IOException If the stream cannot be wrapped
+   */
+  public abstract OutputStream wrap(OutputStream out) throws IOException;
+
+  /**
+   * Returns the name of the codec, as used in the configuration
+   * @return Name of the codec
+   */
+  public String getName() {
+    return name().toLowerCase(Locale.ROOT).replace('_', '-');
+  }
+
+  /**
+   * Returns the codec identified by the name
+   * @param name Name of the codec, as returned by {@link #getName()}
+   * @return Codec
+   * @throws IllegalArgumentException If there is no codec with the name
+   */
+  public static CacheCodec forName(String name) {
+    for (CacheCodec codec : values()) {
+      if (codec.getName().equalsIgnoreCase(name.trim())) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unknown cache codec [" + name + "]");
+  }
+
+  /**
+   * Open the file for reading, the content is decoded as per the codec it was written in
+   * @param file File to read
+   * @return Stream with the decoded content
+   * @throws IOException If the file cannot be read
+   */
+  public static InputStream open(Path file) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+    try {
+      in.mark(2);
+      int magic = in.read() | (in.read() << 8);
+      in.reset();
+      return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    } catch (IOException ex) {
+      in.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Check if the file is encoded with this codec
+   * @param file File to check
+   * @return true, if the file is encoded with this codec
+   * @throws IOException If the file cannot be read
+   */
+  boolean isEncoded(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      boolean gzip = (in.read() | (in.read() << 8)) == GZIPInputStream.GZIP_MAGIC;
+      // the compression level is not recorded, hence any gzip file is fine for both gzip codecs
+      return gzip == (this != NONE);
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+/**
+ * Entry of the {@link CacheIndex}, describes the cached copy of a single URL
+ * @author mithun.gonsalvez
+ */
+public class CacheEntry {
+
+  /** URL of the page */
+  public final String url;
+
+  /** Hash of the (uncompressed) contents of the page, identifies the blob holding the contents */
+  public final String hash;
+
+  /** Title of the series the page was last fetched for, can be null (for entries cached before it was recorded) */
+  public final String title;
+
+  /** Last-Modified validator, can be null */
+  public final String lastModified;
+
+  /** ETag validator, can be null */
+  public final String eTag;
+
+  /** Time (epoch millis) when the page was last fetched or revalidated */
+  public final long fetchTime;
+
+  /** Time (epoch millis) when the cached copy was last used */
+  public final long accessTime;
+
+  /** Size of the blob on disk in bytes */
+  public final long size;
+
+  /** Revision of the page on the wiki the cached copy belongs to, or -1 if it is not known */
+  public final long revision;
+
+  /**
+   * Constructor
+   * @param url URL of the page
+   * @param hash Hash of the contents of the page
+   * @param title Title of the series the page was fetched for, can be null
+   * @param lastModified Last-Modified validator, can be null
+   * @param eTag ETag validator, can be null
+   * @param fetchTime Time (epoch millis) when the page was last fetched or revalidated
+   * @param accessTime Time (epoch millis) when the cached copy was last used
+   * @param size Size of the blob on disk in bytes
+   * @param revision Revision of the page on the wiki the cached copy belongs to, or -1 if it is not known
+   */
+  public CacheEntry(String url, String hash, String title, String lastModified, String eTag, long fetchTime,
+                    long accessTime, long size, long revision) {
+    this.url = url;
+    this.hash = hash;
+    this.title = title;
+    this.lastModified = lastModified;
+    this.eTag = eTag;
+    this.fetchTime = fetchTime;
+    this.accessTime = accessTime;
+    this.size = size;
+    this.revision = revision;
+  }
+
+  /**
+   * Check if the entry has any validator that can be used to revalidate it
+   * @return true, if there is at least one validator
+   */
+  public boolean hasValidator() {
+    return this.lastModified != null || this.eTag != null;
+  }
+
+  /**
+   * Returns a copy of this entry that has been revalidated at the provided time
+   * @param time Time (epoch millis) of the revalidation
+   * @return Revalidated entry
+   */
+  public CacheEntry revalidated(long time) {
+    return new CacheEntry(this.url, this.hash, this.title, this.lastModified, this.eTag, time, time, this.size,
+            this.revision);
+  }
+
+  /**
+   * Returns a copy of this entry that has been used at the provided time
+   * @param time Time (epoch millis) when the cached copy was used
+   * @return Accessed entry
+   */
+  public CacheEntry accessed(long time) {
+    return new CacheEntry(this.url, this.hash, this.title, this.lastModified, this.eTag, this.fetchTime, time,
+            this.size, this.revision);
+  }
+
+  /**
+   * Returns a copy of this entry that is known to belong to the provided revision of the page
+   * @param revision Revision of the page on the wiki
+   * @return Entry with the revision
+   */
+  public CacheEntry withRevision(long revision) {
+    return new CacheEntry(this.url, this.hash, this.title, this.lastModified, this.eTag, this.fetchTime,
+            this.accessTime, this.size, revision);
+  }
+
+}
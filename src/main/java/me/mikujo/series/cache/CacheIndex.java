@@ -0,0 +1,347 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the page cache, maps each URL to the {@link CacheEntry} describing its cached copy<br>
+ * The whole index lives in a single file that is loaded in memory when the cache is opened, so that every lookup is a
+ * simple map lookup. The index also keeps a count of the entries referring to each blob, so that blobs can be dropped
+ * once nothing refers to them anymore<br>
+ * Several processes may share the cache directory, so the index is saved by merging it with the index file as saved
+ * by the others meanwhile (the most recently fetched entry of each URL wins), while holding a lock on the index file
+ * @author mithun.gonsalvez
+ */
+class CacheIndex {
+
+  /** Identifies the file as an index of the page cache */
+  private static final int MAGIC = 0x53544958;
+
+  /** Version of the layout of the index file */
+  private static final int VERSION = 3;
+
+  /** Version of the layout of the index file, before the revision of the page was recorded */
+  private static final int VERSION_2 = 2;
+
+  /** Version of the layout of the index file, before the title and the access time were recorded */
+  private static final int VERSION_1 = 1;
+
+  /** Suffix of the file that is locked while the index file is merged and saved */
+  private static final String LOCK_SUFFIX = ".lock";
+
+  /** File holding the index */
+  private final Path file;
+
+  /** URLs whose entries have been removed, along with the time when the removed entry was fetched */
+  private final Map<String, Long> removed = new HashMap<>();
+
+  /** Entries keyed by URL */
+  private final ConcurrentMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+  /** Number of entries referring to each blob, keyed by the hash of the blob */
+  private final Map<String, Integer> references = new HashMap<>();
+
+  /** Set when the index has changes that have not been saved yet */
+  private boolean dirty;
+
+  /**
+   * Constructor
+   * @param file File holding the index
+   */
+  private CacheIndex(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Load the index from the file, if the file does not exist, then an empty index is returned
+   * @param file File holding the index
+   * @return Index
+   * @throws IOException If the file cannot be read
+   */
+  static CacheIndex load(Path file) throws IOException {
+    CacheIndex index = new CacheIndex(file);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      int version = in.readInt() == MAGIC ? in.readInt() : -1;
+      if (version != VERSION && version != VERSION_2 && version != VERSION_1) {
+        System.err.println("Ignoring index of an unknown version: " + file);
+        return index;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        CacheEntry entry;
+        if (version == VERSION_1) { // entries are considered to be used when they were last fetched
+          String url = in.readUTF();
+          String hash = in.readUTF();
+          String lastModified = readOptional(in);
+          String eTag = readOptional(in);
+          long fetchTime = in.readLong();
+          entry = new CacheEntry(url, hash, null, lastModified, eTag, fetchTime, fetchTime, in.readLong(), -1);
+          index.dirty = true;
+        } else {
+          entry = readEntry(in, version);
+          index.dirty |= version != VERSION;
+        }
+        index.entries.put(entry.url, entry);
+        index.references.merge(entry.hash, 1, Integer::sum);
+      }
+    } catch (NoSuchFileException ex) {
+      // nothing cached yet
+    }
+    return index;
+  }
+
+  /**
+   * Read an entry, as written by {@link #writeEntry(DataOutputStream, CacheEntry)}
+   * @param in Stream to read from
+   * @return Entry
+   * @throws IOException If the entry cannot be read
+   */
+  static CacheEntry readEntry(DataInputStream in) throws IOException {
+    return readEntry(in, VERSION);
+  }
+
+  /**
+   * Read an entry written in the layout of the version, entries written before the revision was recorded have an
+   * unknown revision
+   * @param in Stream to read from
+   * @param version Version of the layout
+   * @return Entry
+   * @throws IOException If the entry cannot be read
+   */
+  private static CacheEntry readEntry(DataInputStream in, int version) throws IOException {
+    return new CacheEntry(in.readUTF(), in.readUTF(), readOptional(in), readOptional(in), readOptional(in),
+            in.readLong(), in.readLong(), in.readLong(), version == VERSION_2 ? -1 : in.readLong());
+  }
+
+  /**
+   * Write an entry
+   * @param out Stream to write to
+   * @param entry Entry to write
+   * @throws IOException If the entry cannot be written
+   */
+  static void writeEntry(DataOutputStream out, CacheEntry entry) throws IOException {
+    out.writeUTF(entry.url);
+    out.writeUTF(entry.hash);
+    writeOptional(out, entry.title);
+    writeOptional(out, entry.lastModified);
+    writeOptional(out, entry.eTag);
+    out.writeLong(entry.fetchTime);
+    out.writeLong(entry.accessTime);
+    out.writeLong(entry.size);
+    out.writeLong(entry.revision);
+  }
+
+  /**
+   * Check if the entry is more recent than the other entry of the same URL, i.e. it was fetched (or revalidated) later,
+   * or was fetched at the same time but used later
+   * @param entry Entry
+   * @param other Other entry, can be null
+   * @return true, if the entry is more recent
+   */
+  static boolean isNewer(CacheEntry entry, CacheEntry other) {
+    return other == null || entry.fetchTime > other.fetchTime
+            || (entry.fetchTime == other.fetchTime && entry.accessTime > other.accessTime);
+  }
+
+  /**
+   * Returns the entry of the URL
+   * @param url URL
+   * @return Entry, or null if the URL is not cached
+   */
+  CacheEntry get(String url) {
+    return this.entries.get(url);
+  }
+
+  /**
+   * Add or replace the entry of its URL
+   * @param entry Entry to add
+   * @return Hash of the blob that is no longer referred by any entry, or null if there is no such blob
+   */
+  synchronized String put(CacheEntry entry) {
+    this.dirty = true;
+    this.references.merge(entry.hash, 1, Integer::sum);
+    CacheEntry previous = this.entries.put(entry.url, entry);
+    return previous == null ? null : release(previous.hash);
+  }
+
+  /**
+   * Remove the entry of the URL
+   * @param url URL
+   * @return Hash of the blob that is no longer referred by any entry, or null if there is no such blob
+   */
+  synchronized String remove(String url) {
+    CacheEntry previous = this.entries.remove(url);
+    if (previous == null) {
+      return null;
+    }
+    this.dirty = true;
+    this.removed.merge(url, previous.fetchTime, Math::max);
+    return release(previous.hash);
+  }
+
+  /**
+   * Returns a snapshot of all the entries
+   * @return Entries
+   */
+  List<CacheEntry> entries() {
+    return new ArrayList<>(this.entries.values());
+  }
+
+  /**
+   * Returns the size on disk of all the blobs referred by the entries, blobs referred by several entries are
+   * counted once
+   * @return Size in bytes
+   */
+  synchronized long getSize() {
+    Set<String> hashes = new HashSet<>();
+    long size = 0;
+    for (CacheEntry entry : this.entries.values()) {
+      if (hashes.add(entry.hash)) {
+        size += entry.size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Check if any entry refers to the blob
+   * @param hash Hash of the blob
+   * @return true, if the blob is referred by an entry
+   */
+  synchronized boolean isReferenced(String hash) {
+    return this.references.containsKey(hash);
+  }
+
+  /**
+   * Merge the entries saved by other processes since the index was loaded, unless they have been removed from this
+   * index in the mean time. Blobs that are no longer referred as a result are left in place, they may still be used
+   * by the other processes
+   * @param timeout Maximum time (in millis) to wait for the lock on the index file
+   * @throws IOException If the index file cannot be read
+   */
+  synchronized void reload(long timeout) throws IOException {
+    try (FileChannel channel = FileChannel.open(lockFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock ignored = lock(channel, timeout)) {
+      merge();
+    }
+  }
+
+  /**
+   * Save the index, if it has changed since it was loaded or last saved<br>
+   * The index is first merged with the entries saved by the other processes meanwhile (see {@link #reload(long)}), and
+   * is then written to a temporary file which replaces the index file, all while holding the lock on the index file
+   * @param timeout Maximum time (in millis) to wait for the lock on the index file
+   * @throws IOException If the index cannot be written
+   */
+  synchronized void save(long timeout) throws IOException {
+    if (!this.dirty) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(lockFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock ignored = lock(channel, timeout)) {
+      merge();
+      Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.entries.size());
+        for (CacheEntry entry : this.entries.values()) {
+          writeEntry(out, entry);
+        }
+      }
+      Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    this.dirty = false;
+  }
+
+  /**
+   * Merge the entries of the index file into this index, the caller is expected to hold the lock on the index file
+   * @throws IOException If the index file cannot be read
+   */
+  private void merge() throws IOException {
+    for (CacheEntry entry : load(this.file).entries.values()) {
+      Long removedFetchTime = this.removed.get(entry.url);
+      if ((removedFetchTime == null || entry.fetchTime > removedFetchTime)
+              && isNewer(entry, this.entries.get(entry.url))) {
+        put(entry);
+      }
+    }
+  }
+
+  /**
+   * Lock the index file
+   * @param channel Channel of the lock file
+   * @param timeout Maximum time (in millis) to wait for the lock
+   * @return Lock
+   * @throws IOException If the lock cannot be acquired in time
+   */
+  private FileLock lock(FileChannel channel, long timeout) throws IOException {
+    FileLock lock = CacheLock.lock(channel, "the index " + this.file, timeout);
+    if (lock == null) {
+      throw new IOException("Timed out waiting for the lock of the index " + this.file);
+    }
+    return lock;
+  }
+
+  /**
+   * Returns the file that is locked while the index file is merged and saved
+   * @return Lock file
+   */
+  private Path lockFile() {
+    return this.file.resolveSibling(this.file.getFileName() + LOCK_SUFFIX);
+  }
+
+  /**
+   * Drop a reference to the blob
+   * @param hash Hash of the blob
+   * @return The hash, if this was the last reference to the blob, else null
+   */
+  private String release(String hash) {
+    Integer count = this.references.computeIfPresent(hash, (k, v) -> v == 1 ? null : v - 1);
+    return count == null ? hash : null;
+  }
+
+  private static String readOptional(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeOptional(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.mikujo.series.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lock guarding the cached copy of a URL across the processes sharing the cache directory<br>
+ * The lock is held on a small file per URL, which also records the entry of the URL as last fetched by any of the
+ * processes, so that a process that waited for the lock picks up the copy fetched by the owner instead of fetching it
+ * again. Locks are released by the operating system when their owner dies, a fetch that was in progress when that
+ * happened is detected by the next owner through a marker left in the file
+ * @author mithun.gonsalvez
+ */
+final class CacheLock implements Closeable {
+
+  /** Identifies the file as a lock of the page cache */
+  private static final int MAGIC = 0x53544c4b;
+
+  /** Version of the layout of the lock file */
+  private static final int VERSION = 2;
+
+  /** Time (in millis) between attempts to acquire a lock held by another process */
+  private static final long POLL_INTERVAL = 50;
+
+  /** Identifies this process (typically as pid@host) to the other processes */
+  private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+
+  /** URL guarded by the lock */
+  private final String url;
+
+  /** Channel of the lock file, null if the lock could not be acquired */
+  private final FileChannel channel;
+
+  /** Lock on the lock file, null if the lock could not be acquired */
+  private final FileLock lock;
+
+  /** Entry recorded in the lock file, can be null */
+  private CacheEntry entry;
+
+  /** Set while a fetch by this process is in progress */
+  private boolean fetching;
+
+  /**
+   * Constructor
+   * @param url URL guarded by the lock
+   * @param channel Channel of the lock file, null if the lock could not be acquired
+   * @param lock Lock on the lock file, null if the lock could not be acquired
+   */
+  private CacheLock(String url, FileChannel channel, FileLock lock) {
+    this.url = url;
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * Acquire the lock of the URL, waiting for the process holding it (if any) to release it<br>
+   * If the lock cannot be acquired in time, then the returned lock is not held, it neither records nor returns an
+   * entry, and the caller goes ahead as if there were no other processes (writes to the cache are atomic anyway)
+   * @param file Lock file of the URL
+   * @param url URL guarded by the lock
+   * @param timeout Maximum time (in millis) to wait for the lock
+   * @return Lock
+   * @throws IOException If the lock file cannot be read or written
+   */
+  static CacheLock acquire(Path file, String url, long timeout) throws IOException {
+    Files.createDirectories(file.getParent());
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      FileLock lock = lock(channel, "[" + url + "]", timeout);
+      if (lock == null) {
+        System.err.println("Timed out waiting for the lock of [" + url + "], going ahead without it");
+        channel.close();
+        return new CacheLock(url, null, null);
+      }
+      CacheLock cacheLock = new CacheLock(url, channel, lock);
+      cacheLock.read();
+      return cacheLock;
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Acquire an exclusive lock on the channel, waiting for whoever holds the lock (another process or another cache
+   * of this process) to release it
+   * @param channel Channel of the file to lock
+   * @param what What the lock guards, reported while waiting
+   * @param timeout Maximum time (in millis) to wait for the lock
+   * @return Lock, or null if it could not be acquired in time
+   * @throws IOException If the file cannot be locked, or the thread is interrupted while waiting
+   */
+  static FileLock lock(FileChannel channel, String what, long timeout) throws IOException {
+    long deadline = System.currentTimeMillis() + timeout;
+    boolean reported = false;
+    while (true) {
+      try {
+        FileLock lock = channel.tryLock();
+        if (lock != null) {
+          return lock;
+        }
+      } catch (OverlappingFileLockException ex) {
+        // held by another cache on the same directory in this process
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        return null;
+      }
+      if (!reported) {
+        System.err.println("Waiting for another process to release the lock of " + what);
+        reported = true;
+      }
+      try {
+        Thread.sleep(POLL_INTERVAL);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the lock of " + what);
+      }
+    }
+  }
+
+  /**
+   * Returns the entry last recorded by any of the processes
+   * @return Entry, or null if none has been recorded (or the lock is not held)
+   */
+  CacheEntry getEntry() {
+    return this.entry;
+  }
+
+  /**
+   * Mark the start of a fetch, if this process dies before the fetch is committed, the next owner of the lock detects
+   * it
+   * @throws IOException If the lock file cannot be written
+   */
+  void begin() throws IOException {
+    this.fetching = true;
+    write();
+  }
+
+  /**
+   * Record the entry of the URL for the other processes, once its blob is in place
+   * @param entry Entry of the URL
+   * @throws IOException If the lock file cannot be written
+   */
+  void commit(CacheEntry entry) throws IOException {
+    this.entry = entry;
+    this.fetching = false;
+    write();
+  }
+
+  /**
+   * Release the lock, a fetch that was begun but not committed (i.e. it failed) is no longer marked as in progress
+   * @throws IOException If the lock cannot be released
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.channel == null) {
+      return;
+    }
+    try {
+      if (this.fetching) {
+        this.fetching = false;
+        write();
+      }
+      this.lock.release();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Read the lock file
+   * @throws IOException If the lock file cannot be read
+   */
+  private void read() throws IOException {
+    long size = this.channel.size();
+    if (size == 0) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining() && this.channel.read(buffer, buffer.position()) != -1) {
+      // read the whole file
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position()))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return;
+      }
+      boolean fetching = in.readBoolean();
+      String owner = in.readUTF();
+      if (fetching) {
+        System.err.println("Detected a stale lock of [" + this.url + "], the fetch by [" + owner
+                + "] did not complete");
+      }
+      this.entry = in.readBoolean() ? CacheIndex.readEntry(in) : null;
+    } catch (IOException ex) {
+      System.err.println("Ignoring the unreadable lock file of [" + this.url + "]: " + ex);
+      this.entry = null;
+    }
+  }
+
+  /**
+   * Write the lock file
+   * @throws IOException If the lock file cannot be written
+   */
+  private void write() throws IOException {
+    if (this.channel == null) {
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeBoolean(this.fetching);
+      out.writeUTF(OWNER);
+      out.writeBoolean(this.entry != null);
+      if (this.entry != null) {
+        CacheIndex.writeEntry(out, this.entry);
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    while (buffer.hasRemaining()) {
+      this.channel.write(buffer, buffer.position());
+    }
+    this.channel.truncate(buffer.limit());
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A page that is available in the {@link PageCache}
+ * @author mithun.gonsalvez
+ */
+public class CachedPage {
+
+  /** URL of the page */
+  public final String url;
+
+  /** Hash of the contents of the page */
+  public final String hash;
+
+  /** File holding the (possibly compressed) contents of the page */
+  public final Path file;
+
+  /**
+   * Constructor
+   * @param url URL of the page
+   * @param hash Hash of the contents of the page
+   * @param file File holding the contents of the page
+   */
+  CachedPage(String url, String hash, Path file) {
+    this.url = url;
+    this.hash = hash;
+    this.file = file;
+  }
+
+  /**
+   * Open the page for reading, the contents are decompressed while they are read
+   * @return Stream with the contents of the page
+   * @throws IOException If the page cannot be read
+   */
+  public InputStream open() throws IOException {
+    return CacheCodec.open(this.file);
+  }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.utils.Utils;
+import me.mikujo.series.wiki.PageLayout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the episodes parsed out of the cached pages<br>
+ * Each entry is keyed by the hash of the contents of the page and a fingerprint of everything that influences the
+ * parsing (layout, hints, seasons to skip), see {@link #key(String, String)}. When neither the page nor the settings
+ * change, the parsed episodes are read back from a compact binary file instead of parsing the page again<br>
+ * The cache also holds the layout learned from the page of each series, see {@link PageLayout}, which is keyed by the
+ * page and the fingerprint alone (see {@link #layoutKey(String, String)}), so that it outlives the edits of the page
+ * @author mithun.gonsalvez
+ */
+public class EpisodeCache {
+
+  /** Identifies the file as an entry of the episode cache */
+  private static final int MAGIC = 0x53544550;
+
+  /** Identifies the file as a layout learned from a page */
+  private static final int LAYOUT_MAGIC = 0x5354504C;
+
+  /** Version of the layout of the entries */
+  private static final int VERSION = 1;
+
+  /** Type of the air date: unknown */
+  private static final byte DATE_NONE = 0;
+
+  /** Type of the air date: {@link LocalDate} */
+  private static final byte DATE_LOCAL_DATE = 1;
+
+  /** Type of the air date: {@link YearMonth} */
+  private static final byte DATE_YEAR_MONTH = 2;
+
+  /** Type of the air date: {@link Year} */
+  private static final byte DATE_YEAR = 3;
+
+  /** Cache directory */
+  private final Path dir;
+
+  /**
+   * Constructor
+   * @param dir Cache directory
+   */
+  private EpisodeCache(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Open the cache in the directory, creating the directory if required
+   * @param dir Cache directory
+   * @return Episode cache
+   * @throws IOException If the directory cannot be created
+   */
+  public static EpisodeCache open(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    return new EpisodeCache(dir);
+  }
+
+  /**
+   * Build the key of an entry
+   * @param pageHash Hash of the contents of the page
+   * @param fingerprint Fingerprint of everything that influences how the page is parsed
+   * @return Key
+   */
+  public static String key(String pageHash, String fingerprint) {
+    MessageDigest digest = Utils.newDigest();
+    digest.update(pageHash.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+    return Utils.toHex(digest.digest());
+  }
+
+  /**
+   * Build the key of the layout learned from a page
+   * @param source Source of the page, see {@link me.mikujo.series.wiki.WikiParser#getSource}
+   * @param fingerprint Fingerprint of everything that influences how the page is parsed
+   * @return Key
+   */
+  public static String layoutKey(String source, String fingerprint) {
+    return key("layout:" + source, fingerprint);
+  }
+
+  /**
+   * Returns the episodes cached under the key
+   * @param key Key, as built by {@link #key(String, String)}
+   * @return Episodes (seasons of episodes), or null if nothing is cached under the key
+   * @throws IOException If the entry cannot be read
+   */
+  public List<List<Episode>> get(String key) throws IOException {
+    Path file = path(key);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      int seasonCount = in.readInt();
+      List<List<Episode>> seasons = new ArrayList<>(seasonCount);
+      for (int i = 0; i < seasonCount; i++) {
+        int episodeCount = in.readInt();
+        List<Episode> season = new ArrayList<>(episodeCount);
+        for (int j = 0; j < episodeCount; j++) {
+          int seasonNo = in.readInt();
+          int episodeNo = in.readInt();
+          String title = in.readUTF();
+          season.add(new Episode(seasonNo, episodeNo, title, readDate(in)));
+        }
+        seasons.add(season);
+      }
+      // the modification time doubles as the time when the entry was last used, see compact(long)
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return seasons;
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Cache the episodes under the key, the entry is written to a temporary file which is then moved in place
+   * @param key Key, as built by {@link #key(String, String)}
+   * @param seasons Episodes (seasons of episodes)
+   * @throws IOException If the entry cannot be written
+   */
+  public void put(String key, List<List<Episode>> seasons) throws IOException {
+    write(key, out -> {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(seasons.size());
+      for (List<Episode> season : seasons) {
+        out.writeInt(season.size());
+        for (Episode episode : season) {
+          out.writeInt(episode.season);
+          out.writeInt(episode.episode);
+          out.writeUTF(episode.title);
+          writeDate(out, episode.date);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the layout learned from a page
+   * @param key Key, as built by {@link #layoutKey(String, String)}
+   * @return Layout, or an empty layout if none was learned
+   * @throws IOException If the entry cannot be read
+   */
+  public PageLayout getLayout(String key) throws IOException {
+    Path file = path(key);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != LAYOUT_MAGIC || in.readInt() != VERSION) {
+        return new PageLayout();
+      }
+      int seasonCount = in.readInt();
+      Map<String, PageLayout.Season> seasons = new HashMap<>(seasonCount);
+      for (int i = 0; i < seasonCount; i++) {
+        String id = in.readUTF();
+        int columnCount = in.readInt();
+        List<String> header = new ArrayList<>(columnCount);
+        for (int j = 0; j < columnCount; j++) {
+          header.add(in.readUTF());
+        }
+        seasons.put(id, new PageLayout.Season(header, in.readInt(), in.readInt(), in.readInt()));
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return new PageLayout(seasons);
+    } catch (NoSuchFileException ex) {
+      return new PageLayout();
+    }
+  }
+
+  /**
+   * Store the layout learned from a page
+   * @param key Key, as built by {@link #layoutKey(String, String)}
+   * @param layout Layout
+   * @throws IOException If the entry cannot be written
+   */
+  public void putLayout(String key, PageLayout layout) throws IOException {
+    Map<String, PageLayout.Season> seasons = layout.getSeasons();
+    write(key, out -> {
+      out.writeInt(LAYOUT_MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(seasons.size());
+      for (Map.Entry<String, PageLayout.Season> entry : seasons.entrySet()) {
+        PageLayout.Season season = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeInt(season.header.size());
+        for (String text : season.header) {
+          out.writeUTF(text);
+        }
+        out.writeInt(season.titleColumn);
+        out.writeInt(season.dateColumn);
+        out.writeInt(season.datePattern);
+      }
+    });
+  }
+
+  /**
+   * Write an entry to a temporary file which is then moved in place
+   * @param key Key of the entry
+   * @param writer Writes the contents of the entry
+   * @throws IOException If the entry cannot be written
+   */
+  private void write(String key, EntryWriter writer) throws IOException {
+    Path file = path(key);
+    Files.createDirectories(file.getParent());
+    Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        writer.write(out);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Compact the cache, i.e. remove the entries that have not been used for longer than the maximum age<br>
+   * Entries are tiny compared to the pages, so they are bounded only by their age
+   * @param maxAge Maximum time (in millis) since an entry was last used
+   * @return Number of entries removed
+   * @throws IOException If there is a problem while deleting the entries
+   */
+  public int compact(long maxAge) throws IOException {
+    long expiry = System.currentTimeMillis() - maxAge;
+    int count = 0;
+    try (DirectoryStream<Path> subDirs = Files.newDirectoryStream(this.dir, Files::isDirectory)) {
+      for (Path subDir : subDirs) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(subDir)) {
+          for (Path file : files) {
+            if (Files.getLastModifiedTime(file).toMillis() < expiry && Files.deleteIfExists(file)) {
+              count++;
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the path of the entry, entries are spread across sub directories named after the first two characters
+   * of the key to keep the directories small
+   * @param key Key of the entry
+   * @return Path of the entry
+   */
+  private Path path(String key) {
+    return this.dir.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+  private static Temporal readDate(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case DATE_NONE:
+        return null;
+      case DATE_LOCAL_DATE:
+        return LocalDate.ofEpochDay(in.readLong());
+      case DATE_YEAR_MONTH:
+        return YearMonth.of(in.readInt(), in.readByte());
+      case DATE_YEAR:
+        return Year.of(in.readInt());
+      default:
+        throw new IOException("Unknown type of date [" + type + "]");
+    }
+  }
+
+  private static void writeDate(DataOutputStream out, Temporal date) throws IOException {
+    if (date == null) {
+      out.writeByte(DATE_NONE);
+    } else if (date instanceof LocalDate) {
+      out.writeByte(DATE_LOCAL_DATE);
+      out.writeLong(((LocalDate) date).toEpochDay());
+    } else if (date instanceof YearMonth) {
+      out.writeByte(DATE_YEAR_MONTH);
+      out.writeInt(((YearMonth) date).getYear());
+      out.writeByte(((YearMonth) date).getMonthValue());
+    } else if (date instanceof Year) {
+      out.writeByte(DATE_YEAR);
+      out.writeInt(((Year) date).getValue());
+    } else {
+      throw new IOException("Unknown type [" + date.getClass().getName() + "]");
+    }
+  }
+
+  /**
+   * Writes the contents of an entry
+   */
+  private interface EntryWriter {
+
+    /**
+     * Write the contents
+     * @param out Stream to write to
+     * @throws IOException If the contents cannot be written
+     */
+    void write(DataOutputStream out) throws IOException;
+
+  }
+
+}
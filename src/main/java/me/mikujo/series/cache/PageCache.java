@@ -0,0 +1,1028 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.cache;
+
+import me.mikujo.series.net.WebClient;
+import me.mikujo.series.net.WebResponse;
+import me.mikujo.series.utils.Utils;
+import me.mikujo.series.wiki.Keyz;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of the downloaded pages<br>
+ * The contents of the pages are stored as blobs named after the hash of their contents, so that pages with identical
+ * contents are stored only once. A single index maps each URL to its blob along with the validators (Last-Modified and
+ * ETag) that are used to revalidate it, see {@link CacheIndex}. Blobs are stored as per the {@link CacheCodec} of the
+ * cache directory, which is picked when the directory is first used and recorded in it<br>
+ * Several processes can share the cache directory: fetches of a URL are serialized across the processes by a
+ * {@link CacheLock}, through which a process also picks up the copy fetched by another. Files are written to a
+ * temporary file first and then moved in place, the index is merged with the changes of the other processes when it
+ * is saved, and blobs are deleted only by a process that has the directory to itself (see
+ * {@link #compact(long, long)})<br>
+ * The cache must be closed to persist the index
+ * @author mithun.gonsalvez
+ */
+public class PageCache implements Closeable {
+
+  /** Name of the file that records the codec of the cache directory */
+  private static final String CODEC_FILE = ".codec";
+
+  /** Name of the index file */
+  private static final String INDEX_FILE = "index";
+
+  /** Name of the directory holding the blobs */
+  private static final String BLOBS_DIR = "blobs";
+
+  /** Name of the directory holding the lock file of each URL */
+  private static final String LOCKS_DIR = "locks";
+
+  /** Name of the file every process using the cache holds a shared lock on */
+  private static final String USERS_FILE = ".users";
+
+  /** Suffix of the lock files */
+  private static final String LOCK_SUFFIX = ".lock";
+
+  /** Suffix of the file that holds the Last-Modified validator of caches created before the index */
+  private static final String LEGACY_SUFFIX_DATE = "_date";
+
+  /** Suffix of the file that holds the ETag validator of caches created before the index */
+  private static final String LEGACY_SUFFIX_ETAG = "_etag";
+
+  /** Size of the buffer used while copying */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Number of caches of this process open on each directory, keyed by the absolute path of the directory */
+  private static final Map<Path, Integer> OPEN = new HashMap<>();
+
+  /** Cache directory */
+  private final Path dir;
+
+  /** Directory holding the blobs */
+  private final Path blobsDir;
+
+  /** Codec in which the pages are written */
+  private final CacheCodec codec;
+
+  /** Index of the cached pages */
+  private final CacheIndex index;
+
+  /** Directory holding the lock file of each URL */
+  private final Path locksDir;
+
+  /** Maximum time (in millis) to wait for a lock held by another process */
+  private final long lockTimeout;
+
+  /** Channel of the file every process using the cache holds a shared lock on */
+  private final FileChannel usersChannel;
+
+  /**
+   * Lock on the users file, shared while using the cache and exclusive while compacting it, null if another cache of
+   * this process on the same directory holds it
+   */
+  private FileLock usersLock;
+
+  /** Monitors guarding each URL, so that concurrent fetches of the same URL do not overwrite each other */
+  private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+  /** Time (epoch millis) when the cache was opened, entries fetched since then are never evicted */
+  private final long openTime = System.currentTimeMillis();
+
+  /**
+   * Reads a page while it is being downloaded, see {@link #fetch(String, String, boolean, long, DownloadReader)}
+   */
+  public interface DownloadReader {
+
+    /**
+     * Read the page
+     * @param in Stream with the contents of the page, as they are downloaded
+     * @throws IOException If the page cannot be read
+     */
+    void read(InputStream in) throws IOException;
+
+  }
+
+  /**
+   * Transforms a page as it is downloaded, before it is cached (and read), see
+   * {@link #fetch(String, String, boolean, long, DownloadReader, DownloadTransform)}
+   */
+  public interface DownloadTransform {
+
+    /**
+     * Transform the page
+     * @param in Stream with the contents of the page, as they are downloaded, it is closed along with the response
+     * @return Stream with the contents to cache
+     * @throws IOException If the page cannot be read
+     */
+    InputStream transform(InputStream in) throws IOException;
+
+  }
+
+  /**
+   * Constructor
+   * @param dir Cache directory
+   * @param codec Codec in which the pages are written
+   * @param index Index of the cached pages
+   * @param lockTimeout Maximum time (in millis) to wait for a lock held by another process
+   * @param usersChannel Channel of the file every process using the cache holds a shared lock on
+   * @param usersLock Shared lock on the users file, can be null
+   */
+  private PageCache(Path dir, CacheCodec codec, CacheIndex index, long lockTimeout, FileChannel usersChannel,
+                    FileLock usersLock) {
+    this.dir = dir;
+    this.blobsDir = dir.resolve(BLOBS_DIR);
+    this.locksDir = dir.resolve(LOCKS_DIR);
+    this.codec = codec;
+    this.index = index;
+    this.lockTimeout = lockTimeout;
+    this.usersChannel = usersChannel;
+    this.usersLock = usersLock;
+  }
+
+  /**
+   * Open the cache in the directory, creating the directory if required<br>
+   * The codec recorded in the directory is used, if none has been recorded yet, then the codec specified by the
+   * setting {@link Keyz#CACHE_CODEC} is recorded and used. Entries written by another codec remain readable<br>
+   * If another process is compacting the cache, then this waits for the compaction to complete
+   * @param dir Cache directory
+   * @return Page cache
+   * @throws IOException If the directory cannot be created or read
+   */
+  public static PageCache open(Path dir) throws IOException {
+    Files.createDirectories(dir.resolve(BLOBS_DIR));
+    FileChannel usersChannel = FileChannel.open(dir.resolve(USERS_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      FileLock usersLock;
+      synchronized (OPEN) {
+        try {
+          usersLock = usersChannel.lock(0, Long.MAX_VALUE, true);
+        } catch (OverlappingFileLockException ex) {
+          usersLock = null; // held by another cache of this process on the directory
+        }
+        OPEN.merge(dir.toAbsolutePath().normalize(), 1, Integer::sum);
+      }
+
+      Path codecFile = dir.resolve(CODEC_FILE);
+      CacheCodec codec;
+      if (Files.exists(codecFile)) {
+        codec = CacheCodec.forName(new String(Files.readAllBytes(codecFile), StandardCharsets.UTF_8));
+      } else {
+        codec = CacheCodec.forName(System.getProperty(Keyz.CACHE_CODEC, CacheCodec.GZIP.getName()));
+        Path temp = Files.createTempFile(dir, CODEC_FILE, ".tmp");
+        Files.write(temp, codec.getName().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, codecFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      long lockTimeout = TimeUnit.SECONDS.toMillis(Long.parseLong(System.getProperty(Keyz.CACHE_LOCK_TIMEOUT,
+              "300")));
+      return new PageCache(dir, codec, CacheIndex.load(dir.resolve(INDEX_FILE)), lockTimeout, usersChannel,
+              usersLock);
+    } catch (IOException | RuntimeException ex) {
+      closeUsers(dir, usersChannel);
+      throw ex;
+    }
+  }
+
+  /**
+   * Returns the codec in which the pages are written
+   * @return Codec
+   */
+  public CacheCodec getCodec() {
+    return this.codec;
+  }
+
+  /**
+   * Fetch the URL and return the cached copy<br>
+   * If the URL contents have not changed, then fetch it from the cache<br>
+   * Safe to be invoked from multiple threads, fetches of the same URL are serialized
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @return Cached page
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetch(String title, String strUrl, boolean offline) throws IOException {
+    return fetch(title, strUrl, offline, 0);
+  }
+
+  /**
+   * Fetch the URL and return the cached copy, unless the cached copy is recent enough to be used as is<br>
+   * Safe to be invoked from multiple threads, fetches of the same URL are serialized
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it
+   * @return Cached page
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetch(String title, String strUrl, boolean offline, long maxAge) throws IOException {
+    return fetch(title, strUrl, offline, maxAge, null);
+  }
+
+  /**
+   * Fetch the URL and return the cached copy, unless the cached copy is recent enough to be used as is<br>
+   * If the page is downloaded, then it is passed to the reader as it is being downloaded while it is also written to
+   * the cache, so that the page is read (e.g. parsed) along with the download instead of being read back from the
+   * cache afterwards. The cached copy is committed only once the download completes, whether or not the reader
+   * succeeds<br>
+   * Safe to be invoked from multiple threads, fetches of the same URL are serialized
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it
+   * @param reader Reads the page if it is downloaded, it is not invoked if the cached copy is used, can be null
+   * @return Cached page
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetch(String title, String strUrl, boolean offline, long maxAge, DownloadReader reader)
+          throws IOException {
+    return fetch(title, strUrl, offline, maxAge, reader, null);
+  }
+
+  /**
+   * Fetch the URL, caching the page as transformed by the transform (e.g. pruned down to what is read out of it), see
+   * {@link #fetch(String, String, boolean, long, DownloadReader)}<br>
+   * The validators of the page are saved along with the transformed copy, so it is revalidated as the page itself
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it
+   * @param reader Reads the transformed page if it is downloaded, it is not invoked if the cached copy is used, can be
+   * null
+   * @param transform Transforms the page as it is downloaded, can be null
+   * @return Cached page
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetch(String title, String strUrl, boolean offline, long maxAge, DownloadReader reader,
+                          DownloadTransform transform) throws IOException {
+    return fetch(title, strUrl, true, entry -> (offline && entry.hasValidator()) || isFresh(entry, maxAge), reader,
+            transform);
+  }
+
+  /**
+   * Fetch a resource that is not a page by itself (e.g. a response of the wiki API) and return the cached copy<br>
+   * Unlike pages, there are no legacy cache files to import resources from<br>
+   * Safe to be invoked from multiple threads, fetches of the same URL are serialized
+   * @param title Title of the series the resource belongs to
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it, {@link Long#MAX_VALUE} if the contents of the URL never change (e.g. it addresses a
+   * specific revision)
+   * @return Cached copy of the resource
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetchResource(String title, String strUrl, boolean offline, long maxAge) throws IOException {
+    return fetchResource(title, strUrl, offline, maxAge, null);
+  }
+
+  /**
+   * Fetch a resource that is not a page by itself, passing it to the reader as it is being downloaded, see
+   * {@link #fetchResource(String, String, boolean, long)} and
+   * {@link #fetch(String, String, boolean, long, DownloadReader)}
+   * @param title Title of the series the resource belongs to
+   * @param strUrl URL in string form
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   * without revalidating it, {@link Long#MAX_VALUE} if the contents of the URL never change
+   * @param reader Reads the resource if it is downloaded, it is not invoked if the cached copy is used, can be null
+   * @return Cached copy of the resource
+   * @throws IOException If something goes wrong
+   */
+  public CachedPage fetchResource(String title, String strUrl, boolean offline, long maxAge, DownloadReader reader)
+          throws IOException {
+    return fetch(title, strUrl, false, entry -> offline || isFresh(entry, maxAge), reader, null);
+  }
+
+  /**
+   * Import the copy of the page that was cached (named after the title) before the index was introduced, unless the
+   * URL has been cached already<br>
+   * A page shared by several series was cached under the title of each of them, importing them before fetching
+   * ensures that the copy is found whichever of the series fetches the page first
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @throws IOException If there is a problem while importing
+   */
+  public void importLegacy(String title, String strUrl) throws IOException {
+    synchronized (lock(strUrl)) {
+      try (CacheLock fileLock = CacheLock.acquire(lockPath(strUrl), strUrl, this.lockTimeout)) {
+        if (current(strUrl, fileLock) == null) {
+          CacheEntry entry = importLegacyFiles(title, strUrl);
+          if (entry != null) {
+            fileLock.commit(entry);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the cached copy of the URL as is, without connecting
+   * @param strUrl URL in string form
+   * @return Cached copy, or null if the URL is not cached
+   */
+  public CachedPage peek(String strUrl) {
+    CacheEntry entry = this.index.get(strUrl);
+    return entry == null ? null : new CachedPage(strUrl, entry.hash, blobPath(entry.hash));
+  }
+
+  /**
+   * Fetch the URL and return the cached copy
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param legacy Import the legacy cache files of the title, if the URL has not been cached yet
+   * @param useCached Decides whether the cached copy can be used as is, without revalidating it
+   * @param reader Reads the page if it is downloaded, can be null
+   * @param transform Transforms the page as it is downloaded, can be null
+   * @return Cached page
+   * @throws IOException If something goes wrong
+   */
+  private CachedPage fetch(String title, String strUrl, boolean legacy, Predicate<CacheEntry> useCached,
+                           DownloadReader reader, DownloadTransform transform) throws IOException {
+    System.err.println("Fetching: " + title + " Url: " + strUrl);
+
+    CacheEntry entry;
+    synchronized (lock(strUrl)) {
+      try (CacheLock fileLock = CacheLock.acquire(lockPath(strUrl), strUrl, this.lockTimeout)) {
+        entry = current(strUrl, fileLock);
+        if (entry == null && legacy) {
+          entry = importLegacyFiles(title, strUrl);
+          if (entry != null) {
+            fileLock.commit(entry);
+          }
+        }
+        if (entry == null || !useCached.test(entry)) {
+          fileLock.begin();
+          CacheEntry fetched = fetchOrStale(title, strUrl, entry, reader, transform);
+          if (fetched != entry) {
+            fileLock.commit(fetched);
+          }
+          entry = fetched;
+        }
+      }
+      if (entry.accessTime < this.openTime) {
+        entry = entry.accessed(System.currentTimeMillis());
+        this.index.put(entry);
+      }
+    }
+    return new CachedPage(strUrl, entry.hash, blobPath(entry.hash));
+  }
+
+  /**
+   * Returns the current entry of the URL, the caller is expected to hold the monitor and the lock of the URL<br>
+   * If another process has fetched the URL since the index was loaded, then the entry recorded by it in the lock file
+   * is more recent, and replaces the entry in the index
+   * @param strUrl URL in string form
+   * @param fileLock Lock of the URL
+   * @return Entry, or null if the URL is not cached
+   */
+  private CacheEntry current(String strUrl, CacheLock fileLock) {
+    CacheEntry entry = this.index.get(strUrl);
+    CacheEntry shared = fileLock.getEntry();
+    if (shared != null && CacheIndex.isNewer(shared, entry) && Files.exists(blobPath(shared.hash))) {
+      this.index.put(shared);
+      entry = shared;
+    }
+    if (entry != null && !Files.exists(blobPath(entry.hash))) { // e.g. deleted by hand, so fetch it again
+      this.index.remove(strUrl);
+      entry = null;
+    }
+    return entry;
+  }
+
+  /**
+   * Check if the cached copy was fetched or revalidated recently enough to be used without revalidating it
+   * @param entry Entry of the cached copy
+   * @param maxAge Maximum time (in millis) since the cached copy was fetched or revalidated
+   * @return true, if the cached copy can be used as is
+   */
+  private static boolean isFresh(CacheEntry entry, long maxAge) {
+    return System.currentTimeMillis() - entry.fetchTime < maxAge;
+  }
+
+  /**
+   * Fetch the URL, if that fails even after the retries and there is a cached copy, then the cached copy is used
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param entry Entry of the cached copy, can be null
+   * @param reader Reads the page if it is downloaded, can be null
+   * @param transform Transforms the page as it is downloaded, can be null
+   * @return Entry of the fetched, revalidated or cached copy
+   * @throws IOException If the fetch fails and there is no cached copy
+   */
+  private CacheEntry fetchOrStale(String title, String strUrl, CacheEntry entry, DownloadReader reader,
+                                  DownloadTransform transform) throws IOException {
+    try {
+      return fetch(title, strUrl, entry, reader, transform);
+    } catch (InterruptedIOException ex) {
+      throw ex;
+    } catch (IOException ex) {
+      if (entry == null) {
+        throw ex;
+      }
+      System.err.println("Unable to revalidate [" + title + "], using the copy cached at ["
+              + Instant.ofEpochMilli(entry.fetchTime) + "]: " + ex);
+      return entry;
+    }
+  }
+
+  /**
+   * Fetch the URL, the caller is expected to hold the monitor for the URL<br>
+   * The cached copy (if any) is revalidated using the ETag and/or the Last-Modified time saved along with it
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param entry Entry of the cached copy, can be null
+   * @param reader Reads the page if it is downloaded, can be null
+   * @param transform Transforms the page as it is downloaded, can be null
+   * @return Entry of the fetched or revalidated copy
+   * @throws IOException If something goes wrong
+   */
+  private CacheEntry fetch(String title, String strUrl, CacheEntry entry, DownloadReader reader,
+                           DownloadTransform transform) throws IOException {
+    Map<String, String> headers = new HashMap<>();
+    if (entry != null && entry.eTag != null) {
+      headers.put("If-None-Match", entry.eTag);
+    }
+    if (entry != null && entry.lastModified != null) {
+      headers.put("If-Modified-Since", entry.lastModified);
+    }
+
+    try (WebResponse response = WebClient.getInstance().get(strUrl, headers)) {
+      if (response.getStatus() == 304 && entry != null) { // not modified since last visit, so use the cache
+        CacheEntry revalidated = entry.revalidated(System.currentTimeMillis());
+        this.index.put(revalidated);
+        return revalidated;
+      } else if (response.getStatus() != 200) {
+        throw new IOException("Unexpected response [" + response.getStatus() + "] for [" + strUrl + "]");
+      }
+
+      // modified since last visit, so cache the new data
+      String lastModified = response.getHeader("Last-Modified");
+      String eTag = response.getHeader("ETag");
+      if (lastModified == null && eTag == null) {
+        System.err.println("Neither ETag nor Last-Modified available for [" + strUrl + "], cached without a validator");
+      }
+      InputStream body = response.getBody();
+      if (transform != null) {
+        body = transform.transform(new FilterInputStream(body) {
+          @Override
+          public void close() {
+            // the body is closed along with the response, once it has been drained
+          }
+        });
+      }
+      return store(title, strUrl, body, lastModified, eTag, reader);
+    }
+  }
+
+  /**
+   * Store the contents of the stream as a blob and point the entry of the URL to it<br>
+   * The data is written to a temporary file first, which is moved in place once it is complete and its hash is known
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @param in Stream with the contents of the page
+   * @param lastModified Last-Modified validator, can be null
+   * @param eTag ETag validator, can be null
+   * @param reader Reads the page while it is being stored, can be null
+   * @return Entry of the stored page
+   * @throws IOException If there is a problem while reading or writing
+   */
+  private CacheEntry store(String title, String strUrl, InputStream in, String lastModified, String eTag,
+                           DownloadReader reader) throws IOException {
+    MessageDigest digest = Utils.newDigest();
+    Path temp = writeTemp(new DigestInputStream(in, digest), reader);
+    try {
+      String hash = Utils.toHex(digest.digest());
+      Path blob = blobPath(hash);
+      // a blob must not be dropped (as unreferenced) between being written and being referred to by the entry
+      synchronized (this.index) {
+        if (!Files.exists(blob)) { // identical contents are stored only once
+          Files.createDirectories(blob.getParent());
+          Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        long now = System.currentTimeMillis();
+        CacheEntry entry = new CacheEntry(strUrl, hash, title, lastModified, eTag, now, now, Files.size(blob), -1);
+        // the previous blob may still be used by another process, so it is left for compact(..) to drop
+        this.index.put(entry);
+        return entry;
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Write the contents of the stream to a temporary file in the blobs directory, encoded with the codec of the cache
+   * @param in Stream to read from
+   * @param reader Reads the contents as they are written, can be null
+   * @return Temporary file
+   * @throws IOException If there is a problem while reading or writing
+   */
+  private Path writeTemp(InputStream in, DownloadReader reader) throws IOException {
+    Path temp = Files.createTempFile(this.blobsDir, "blob", ".tmp");
+    try (OutputStream out = this.codec.wrap(Files.newOutputStream(temp))) {
+      if (reader != null) {
+        TeeInputStream tee = new TeeInputStream(in, out);
+        try {
+          reader.read(tee);
+        } catch (IOException | RuntimeException ex) {
+          tee.checkSource(); // the page is still cached, the reader can read it back later on and fail there
+        }
+      }
+      byte[] buffer = new byte[BUFFER_SIZE]; // whatever the reader did not read
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    } catch (IOException ex) {
+      Files.deleteIfExists(temp);
+      throw ex;
+    }
+    return temp;
+  }
+
+  /**
+   * Import the copy of the page that was cached (named after the title) before the index was introduced<br>
+   * The legacy files are removed once they are imported
+   * @param title Title of the URL
+   * @param strUrl URL in string form
+   * @return Entry of the imported copy, or null if there is nothing to import
+   * @throws IOException If there is a problem while importing
+   */
+  private CacheEntry importLegacyFiles(String title, String strUrl) throws IOException {
+    Path legacy;
+    try {
+      legacy = this.dir.resolve(title);
+    } catch (InvalidPathException ex) {
+      return null;
+    }
+    if (!legacy.getParent().equals(this.dir) || !Files.isRegularFile(legacy)) {
+      return null;
+    }
+
+    Path legacyDate = this.dir.resolve(title + LEGACY_SUFFIX_DATE);
+    Path legacyETag = this.dir.resolve(title + LEGACY_SUFFIX_ETAG);
+    CacheEntry entry;
+    try (InputStream in = CacheCodec.open(legacy)) {
+      entry = store(title, strUrl, in, readLegacy(legacyDate), readLegacy(legacyETag), null);
+    }
+    Files.delete(legacy);
+    Files.deleteIfExists(legacyDate);
+    Files.deleteIfExists(legacyETag);
+    return entry;
+  }
+
+  private static String readLegacy(Path file) throws IOException {
+    return Files.exists(file) ? Files.readAllLines(file).get(0) : null;
+  }
+
+  /**
+   * Delete the blob, if no entry refers to it
+   * @param hash Hash of the blob, can be null
+   * @throws IOException If the blob cannot be deleted
+   */
+  private void deleteBlob(String hash) throws IOException {
+    if (hash != null && !this.index.isReferenced(hash)) {
+      Files.deleteIfExists(blobPath(hash));
+    }
+  }
+
+  /**
+   * Returns the monitor guarding the URL
+   * @param strUrl URL in string form
+   * @return Monitor
+   */
+  private Object lock(String strUrl) {
+    return this.locks.computeIfAbsent(strUrl, k -> new Object());
+  }
+
+  /**
+   * Returns the path of the lock file of the URL
+   * @param strUrl URL in string form
+   * @return Path of the lock file
+   */
+  private Path lockPath(String strUrl) {
+    MessageDigest digest = Utils.newDigest();
+    return this.locksDir.resolve(Utils.toHex(digest.digest(strUrl.getBytes(StandardCharsets.UTF_8))) + LOCK_SUFFIX);
+  }
+
+  /**
+   * Returns the path of the blob, blobs are spread across sub directories named after the first two characters of
+   * the hash to keep the directories small
+   * @param hash Hash of the blob
+   * @return Path of the blob
+   */
+  private Path blobPath(String hash) {
+    return this.blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  /**
+   * Migrate the cache, i.e. rewrite every blob that is not stored as per the codec of the cache directory<br>
+   * This is typically used once on a cache that was written before the pages were stored compressed. Legacy copies
+   * whose contents are already stored as a blob (e.g. a second title pointing to the same page) are removed
+   * @return Number of blobs that were rewritten and legacy copies that were removed
+   * @throws IOException If there is a problem while migrating
+   */
+  public int migrate() throws IOException {
+    int count = 0;
+    try (DirectoryStream<Path> subDirs = Files.newDirectoryStream(this.blobsDir, Files::isDirectory)) {
+      for (Path subDir : subDirs) {
+        try (DirectoryStream<Path> blobs = Files.newDirectoryStream(subDir)) {
+          for (Path blob : blobs) {
+            if (!this.codec.isEncoded(blob)) {
+              Path temp;
+              try (InputStream in = CacheCodec.open(blob)) {
+                temp = writeTemp(in, null);
+              }
+              Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+              count++;
+            }
+          }
+        }
+      }
+    }
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir, PageCache::isLegacyPage)) {
+      for (Path legacy : files) {
+        MessageDigest digest = Utils.newDigest();
+        try (InputStream in = new DigestInputStream(CacheCodec.open(legacy), digest)) {
+          byte[] buffer = new byte[BUFFER_SIZE];
+          while (in.read(buffer) != -1) {
+            // hash
+          }
+        }
+        if (this.index.isReferenced(Utils.toHex(digest.digest()))) {
+          Files.delete(legacy);
+          Files.deleteIfExists(legacy.resolveSibling(legacy.getFileName() + LEGACY_SUFFIX_DATE));
+          Files.deleteIfExists(legacy.resolveSibling(legacy.getFileName() + LEGACY_SUFFIX_ETAG));
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the entry of the URL
+   * @param strUrl URL in string form
+   * @return Entry, or null if the URL is not cached
+   */
+  public CacheEntry get(String strUrl) {
+    return this.index.get(strUrl);
+  }
+
+  /**
+   * Mark the cached copy of the URL as revalidated, if it belongs to the current revision of the page on the wiki,
+   * i.e. the page has not been edited since it was cached
+   * @param strUrl URL in string form
+   * @param revision Current revision of the page on the wiki
+   * @return true, if the cached copy belongs to the revision and has been marked as revalidated
+   * @throws IOException If the lock of the URL cannot be read or written
+   */
+  public boolean confirm(String strUrl, long revision) throws IOException {
+    synchronized (lock(strUrl)) {
+      try (CacheLock fileLock = CacheLock.acquire(lockPath(strUrl), strUrl, this.lockTimeout)) {
+        CacheEntry entry = current(strUrl, fileLock);
+        if (entry == null || entry.revision != revision) {
+          return false;
+        }
+        CacheEntry revalidated = entry.revalidated(System.currentTimeMillis());
+        this.index.put(revalidated);
+        fileLock.commit(revalidated);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Record the revision of the page on the wiki the cached copy of the URL belongs to<br>
+   * The revision is recorded only if the cached copy was fetched or revalidated since the revision was looked up, a
+   * copy that could not be revalidated (see {@link #fetch(String, String, boolean, long)}) may belong to an older
+   * revision
+   * @param strUrl URL in string form
+   * @param revision Revision of the page on the wiki
+   * @param since Time (epoch millis) when the revision was looked up
+   * @throws IOException If the lock of the URL cannot be read or written
+   */
+  public void setRevision(String strUrl, long revision, long since) throws IOException {
+    synchronized (lock(strUrl)) {
+      try (CacheLock fileLock = CacheLock.acquire(lockPath(strUrl), strUrl, this.lockTimeout)) {
+        CacheEntry entry = current(strUrl, fileLock);
+        if (entry != null && entry.fetchTime >= since && entry.revision != revision) {
+          CacheEntry recorded = entry.withRevision(revision);
+          this.index.put(recorded);
+          fileLock.commit(recorded);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compact the cache, i.e. evict the entries that have not been used for longer than the maximum age, followed by
+   * the least recently used entries until the blobs fit in the maximum size. Blobs and temporary files that were left
+   * behind by an interrupted run are removed as well<br>
+   * Entries fetched since the cache was opened are never evicted, but entries that are only peeked at can be, so the
+   * cache is to be compacted once nothing else is going to be read out of it<br>
+   * Other processes may still use the blobs that this process no longer refers to, so the cache is compacted only if
+   * no other process is using it, in which case the other processes wait for the compaction before opening the cache
+   * @param maxSize Maximum size (in bytes) of the blobs
+   * @param maxAge Maximum time (in millis) since an entry was last used
+   * @return Number of entries evicted
+   * @throws IOException If there is a problem while deleting the blobs
+   */
+  public int compact(long maxSize, long maxAge) throws IOException {
+    if (!lockExclusive()) {
+      System.err.println("The cache is in use by another process, skipping the compaction");
+      return 0;
+    }
+    try {
+      this.index.reload(this.lockTimeout);
+      int count = evictAndSweep(maxSize, maxAge);
+      // the evicted entries must be gone from the index before another process loads it
+      this.index.save(this.lockTimeout);
+      return count;
+    } finally {
+      unlockExclusive();
+    }
+  }
+
+  /**
+   * Evict the entries that have not been used for longer than the maximum age, followed by the least recently used
+   * entries until the blobs fit in the maximum size, and drop the blobs and temporary files that are left behind.
+   * The caller is expected to have the cache directory to itself
+   * @param maxSize Maximum size (in bytes) of the blobs
+   * @param maxAge Maximum time (in millis) since an entry was last used
+   * @return Number of entries evicted
+   * @throws IOException If there is a problem while deleting the blobs
+   */
+  private int evictAndSweep(long maxSize, long maxAge) throws IOException {
+    long expiry = System.currentTimeMillis() - maxAge;
+    List<CacheEntry> entries = this.index.entries();
+    entries.sort(Comparator.comparingLong(entry -> entry.accessTime));
+
+    int count = 0;
+    long size = this.index.getSize();
+    for (CacheEntry entry : entries) {
+      if (entry.accessTime >= this.openTime || (entry.accessTime >= expiry && size <= maxSize)) {
+        break; // the rest of the entries were used even more recently
+      }
+      long freed = evict(entry);
+      if (freed >= 0) {
+        size -= freed;
+        count++;
+      }
+    }
+
+    try (DirectoryStream<Path> subDirs = Files.newDirectoryStream(this.blobsDir)) {
+      for (Path subDir : subDirs) {
+        if (!Files.isDirectory(subDir)) { // temporary file
+          if (Files.getLastModifiedTime(subDir).toMillis() < this.openTime) {
+            Files.deleteIfExists(subDir);
+          }
+          continue;
+        }
+        try (DirectoryStream<Path> blobs = Files.newDirectoryStream(subDir)) {
+          for (Path blob : blobs) {
+            synchronized (this.index) {
+              deleteBlob(blob.getFileName().toString());
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Remove the entries whose URL or the title of the series they were fetched for matches the pattern
+   * @param pattern Pattern, it is enough if it is found within the URL or the title
+   * @return Number of entries removed
+   * @throws IOException If there is a problem while deleting the blobs
+   */
+  public int purge(Pattern pattern) throws IOException {
+    if (!lockExclusive()) {
+      throw new IOException("The cache is in use by another process, unable to purge it");
+    }
+    try {
+      this.index.reload(this.lockTimeout);
+      int count = 0;
+      for (CacheEntry entry : this.index.entries()) {
+        if ((entry.title != null && pattern.matcher(entry.title).find()) || pattern.matcher(entry.url).find()) {
+          if (evict(entry) >= 0) {
+            count++;
+          }
+        }
+      }
+      this.index.save(this.lockTimeout);
+      return count;
+    } finally {
+      unlockExclusive();
+    }
+  }
+
+  /**
+   * Evict the entry, unless it has been replaced or used in the mean time
+   * @param entry Entry to evict
+   * @return Size (in bytes) freed, 0 if the blob is still referred by other entries, -1 if the entry was not evicted
+   * @throws IOException If the blob cannot be deleted
+   */
+  private long evict(CacheEntry entry) throws IOException {
+    synchronized (lock(entry.url)) {
+      if (this.index.get(entry.url) != entry) {
+        return -1;
+      }
+      Files.deleteIfExists(lockPath(entry.url)); // no other process is using the cache, see lockExclusive()
+      synchronized (this.index) {
+        String hash = this.index.remove(entry.url);
+        deleteBlob(hash);
+        return hash == null ? 0 : entry.size;
+      }
+    }
+  }
+
+  /**
+   * Trade the shared lock on the users file for an exclusive lock, which can be had only if no other process (and no
+   * other cache of this process) is using the cache directory
+   * @return true, if the exclusive lock is held, in which case it must be given up through {@link #unlockExclusive()}
+   * @throws IOException If the users file cannot be locked
+   */
+  private boolean lockExclusive() throws IOException {
+    synchronized (OPEN) {
+      if (this.usersLock == null || OPEN.get(this.dir.toAbsolutePath().normalize()) != 1) {
+        return false;
+      }
+      this.usersLock.release();
+      FileLock exclusive = this.usersChannel.tryLock(0, Long.MAX_VALUE, false);
+      this.usersLock = exclusive == null ? this.usersChannel.lock(0, Long.MAX_VALUE, true) : exclusive;
+      return exclusive != null;
+    }
+  }
+
+  /**
+   * Trade the exclusive lock on the users file back for a shared lock
+   * @throws IOException If the users file cannot be locked
+   */
+  private void unlockExclusive() throws IOException {
+    synchronized (OPEN) {
+      this.usersLock.release();
+      this.usersLock = this.usersChannel.lock(0, Long.MAX_VALUE, true);
+    }
+  }
+
+  /**
+   * Stop using the cache directory, i.e. close the users file (which releases the lock on it)
+   * @param dir Cache directory
+   * @param usersChannel Channel of the users file
+   * @throws IOException If the users file cannot be closed
+   */
+  private static void closeUsers(Path dir, FileChannel usersChannel) throws IOException {
+    synchronized (OPEN) {
+      OPEN.computeIfPresent(dir.toAbsolutePath().normalize(), (k, v) -> v == 1 ? null : v - 1);
+      usersChannel.close();
+    }
+  }
+
+  /**
+   * Check if the file holds the contents of a page cached before the index was introduced
+   * @param file File to check
+   * @return true, if the file is a legacy copy of a page
+   */
+  private static boolean isLegacyPage(Path file) {
+    String name = file.getFileName().toString();
+    return Files.isRegularFile(file) && !name.equals(CODEC_FILE) && !name.equals(INDEX_FILE) && !name.equals(USERS_FILE)
+            && !name.endsWith(LEGACY_SUFFIX_DATE) && !name.endsWith(LEGACY_SUFFIX_ETAG) && !name.endsWith(".tmp")
+            && !name.endsWith(LOCK_SUFFIX);
+  }
+
+  /**
+   * Input stream that writes whatever is read from it to an output stream<br>
+   * Closing it does not close either of the streams
+   */
+  private static class TeeInputStream extends FilterInputStream {
+
+    /** Stream that is written to */
+    private final OutputStream out;
+
+    /** Failure of the source stream, if any */
+    private IOException failure;
+
+    /**
+     * Constructor
+     * @param in Source stream
+     * @param out Stream that is written to
+     */
+    TeeInputStream(InputStream in, OutputStream out) {
+      super(in);
+      this.out = out;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read;
+      try {
+        read = this.in.read(b, off, len);
+      } catch (IOException ex) {
+        this.failure = ex;
+        throw ex;
+      }
+      if (read > 0) {
+        this.out.write(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = 0;
+      byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 1))];
+      int read;
+      while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      // the streams are closed by their owners
+    }
+
+    /**
+     * Rethrow the failure of the source stream, if any, so that a truncated download is never committed
+     * @throws IOException Failure of the source stream
+     */
+    void checkSource() throws IOException {
+      if (this.failure != null) {
+        throw this.failure;
+      }
+    }
+
+  }
+
+  /**
+   * Save the index and stop using the cache directory
+   * @throws IOException If the index cannot be saved
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.index.save(this.lockTimeout);
+    } finally {
+      closeUsers(this.dir, this.usersChannel);
+    }
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.net;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles the requests sent to a single host<br>
+ * Requests are paced by a token bucket (a fixed rate with some burst allowance) and the number of requests in flight is
+ * limited by a concurrency limit that adapts as per AIMD: it grows additively while the host answers quickly and is
+ * halved when the host answers slowly, fails or asks us to back off (429 / 503). When the host specifies how long to
+ * back off, all the requests to the host are paused for that long
+ * @author mithun.gonsalvez
+ */
+public class HostThrottle {
+
+  /** Factor by which the concurrency limit is reduced on congestion */
+  private static final double DECREASE_FACTOR = 0.5;
+
+  /** Tokens added per nano second, a value &lt;= 0 disables the token bucket */
+  private final double tokensPerNano;
+
+  /** Maximum number of tokens that can be accumulated */
+  private final double burst;
+
+  /** Maximum concurrency limit */
+  private final int maxLimit;
+
+  /** Latency (in millis) above which the host is considered to be congested */
+  private final long latencyTarget;
+
+  /** Current number of tokens */
+  private double tokens;
+
+  /** Time (nano time) when the tokens were last refilled */
+  private long lastRefill;
+
+  /** Current concurrency limit, the fraction accumulates the additive increases */
+  private double limit;
+
+  /** Number of requests in flight */
+  private int inFlight;
+
+  /** Time (nano time) until which no requests are sent */
+  private long pausedUntil;
+
+  /** Time (nano time) of the last decrease, the limit is decreased at most once per congestion event */
+  private long lastDecrease;
+
+  /**
+   * Constructor
+   * @param ratePerSecond Number of requests per second, a value &lt;= 0 disables the rate limit
+   * @param burst Number of requests that can be sent in a burst, after a period of inactivity
+   * @param initialLimit Initial concurrency limit
+   * @param maxLimit Maximum concurrency limit
+   * @param latencyTarget Latency (in millis) above which the host is considered to be congested
+   */
+  public HostThrottle(double ratePerSecond, int burst, int initialLimit, int maxLimit, long latencyTarget) {
+    this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.burst = Math.max(1, burst);
+    this.maxLimit = Math.max(1, maxLimit);
+    this.latencyTarget = latencyTarget;
+    this.tokens = this.burst;
+    this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+    this.lastRefill = System.nanoTime();
+    this.pausedUntil = this.lastRefill;
+    this.lastDecrease = this.lastRefill - TimeUnit.MILLISECONDS.toNanos(latencyTarget);
+  }
+
+  /**
+   * Wait until a request can be sent to the host, every successful call must be followed by a {@link #release()}
+   * @throws InterruptedIOException If the thread is interrupted while waiting
+   */
+  public synchronized void acquire() throws InterruptedIOException {
+    try {
+      while (true) {
+        long now = System.nanoTime();
+        refill(now);
+        long waitNanos;
+        if (now - this.pausedUntil < 0) {
+          waitNanos = this.pausedUntil - now;
+        } else if (this.inFlight >= (int) this.limit) {
+          waitNanos = 0; // until a request completes
+        } else if (this.tokensPerNano > 0 && this.tokens < 1) {
+          waitNanos = Math.max(1, (long) ((1 - this.tokens) / this.tokensPerNano));
+        } else {
+          this.tokens--;
+          this.inFlight++;
+          return;
+        }
+
+        if (waitNanos == 0) {
+          wait();
+        } else {
+          TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to send a request");
+    }
+  }
+
+  /**
+   * Release the slot acquired by {@link #acquire()}, once the request has completed
+   */
+  public synchronized void release() {
+    this.inFlight--;
+    notifyAll();
+  }
+
+  /**
+   * Record the outcome of a request that received a response
+   * @param status Status code of the response
+   * @param latency Time (in millis) taken to receive the response
+   */
+  public synchronized void onResponse(int status, long latency) {
+    if (status == 429 || status == 503 || latency > this.latencyTarget) {
+      decrease();
+    } else {
+      this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+    }
+  }
+
+  /**
+   * Record the failure of a request that did not receive a response (e.g. a time out)
+   */
+  public synchronized void onFailure() {
+    decrease();
+  }
+
+  /**
+   * Pause all the requests to the host, as asked by the host
+   * @param millis Time to pause for (in millis)
+   */
+  public synchronized void pause(long millis) {
+    long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    if (until - this.pausedUntil > 0) {
+      this.pausedUntil = until;
+    }
+  }
+
+  /**
+   * Returns the current concurrency limit
+   * @return Concurrency limit
+   */
+  public synchronized int getLimit() {
+    return (int) this.limit;
+  }
+
+  private void decrease() {
+    long now = System.nanoTime();
+    // requests that were already in flight report the same congestion, it should be accounted for only once
+    if (now - this.lastDecrease >= TimeUnit.MILLISECONDS.toNanos(this.latencyTarget)) {
+      this.limit = Math.max(1, this.limit * DECREASE_FACTOR);
+      this.lastDecrease = now;
+    }
+  }
+
+  private void refill(long now) {
+    if (this.tokensPerNano > 0) {
+      this.tokens = Math.min(this.burst, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+    }
+    this.lastRefill = now;
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.net;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed request should be retried and how long to wait before doing so<br>
+ * The wait grows exponentially with each attempt and is jittered, so that requests that failed together are not
+ * retried together. If the host specified how long to wait (Retry-After), then we wait at least that long
+ * @author mithun.gonsalvez
+ */
+public class RetryPolicy {
+
+  /** Maximum number of retries */
+  private final int maxRetries;
+
+  /** Delay (in millis) before the first retry */
+  private final long baseDelay;
+
+  /** Maximum delay (in millis) between two attempts */
+  private final long maxDelay;
+
+  /**
+   * Constructor
+   * @param maxRetries Maximum number of retries
+   * @param baseDelay Delay (in millis) before the first retry
+   * @param maxDelay Maximum delay (in millis) between two attempts
+   */
+  public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+    this.maxRetries = maxRetries;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  /**
+   * Check if the request should be retried
+   * @param attempt Number of attempts that have failed so far (1 based)
+   * @param status Status code of the response, or -1 if no response was received
+   * @return true, if the request should be retried
+   */
+  public boolean shouldRetry(int attempt, int status) {
+    return attempt <= this.maxRetries && (status == -1 || status == 429 || status == 502 || status == 503
+            || status == 504);
+  }
+
+  /**
+   * Returns the time to wait before the next attempt
+   * @param attempt Number of attempts that have failed so far (1 based)
+   * @param retryAfter Value of the Retry-After header (seconds or a HTTP date), can be null
+   * @return Time to wait (in millis)
+   */
+  public long getDelay(int attempt, String retryAfter) {
+    long ceiling = Math.min(this.maxDelay, this.baseDelay << Math.min(attempt - 1, 30));
+    // half of the delay is fixed, the other half is random
+    long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    return Math.max(delay, Math.min(this.maxDelay, parseRetryAfter(retryAfter)));
+  }
+
+  /**
+   * Parse the Retry-After header
+   * @param retryAfter Value of the Retry-After header (seconds or a HTTP date), can be null
+   * @return Time to wait (in millis), 0 if not specified or not understood
+   */
+  static long parseRetryAfter(String retryAfter) {
+    if (retryAfter == null) {
+      return 0;
+    }
+    String value = retryAfter.trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException ex) {
+      try {
+        ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+        return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+      } catch (DateTimeParseException dtex) {
+        return 0;
+      }
+    }
+  }
+
+}
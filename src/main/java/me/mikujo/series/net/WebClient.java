@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.net;
+
+import me.mikujo.series.wiki.Keyz;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A shared HTTP client that all the fetches go through<br>
+ * Connections are kept alive and pooled per host by the JDK, so that consecutive requests to the same host reuse the
+ * already established (TLS) connection instead of performing a new handshake for every page<br>
+ * Compressed transfer is requested for every request, the body is decoded on the fly by the {@link WebResponse}<br>
+ * Requests are throttled per host ({@link HostThrottle}) and retried as per the {@link RetryPolicy}
+ * @author mithun.gonsalvez
+ */
+public class WebClient {
+
+  /** System property read by the JDK that limits the number of idle connections kept alive per host */
+  private static final String MAX_CONNECTIONS = "http.maxConnections";
+
+  static {
+    // the pool should be able to hold a connection for every concurrent fetch, the JDK default is 5
+    if (System.getProperty(MAX_CONNECTIONS) == null) {
+      int fetchThreads = Integer.getInteger(Keyz.FETCH_THREADS, 4);
+      System.setProperty(MAX_CONNECTIONS, String.valueOf(Math.max(5, fetchThreads)));
+    }
+  }
+
+  /** Only one single instance, so that every fetch shares the same connection pool and throttles */
+  private static final WebClient CLIENT = new WebClient(Integer.getInteger(Keyz.HTTP_CONNECT_TIMEOUT, 10_000),
+          Integer.getInteger(Keyz.HTTP_READ_TIMEOUT, 30_000),
+          new RetryPolicy(Integer.getInteger(Keyz.HTTP_RETRIES, 4), Long.getLong(Keyz.HTTP_RETRY_DELAY, 500),
+                  Long.getLong(Keyz.HTTP_RETRY_MAX_DELAY, 60_000)),
+          () -> new HostThrottle(Double.parseDouble(System.getProperty(Keyz.HTTP_HOST_RATE, "20")),
+                  Integer.getInteger(Keyz.HTTP_HOST_BURST, 5), Integer.getInteger(Keyz.FETCH_THREADS, 4),
+                  Integer.getInteger(Keyz.HTTP_HOST_MAX_CONCURRENCY, 16),
+                  Long.getLong(Keyz.HTTP_HOST_LATENCY_TARGET, 2_000)));
+
+  /** Connect timeout in milliseconds */
+  private final int connectTimeout;
+
+  /** Read timeout in milliseconds */
+  private final int readTimeout;
+
+  /** Policy deciding the retries of failed requests */
+  private final RetryPolicy retryPolicy;
+
+  /** Creates the throttle of a host */
+  private final Supplier<HostThrottle> throttleFactory;
+
+  /** Throttles keyed by host */
+  private final ConcurrentMap<String, HostThrottle> throttles = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   * @param connectTimeout Connect timeout in milliseconds
+   * @param readTimeout Read timeout in milliseconds
+   * @param retryPolicy Policy deciding the retries of failed requests
+   * @param throttleFactory Creates the throttle of a host, invoked once per host
+   */
+  public WebClient(int connectTimeout, int readTimeout, RetryPolicy retryPolicy,
+                   Supplier<HostThrottle> throttleFactory) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.retryPolicy = retryPolicy;
+    this.throttleFactory = throttleFactory;
+  }
+
+  /**
+   * Returns the shared client instance
+   * @return Web client
+   */
+  public static WebClient getInstance() {
+    return CLIENT;
+  }
+
+  /**
+   * Returns the throttle of the host
+   * @param host Host name
+   * @return Throttle
+   */
+  public HostThrottle getThrottle(String host) {
+    return this.throttles.computeIfAbsent(host, k -> this.throttleFactory.get());
+  }
+
+  /**
+   * Perform a GET request<br>
+   * The request waits for its turn as per the throttle of the host and is retried, as per the retry policy, if it
+   * fails or the host is overloaded. The response must be closed, so that the connection can be returned to the pool
+   * and the next request to the host can be sent
+   * @param strUrl URL in string form
+   * @param headers Request headers
+   * @return Response
+   * @throws IOException If the request could not be performed
+   */
+  public WebResponse get(String strUrl, Map<String, String> headers) throws IOException {
+    URL url = new URL(strUrl);
+    HostThrottle throttle = getThrottle(url.getHost());
+    for (int attempt = 1; ; attempt++) {
+      throttle.acquire();
+      long start = System.nanoTime();
+      WebResponse response;
+      try {
+        response = open(url, headers, throttle);
+      } catch (IOException ex) {
+        throttle.release();
+        throttle.onFailure();
+        if (!this.retryPolicy.shouldRetry(attempt, -1)) {
+          throw ex;
+        }
+        System.err.println("Retrying [" + strUrl + "], attempt [" + attempt + "] failed: " + ex);
+        sleep(this.retryPolicy.getDelay(attempt, null));
+        continue;
+      }
+
+      int status = response.getStatus();
+      throttle.onResponse(status, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      if (!this.retryPolicy.shouldRetry(attempt, status)) {
+        return response;
+      }
+
+      String retryAfter = response.getHeader("Retry-After");
+      long delay = this.retryPolicy.getDelay(attempt, retryAfter);
+      response.close();
+      if (retryAfter != null) { // the host asked for it, so no other request should be sent to it either
+        throttle.pause(delay);
+      }
+      System.err.println("Retrying [" + strUrl + "] in [" + delay + "] ms, attempt [" + attempt + "] got ["
+              + status + "]");
+      sleep(delay);
+    }
+  }
+
+  /**
+   * Open the connection and wait for the response
+   * @param url URL
+   * @param headers Request headers
+   * @param throttle Throttle of the host, released when the response is closed
+   * @return Response
+   * @throws IOException If the request could not be performed
+   */
+  private WebResponse open(URL url, Map<String, String> headers, HostThrottle throttle) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(this.connectTimeout);
+    connection.setReadTimeout(this.readTimeout);
+    connection.setUseCaches(false);
+    connection.setRequestProperty("Accept-Encoding", "gzip");
+    headers.forEach(connection::setRequestProperty);
+
+    try {
+      return new WebResponse(connection, connection.getResponseCode(), throttle::release);
+    } catch (IOException ex) {
+      connection.disconnect();
+      throw ex;
+    }
+  }
+
+  private static void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry");
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response of a request performed via the {@link WebClient}<br>
+ * Closing the response drains whatever is left of the body, which allows the connection to be reused
+ * @author mithun.gonsalvez
+ */
+public class WebResponse implements Closeable {
+
+  /** Size of the buffer used to decompress and to drain the unread body */
+  private static final int DRAIN_BUFFER_SIZE = 8192;
+
+  /** Underlying connection */
+  private final HttpURLConnection connection;
+
+  /** Status code */
+  private final int status;
+
+  /** Invoked once the response has been closed */
+  private final Runnable onClose;
+
+  /** Body of the response, opened lazily */
+  private InputStream body;
+
+  /**
+   * Constructor
+   * @param connection Connection on which the response has been received
+   * @param status Status code
+   * @param onClose Invoked once the response has been closed
+   */
+  WebResponse(HttpURLConnection connection, int status, Runnable onClose) {
+    this.connection = connection;
+    this.status = status;
+    this.onClose = onClose;
+  }
+
+  /**
+   * Returns the status code
+   * @return Status code
+   */
+  public int getStatus() {
+    return this.status;
+  }
+
+  /**
+   * Returns the value of the response header
+   * @param name Name of the header
+   * @return Value of the header, or null if not present
+   */
+  public String getHeader(String name) {
+    return this.connection.getHeaderField(name);
+  }
+
+  /**
+   * Returns the body of the response, the stream is closed when the response is closed<br>
+   * If the body has been transferred compressed, then the returned stream decompresses it
+   * @return Body of the response
+   * @throws IOException If the body cannot be read
+   */
+  public InputStream getBody() throws IOException {
+    if (this.body == null) {
+      InputStream in = this.status >= 400 ? this.connection.getErrorStream() : this.connection.getInputStream();
+      if (in == null) {
+        this.body = new EmptyInputStream();
+      } else if (this.status != 304 && "gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
+        this.body = new GZIPInputStream(in, DRAIN_BUFFER_SIZE);
+      } else {
+        this.body = in;
+      }
+    }
+    return this.body;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try (InputStream in = getBody()) {
+      // the connection goes back to the pool only if the body has been read completely
+      byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+      while (in.read(buffer) != -1) {
+        // drain
+      }
+    } finally {
+      this.onClose.run();
+    }
+  }
+
+  /**
+   * Stream for responses that do not have a body
+   */
+  private static class EmptyInputStream extends InputStream {
+
+    @Override
+    public int read() {
+      return -1;
+    }
+
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.utils;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.temporal.Temporal;
+
+/**
+ * Recognizes the air dates found on the wiki pages, without going through the date time formatters (and the
+ * exceptions they throw for every pattern that does not match)<br>
+ * The dates are recognized the way {@link Utils#DATE_TIME_FORMATTERS} followed by {@link Utils#YEAR_ONLY} parse them
+ * (including how a day past the end of the month is resolved), along with dates that have only a month and a year.
+ * The patterns never recognize the same text, the one that recognized the last date is tried first for the next one
+ * @author mithun.gonsalvez
+ */
+public final class DateRecognizer {
+
+  /** Pattern 'yyyy-M-dd' */
+  public static final int ISO = 0;
+
+  /** Pattern 'MMMM d, yyyy' */
+  public static final int MONTH_DAY_YEAR = 1;
+
+  /** Pattern 'MMMM yyyy' */
+  public static final int MONTH_YEAR = 2;
+
+  /** Pattern 'yyyy' */
+  public static final int YEAR = 3;
+
+  /** Number of patterns */
+  public static final int PATTERNS = 4;
+
+  /** Full names of the months, as the formatters print them */
+  private static final String[] MONTHS = {"January", "February", "March", "April", "May", "June", "July", "August",
+      "September", "October", "November", "December"};
+
+  /** Pattern that recognized the last date, -1 if none did */
+  private int lastPattern;
+
+  /**
+   * Constructor
+   * @param lastPattern Pattern to try first, -1 if none
+   */
+  public DateRecognizer(int lastPattern) {
+    this.lastPattern = lastPattern;
+  }
+
+  /**
+   * Returns the pattern that recognized the last date
+   * @return Pattern, -1 if none did
+   */
+  public int getLastPattern() {
+    return this.lastPattern;
+  }
+
+  /**
+   * Recognize the date held by the text of an air date cell, i.e. within the first pair of brackets if there is
+   * one (like {@code \((.+?)\)} finds it), or the whole text otherwise
+   * @param text Text of the cell
+   * @return Date ({@link LocalDate}, {@link YearMonth} or {@link Year}), or null if it is not recognized
+   */
+  public Temporal recognizeCell(CharSequence text) {
+    for (int open = 0; open < text.length(); open++) {
+      if (text.charAt(open) != '(') {
+        continue;
+      }
+      for (int i = open + 1; i < text.length() && !isLineTerminator(text.charAt(i)); i++) {
+        if (text.charAt(i) == ')' && i > open + 1) {
+          return recognize(text, open + 1, i);
+        }
+      }
+    }
+    return recognize(text, 0, text.length());
+  }
+
+  /**
+   * Recognize the date in the region of the text, trying the pattern that recognized the last date first
+   * @param text Text
+   * @param start Start of the region
+   * @param end End (exclusive) of the region
+   * @return Date ({@link LocalDate}, {@link YearMonth} or {@link Year}), or null if it is not recognized
+   */
+  public Temporal recognize(CharSequence text, int start, int end) {
+    if (this.lastPattern >= 0) {
+      Temporal date = recognize(text, start, end, this.lastPattern);
+      if (date != null) {
+        return date;
+      }
+    }
+    for (int pattern = 0; pattern < PATTERNS; pattern++) {
+      if (pattern != this.lastPattern) {
+        Temporal date = recognize(text, start, end, pattern);
+        if (date != null) {
+          this.lastPattern = pattern;
+          return date;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Recognize the date in the region of the text with a single pattern
+   * @param text Text
+   * @param start Start of the region
+   * @param end End (exclusive) of the region
+   * @param pattern Pattern, see {@link #ISO}, {@link #MONTH_DAY_YEAR}, {@link #MONTH_YEAR} and {@link #YEAR}
+   * @return Date, or null if it is not recognized
+   */
+  public static Temporal recognize(CharSequence text, int start, int end, int pattern) {
+    switch (pattern) {
+      case ISO: {
+        int year = number(text, start, end, 4);
+        int pos = start + 4;
+        if (year <= 0 || pos >= end || text.charAt(pos) != '-') {
+          return null;
+        }
+        int monthEnd = digits(text, pos + 1, end);
+        int month = number(text, pos + 1, end, monthEnd - pos - 1);
+        pos = monthEnd;
+        if (month < 1 || month > 12 || pos >= end || text.charAt(pos) != '-' || end - pos - 1 != 2) {
+          return null;
+        }
+        return date(year, month, number(text, pos + 1, end, 2));
+      }
+      case MONTH_DAY_YEAR: {
+        int month = month(text, start, end);
+        int pos = month <= 0 ? end : start + MONTHS[month - 1].length();
+        if (pos >= end || text.charAt(pos) != ' ') {
+          return null;
+        }
+        int dayEnd = digits(text, pos + 1, end);
+        int day = number(text, pos + 1, end, dayEnd - pos - 1);
+        pos = dayEnd;
+        if (day < 0 || end - pos != 6 || text.charAt(pos) != ',' || text.charAt(pos + 1) != ' ') {
+          return null;
+        }
+        return date(number(text, pos + 2, end, 4), month, day);
+      }
+      case MONTH_YEAR: {
+        int month = month(text, start, end);
+        int pos = month <= 0 ? end : start + MONTHS[month - 1].length();
+        if (end - pos != 5 || text.charAt(pos) != ' ') {
+          return null;
+        }
+        int year = number(text, pos + 1, end, 4);
+        return year <= 0 ? null : YearMonth.of(year, month);
+      }
+      case YEAR: {
+        int year = end - start == 4 ? number(text, start, end, 4) : -1;
+        return year <= 0 ? null : Year.of(year);
+      }
+      default:
+        throw new IllegalArgumentException("Unknown pattern [" + pattern + "]");
+    }
+  }
+
+  /**
+   * Returns the date, a day past the end of the month is resolved to the last day of the month (like the formatters
+   * resolve it)
+   * @param year Year, less than 1 if it is not valid
+   * @param month Month
+   * @param day Day, less than 0 if it is not valid
+   * @return Date, or null if it is not valid
+   */
+  private static LocalDate date(int year, int month, int day) {
+    if (year <= 0 || day < 1 || day > 31) {
+      return null;
+    }
+    return LocalDate.of(year, month, Math.min(day, Month.of(month).length(Year.isLeap(year))));
+  }
+
+  /**
+   * Returns the value of the digits at the start of the region
+   * @param text Text
+   * @param start Start of the digits
+   * @param end End (exclusive) of the region
+   * @param count Number of digits
+   * @return Value, or -1 if there are not as many digits (or none, or too many of them)
+   */
+  private static int number(CharSequence text, int start, int end, int count) {
+    if (count < 1 || count > 9 || start + count > end) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Returns the end of the digits at the start of the region
+   * @param text Text
+   * @param start Start of the region
+   * @param end End (exclusive) of the region
+   * @return End of the digits
+   */
+  private static int digits(CharSequence text, int start, int end) {
+    int pos = start;
+    while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the month whose name is at the start of the region
+   * @param text Text
+   * @param start Start of the region
+   * @param end End (exclusive) of the region
+   * @return Month (1 based), or 0 if the region does not start with the name of a month
+   */
+  private static int month(CharSequence text, int start, int end) {
+    for (int month = 0; month < MONTHS.length; month++) {
+      String name = MONTHS[month];
+      if (end - start >= name.length() && startsWith(text, start, name)) {
+        return month + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Checks if the text has the name at the position
+   * @param text Text
+   * @param start Position
+   * @param name Name, that fits in the text from the position
+   * @return true if the text has the name
+   */
+  private static boolean startsWith(CharSequence text, int start, String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (text.charAt(start + i) != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if the character ends a line, i.e. is not matched by '.' in a regular expression
+   * @param c Character
+   * @return true if it ends a line
+   */
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+}
@@ -22,14 +22,11 @@ import me.mikujo.series.filters.SeriesFilter;
 import me.mikujo.series.wiki.Keyz;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Reader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.Year;
@@ -40,6 +37,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.json.simple.parser.JSONParser;
@@ -70,59 +73,65 @@ public class Utils {
   public static final DateTimeFormatter YEAR_ONLY = DateTimeFormatter.ofPattern("yyyy");
 
   /**
-   * Fetch the URL as specified by the String URL and return the saved copy<br>
-   * If the URL contents have not changed, then fetch it from the cache
-   * @param title Title of the URL
-   * @param strUrl URL in string form
-   * @param outDir Directory where the data should be created created
-   * @param offline Use cached data if available, if data is not available, then connect and fetch data
-   * @return Path containing the URL contents
-   * @throws IOException If something goes wrong
+   * Creates an executor with a fixed number of threads and a bounded work queue<br>
+   * When the queue is full, the submitting thread runs the task itself, which slows down the producer and hence
+   * provides back pressure between the stages that feed each other
+   * @param name Name of the stage, used to name the threads
+   * @param threads Number of threads
+   * @param queueSize Maximum number of tasks that can wait in the queue
+   * @return Executor service
    */
-  public static Path fetchUrl(String title, String strUrl, Path outDir, boolean offline) throws IOException {
-    System.err.println("Fetching: " + title + " Url: " + strUrl);
-
-    Path cacheFile = outDir.resolve(title);
-    Path cacheFileDate = outDir.resolve(title + "_date");
+  public static ExecutorService newBoundedExecutor(String name, int threads, int queueSize) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = runnable -> {
+      Thread thread = new Thread(runnable, "series-" + name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+            factory, new ThreadPoolExecutor.CallerRunsPolicy());
+  }
 
-    boolean exists = Files.exists(cacheFile) && Files.exists(cacheFileDate);
-    if (exists && offline) {
-      return cacheFile;
+  /**
+   * Returns a new SHA-1 message digest, used to hash the contents of the cached data
+   * @return Message digest
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex); // every JVM is required to support it
     }
+  }
 
-    URL url = new URL(strUrl);
-    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-    if (exists) {
-      String dateValue = Files.readAllLines(cacheFileDate).get(0);
-      connection.addRequestProperty("If-Modified-Since", dateValue);
-
-      if (connection.getResponseCode() != 304) { // modified since last visit, so cache the new data
-        writeFiles(connection, cacheFile, cacheFileDate);
-      }
-    } else {
-      writeFiles(connection, cacheFile, cacheFileDate);
+  /**
+   * Convert the bytes to a hexadecimal string
+   * @param bytes Bytes to convert
+   * @return Hexadecimal string, with two (lower case) characters per byte
+   */
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+      chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
     }
-
-    return cacheFile;
+    return new String(chars);
   }
 
   /**
-   * Read from the connection and write the data to the files
-   * @param connection Connection to use
-   * @param cacheFile Cache file path
-   * @param cacheFileDate Cache file date path
-   * @throws IOException If there is any problem while reading writing/reading the data
+   * Format the age in a short human readable form, e.g. 45m, 5h 10m or 3d 4h
+   * @param millis Age in milliseconds
+   * @return Formatted age
    */
-  private static void writeFiles(URLConnection connection, Path cacheFile, Path cacheFileDate) throws IOException {
-    try (InputStream inputStream = connection.getInputStream()) {
-      Files.copy(inputStream, cacheFile, StandardCopyOption.REPLACE_EXISTING);
-    }
-    String lastModified = connection.getHeaderField("Last-Modified");
-    if (lastModified == null) {
-      System.out.println("Last Modified time not available, unable to cache");
-    } else {
-      Files.write(cacheFileDate, lastModified.getBytes());
+  public static String formatAge(long millis) {
+    long minutes = TimeUnit.MILLISECONDS.toMinutes(Math.max(0, millis));
+    if (minutes < 60) {
+      return minutes + "m";
+    } else if (minutes < 24 * 60) {
+      return (minutes / 60) + "h " + (minutes % 60) + "m";
     }
+    long hours = minutes / 60;
+    return (hours / 24) + "d " + (hours % 24) + "h";
   }
 
   /**
@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Text of a cell of an episode table, read into a buffer that is reused for every cell read on the same thread<br>
+ * The text is that of {@link Element#text()}, with every kind of space (the &amp;&nbsp; is read as '\u00a0' instead
+ * of the standard space, and there are others like it) replaced by a space, and trimmed. It is built in a single pass
+ * over the nodes of the cell, so that a {@link String} is only created for the text that is kept, see
+ * {@link #toString()}
+ *
+ * @author mithun.gonsalvez
+ */
+final class CellText implements CharSequence, NodeVisitor {
+
+  /** Buffer of each thread */
+  private static final ThreadLocal<CellText> BUFFERS = ThreadLocal.withInitial(CellText::new);
+
+  /** Text read, before it is trimmed */
+  private final StringBuilder chars = new StringBuilder(64);
+
+  /** Start of the trimmed text */
+  private int start;
+
+  /** End (exclusive) of the trimmed text */
+  private int end;
+
+  /** Whether the last character read was a space (before the other kinds of spaces were replaced) */
+  private boolean spaced;
+
+  /**
+   * Constructor, see {@link #get()}
+   */
+  private CellText() {
+  }
+
+  /**
+   * Returns the buffer of the current thread, its text is replaced by the next cell read on the thread
+   *
+   * @return Buffer
+   */
+  static CellText get() {
+    return BUFFERS.get();
+  }
+
+  /**
+   * Read the text of a cell
+   *
+   * @param cell Cell
+   */
+  void read(Element cell) {
+    clear();
+    NodeTraversor.traverse(this, cell);
+    trim();
+  }
+
+  /**
+   * Read the text of a cell, that has already been read as {@link Element#text()} does
+   *
+   * @param text Text of the cell
+   */
+  void read(String text) {
+    clear();
+    append(text, true);
+    trim();
+  }
+
+  @Override
+  public void head(Node node, int depth) {
+    if (node instanceof TextNode) {
+      TextNode textNode = (TextNode) node;
+      append(textNode.getWholeText(), textNode instanceof CDataNode || preserveWhitespace(textNode.parentNode()));
+    } else if (node instanceof Element) {
+      Element element = (Element) node;
+      if (this.chars.length() > 0 && (element.isBlock() || element.normalName().equals("br")) && !this.spaced) {
+        space();
+      }
+    }
+  }
+
+  @Override
+  public void tail(Node node, int depth) {
+    if (node instanceof Element && ((Element) node).isBlock() && node.nextSibling() instanceof TextNode
+            && !this.spaced) {
+      space();
+    }
+  }
+
+  @Override
+  public int length() {
+    return this.end - this.start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return this.chars.charAt(this.start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return this.chars.subSequence(this.start + start, this.start + end);
+  }
+
+  /**
+   * Returns the text that was read, as a new string
+   *
+   * @return Text
+   */
+  @Override
+  public String toString() {
+    return this.chars.substring(this.start, this.end);
+  }
+
+  private void clear() {
+    this.chars.setLength(0);
+    this.spaced = false;
+  }
+
+  /**
+   * Append the text of a text node, collapsing its white space (like {@link org.jsoup.internal.StringUtil}
+   * does) unless it is preserved
+   *
+   * @param text     Text
+   * @param preserve Set if the white space is to be kept as it is
+   */
+  private void append(String text, boolean preserve) {
+    boolean stripLeading = this.spaced;
+    boolean reachedNonWhite = false;
+    boolean lastWasWhite = false;
+    for (int i = 0; i < text.length(); ) {
+      int c = text.codePointAt(i);
+      i += Character.charCount(c);
+      if (preserve) {
+        appendNonWhite(c);
+        this.spaced = c == ' ';
+      } else if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00a0') {
+        if (!(stripLeading && !reachedNonWhite) && !lastWasWhite) {
+          space();
+          lastWasWhite = true;
+        }
+      } else if (c != '\u200b' && c != '\u00ad') { // invisible
+        appendNonWhite(c);
+        reachedNonWhite = true;
+        lastWasWhite = false;
+      }
+    }
+  }
+
+  private void appendNonWhite(int c) {
+    if (Character.isSpaceChar(c)) {
+      this.chars.append(' ');
+    } else {
+      this.chars.appendCodePoint(c);
+    }
+    this.spaced = false;
+  }
+
+  private void space() {
+    this.chars.append(' ');
+    this.spaced = true;
+  }
+
+  private void trim() {
+    this.start = 0;
+    this.end = this.chars.length();
+    while (this.start < this.end && this.chars.charAt(this.start) <= ' ') {
+      this.start++;
+    }
+    while (this.end > this.start && this.chars.charAt(this.end - 1) <= ' ') {
+      this.end--;
+    }
+  }
+
+  /**
+   * Checks if the white space of the text within the element is kept as it is, i.e. if it is within a &lt;pre&gt;
+   * (looking up as far as {@link Element#text()} does)
+   *
+   * @param node Parent of the text
+   * @return true if the white space is kept
+   */
+  private static boolean preserveWhitespace(Node node) {
+    if (node instanceof Element) {
+      Element element = (Element) node;
+      for (int i = 0; i < 6 && element != null; i++) {
+        if (element.tag().preserveWhitespace()) {
+          return true;
+        }
+        element = element.parent();
+      }
+    }
+    return false;
+  }
+
+}
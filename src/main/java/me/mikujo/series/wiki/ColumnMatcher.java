@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifies the columns of the episode tables, out of the hints compiled into a single (Aho-Corasick) automaton, so
+ * that the text of a header cell is scanned once for all the identifiers of all the hints<br>
+ * The columns identified for a header row are remembered, as the season tables of a page usually share the same
+ * header. Instances are immutable (but for the remembered headers) and can be shared across threads
+ *
+ * @author mithun.gonsalvez
+ */
+public final class ColumnMatcher {
+
+  /** Maximum number of distinct header rows whose columns are remembered */
+  private static final int MAX_LAYOUTS = 256;
+
+  /** Hints that were compiled */
+  private final Map<String, List<String>> hints;
+
+  /** Keys of the hints, indexed by the numbers the automaton reports */
+  private final String[] keys;
+
+  /** Characters of the transitions of each state, sorted */
+  private final char[][] chars;
+
+  /** Target state of each transition of each state, in the order of {@link #chars} */
+  private final int[][] targets;
+
+  /** State to continue from when a state has no transition for the character, i.e. the longest proper suffix */
+  private final int[] fail;
+
+  /** Keys (see {@link #keys}) of the identifiers that end in each state, including those reached through fail */
+  private final int[][] matches;
+
+  /** Columns identified per header row */
+  private final Map<List<String>, Map<String, Integer>> layouts = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param hints   Hints that were compiled
+   * @param keys    Keys of the hints
+   * @param chars   Characters of the transitions of each state
+   * @param targets Target state of each transition
+   * @param fail    Fail state of each state
+   * @param matches Keys of the identifiers that end in each state
+   */
+  private ColumnMatcher(Map<String, List<String>> hints, String[] keys, char[][] chars, int[][] targets, int[] fail,
+                        int[][] matches) {
+    this.hints = hints;
+    this.keys = keys;
+    this.chars = chars;
+    this.targets = targets;
+    this.fail = fail;
+    this.matches = matches;
+  }
+
+  /**
+   * Compile the provided hints
+   *
+   * @param hints Identifiers of each column, matched against the lower case text of the header cells
+   * @return Matcher
+   */
+  public static ColumnMatcher compile(Map<String, List<String>> hints) {
+    String[] keys = hints.keySet().toArray(new String[0]);
+
+    // the trie of all the identifiers, the root is state 0
+    List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+    List<Set<Integer>> ends = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    ends.add(new TreeSet<>());
+    for (int key = 0; key < keys.length; key++) {
+      for (String identifier : hints.get(keys[key])) {
+        int state = 0;
+        for (int i = 0; i < identifier.length(); i++) {
+          Integer next = trie.get(state).get(identifier.charAt(i));
+          if (next == null) {
+            next = trie.size();
+            trie.add(new TreeMap<>());
+            ends.add(new TreeSet<>());
+            trie.get(state).put(identifier.charAt(i), next);
+          }
+          state = next;
+        }
+        ends.get(state).add(key); // an empty identifier ends in the root, i.e. it matches any text
+      }
+    }
+
+    // the fail states, breadth first, so that the fail state of a state is complete before it is needed
+    int[] fail = new int[trie.size()];
+    Deque<Integer> queue = new ArrayDeque<>(trie.get(0).values());
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      for (Map.Entry<Character, Integer> transition : trie.get(state).entrySet()) {
+        int next = transition.getValue();
+        int suffix = fail[state];
+        Integer target = trie.get(suffix).get(transition.getKey());
+        while (target == null && suffix != 0) {
+          suffix = fail[suffix];
+          target = trie.get(suffix).get(transition.getKey());
+        }
+        fail[next] = target == null || target == next ? 0 : target;
+        ends.get(next).addAll(ends.get(fail[next]));
+        queue.add(next);
+      }
+    }
+
+    char[][] chars = new char[trie.size()][];
+    int[][] targets = new int[trie.size()][];
+    int[][] matches = new int[trie.size()][];
+    for (int state = 0; state < trie.size(); state++) {
+      TreeMap<Character, Integer> transitions = trie.get(state);
+      chars[state] = new char[transitions.size()];
+      targets[state] = new int[transitions.size()];
+      int i = 0;
+      for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+        chars[state][i] = transition.getKey();
+        targets[state][i++] = transition.getValue();
+      }
+      matches[state] = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+    }
+    return new ColumnMatcher(hints, keys, chars, targets, fail, matches);
+  }
+
+  /**
+   * Returns the hints that were compiled
+   *
+   * @return Hints
+   */
+  public Map<String, List<String>> getHints() {
+    return this.hints;
+  }
+
+  /**
+   * Identify the columns of an episode table, a column is identified by a hint if the lower case text of its header
+   * cell contains any of the identifiers of the hint, the last such column is taken if there are several
+   *
+   * @param header Text of the cells of the header row
+   * @return Column (1 based) of each hint that matched the header
+   */
+  public Map<String, Integer> match(List<String> header) {
+    Map<String, Integer> layout = this.layouts.get(header);
+    if (layout == null) {
+      layout = Collections.unmodifiableMap(identify(header));
+      if (this.layouts.size() < MAX_LAYOUTS) {
+        this.layouts.put(new ArrayList<>(header), layout);
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * Identify the columns of an episode table, without looking at the remembered headers
+   *
+   * @param header Text of the cells of the header row
+   * @return Column (1 based) of each hint that matched the header
+   */
+  private Map<String, Integer> identify(List<String> header) {
+    int[] columns = new int[this.keys.length];
+    for (int column = 0; column < header.size(); column++) {
+      String text = header.get(column).toLowerCase();
+      for (int key : this.matches[0]) {
+        columns[key] = column + 1;
+      }
+      int state = 0;
+      for (int i = 0; i < text.length(); i++) {
+        state = next(state, text.charAt(i));
+        for (int key : this.matches[state]) {
+          columns[key] = column + 1;
+        }
+      }
+    }
+
+    Map<String, Integer> result = new HashMap<>(header.size());
+    for (int key = 0; key < this.keys.length; key++) {
+      if (columns[key] != 0) {
+        result.put(this.keys[key], columns[key]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the state the automaton moves to on the provided character
+   *
+   * @param state Current state
+   * @param c     Character
+   * @return Next state
+   */
+  private int next(int state, char c) {
+    while (true) {
+      int i = Arrays.binarySearch(this.chars[state], c);
+      if (i >= 0) {
+        return this.targets[state][i];
+      } else if (state == 0) {
+        return 0;
+      }
+      state = this.fail[state];
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import java.util.List;
+
+/**
+ * Episode rows of a table, along with its header row (the row preceding the first episode row)
+ * @author mithun.gonsalvez
+ */
+interface EpisodeTable {
+
+  /**
+   * Returns the number of episode rows
+   * @return Number of rows
+   */
+  int size();
+
+  /**
+   * Returns the text of the cells of the header row, only invoked if there are episode rows
+   * @return Text of each cell
+   */
+  List<String> getHeader();
+
+  /**
+   * Read the text of a cell of an episode row
+   * @param row Row (0 based)
+   * @param column Column (0 based)
+   * @param text Buffer to read the text into
+   */
+  void readText(int row, int column, CellText text);
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+/**
+ * Episode tables of a page, looked up by the link target (i.e. the id) of the heading they follow
+ * @author mithun.gonsalvez
+ */
+interface EpisodeTables {
+
+  /**
+   * Find the episode table that follows the heading of the link target
+   * @param id Id of the link target
+   * @return Episode table, or null if there is no such link target or no table follows it
+   */
+  EpisodeTable find(String id);
+
+}
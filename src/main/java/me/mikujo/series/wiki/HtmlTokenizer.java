@@ -0,0 +1,742 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tokenizer of the pages, shared by the parsers that extract the episodes without reading the page into a document
+ * ({@link WikiStreamParser} and {@link WikiSlicer})<br>
+ * The page is split into start tags, end tags, text, comments and declarations, the way the parser of the documents
+ * splits it. Only the attributes that the parsers look at are kept, and the contents of the elements that are read as
+ * is (e.g. scripts) are skipped up to their end tag. The rules by which a tag implies the end of the elements that
+ * are open are kept along with it, each parser applies them to the elements it tracks<br>
+ * The page is read through a buffer, unless slices of it are to be read, see {@link #substring(int, int)}
+ * @author mithun.gonsalvez
+ */
+final class HtmlTokenizer {
+
+  /**
+   * Kinds of tokens
+   */
+  enum Token {
+
+    /** Start tag, see {@link #getName()} and its attributes */
+    START_TAG,
+
+    /** End tag, see {@link #getName()} */
+    END_TAG,
+
+    /** Text up to the next markup, see {@link #getText()}, entities are not decoded */
+    TEXT,
+
+    /** Comment, or markup that the parser reads as a comment */
+    COMMENT,
+
+    /** Document type declaration */
+    DOCTYPE,
+
+    /** Character data section */
+    CHARACTER_DATA,
+
+    /** End of the page */
+    END
+  }
+
+  /** Size of the buffer the page is read through */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Elements whose contents are read as is, until the end tag (a plaintext element does not end) */
+  private static final Set<String> RAW_TEXT = set("script", "style", "xmp", "iframe", "noembed", "noframes", "title",
+          "textarea", "plaintext");
+
+  /** Elements that close an open paragraph */
+  static final Set<String> CLOSES_P = set("address", "article", "aside", "blockquote", "center", "details", "dir",
+          "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup", "main", "menu", "nav", "ol",
+          "p", "section", "summary", "ul", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "listing", "form", "li", "dd",
+          "dt", "table", "hr", "xmp");
+
+  /** Elements that limit the scope in which an open paragraph or link is looked for */
+  static final Set<String> SCOPE = set("html", "table", "td", "th", "caption", "button", "object", "marquee",
+          "applet");
+
+  /** Elements whose end tag is implied by the end tag of a parent */
+  static final Set<String> IMPLIED_END = set("p", "li", "dd", "dt", "option", "optgroup", "rb", "rp", "rt", "rtc");
+
+  /** Ends implied by the start tags, see {@link #impliedByStart(String)} */
+  private static final Map<String, ImpliedEnd[]> STARTS = new HashMap<>();
+
+  /** Ends implied by the end tags, see {@link #impliedByEnd(String)} */
+  private static final Map<String, ImpliedEnd[]> ENDS = new HashMap<>();
+
+  /** No ends implied */
+  private static final ImpliedEnd[] NONE = new ImpliedEnd[0];
+
+  static {
+    Set<String> table = set("table");
+    ImpliedEnd cells = new ImpliedEnd(set("td", "th"), table);
+    ImpliedEnd rows = new ImpliedEnd(set("tr"), table);
+    ImpliedEnd sections = new ImpliedEnd(set("tbody", "thead", "tfoot"), table);
+    ImpliedEnd captions = new ImpliedEnd(set("caption", "colgroup"), table);
+    ImpliedEnd[] items = {new ImpliedEnd(set("li"), set("ul", "ol"))};
+    ImpliedEnd[] definitions = {new ImpliedEnd(set("dd", "dt"), set("dl"))};
+    ImpliedEnd[] inRow = {cells};
+    ImpliedEnd[] inSection = {cells, rows};
+    ImpliedEnd[] inTable = {cells, rows, sections};
+    STARTS.put("li", items);
+    STARTS.put("dd", definitions);
+    STARTS.put("dt", definitions);
+    STARTS.put("option", new ImpliedEnd[] {new ImpliedEnd(set("option"), null)});
+    STARTS.put("td", inRow);
+    STARTS.put("th", inRow);
+    STARTS.put("tr", inSection);
+    for (String name : Arrays.asList("tbody", "thead", "tfoot", "caption", "colgroup")) {
+      STARTS.put(name, inTable);
+    }
+    ENDS.put("tr", inRow);
+    ENDS.put("tbody", inSection);
+    ENDS.put("thead", inSection);
+    ENDS.put("tfoot", inSection);
+    ENDS.put("table", new ImpliedEnd[] {cells, rows, sections, captions});
+  }
+
+  /** Reader of the page */
+  private final Reader reader;
+
+  /** Set if the page is kept whole, instead of being read through the buffer */
+  private final boolean keep;
+
+  /** Buffer the page is read through (or the page itself, if it is kept) */
+  private char[] buffer = new char[BUFFER_SIZE];
+
+  /** Position within the page of the start of the buffer */
+  private int offset;
+
+  /** Position of the next character in the buffer */
+  private int pos;
+
+  /** Number of characters in the buffer */
+  private int limit;
+
+  /** Set once the page has been read completely */
+  private boolean eof;
+
+  /** Set once the start of the page has been read */
+  private boolean started;
+
+  /** Name of the element whose contents are to be skipped before the next token, null if none */
+  private String rawText;
+
+  /** Position within the page of the current token */
+  private int start;
+
+  /** Position within the page past the current token */
+  private int end;
+
+  /** Text of the current token (the name of a tag), it is only read out of a kept page when asked for */
+  private final StringBuilder text = new StringBuilder();
+
+  /** Set if the text of the current token is yet to be read out of the kept page */
+  private boolean textPending;
+
+  /** Name of the current tag, in lower case */
+  private String name;
+
+  /** Id attribute of the current tag */
+  private String id;
+
+  /** Class attribute of the current tag */
+  private String className;
+
+  /** Role attribute of the current tag */
+  private String role;
+
+  /** Link attribute of the current tag */
+  private String href;
+
+  /** Set if the current tag is self closing */
+  private boolean selfClosing;
+
+  /**
+   * Constructor
+   * @param in Stream with the contents of the page, it is read only as far as the tokens are read and is not closed
+   * @param keep Set to keep the page whole, so that slices of it can be read, see {@link #substring(int, int)}
+   */
+  HtmlTokenizer(InputStream in, boolean keep) {
+    this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+    this.keep = keep;
+  }
+
+  /**
+   * Returns the ends that a start tag implies, in the order the elements are closed
+   * @param name Name of the element
+   * @return Ends implied
+   */
+  static ImpliedEnd[] impliedByStart(String name) {
+    return STARTS.getOrDefault(name, NONE);
+  }
+
+  /**
+   * Returns the ends that an end tag implies within its element, in the order the elements are closed (besides the
+   * ends of the {@link #IMPLIED_END} elements)
+   * @param name Name of the element
+   * @return Ends implied
+   */
+  static ImpliedEnd[] impliedByEnd(String name) {
+    return ENDS.getOrDefault(name, NONE);
+  }
+
+  /**
+   * Read the next token
+   * @return Kind of the token
+   * @throws IOException If the page cannot be read
+   */
+  Token next() throws IOException {
+    if (!this.started) {
+      this.started = true;
+      if (peek(0) == '\uFEFF') {
+        this.pos++;
+      }
+    }
+    if (this.rawText != null) {
+      skipRawText(this.rawText);
+      this.rawText = null;
+    }
+    while (true) {
+      this.start = this.offset + this.pos;
+      this.textPending = false;
+      int c = peek(0);
+      if (c == -1) {
+        this.end = this.start;
+        return Token.END;
+      } else if (c == '<' && peek(1) == '/' && peek(2) == '>') {
+        this.pos += 3; // ignored by the parser as well
+        continue;
+      }
+      Token token = c == '<' ? readMarkup() : null;
+      if (token == null) {
+        readText();
+        token = Token.TEXT;
+      }
+      this.end = this.offset + this.pos;
+      return token;
+    }
+  }
+
+  /**
+   * Returns the name of the current tag
+   * @return Name, in lower case
+   */
+  String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the text of the current text token
+   * @return Text, valid until the next token is read
+   */
+  CharSequence getText() {
+    if (this.textPending) {
+      this.textPending = false;
+      this.text.setLength(0);
+      this.text.append(this.buffer, this.start, this.end - this.start);
+    }
+    return this.text;
+  }
+
+  /**
+   * Returns the id of the current start tag (the first of the ids, if there are many, entities are decoded)
+   * @return Id, null if none
+   */
+  String getId() {
+    return this.id;
+  }
+
+  /**
+   * Returns the class attribute of the current start tag
+   * @return Classes, null if none
+   */
+  String getClassName() {
+    return this.className;
+  }
+
+  /**
+   * Returns the role of the current start tag
+   * @return Role, null if none
+   */
+  String getRole() {
+    return this.role;
+  }
+
+  /**
+   * Returns the link of the current start tag
+   * @return Link, null if none
+   */
+  String getHref() {
+    return this.href;
+  }
+
+  /**
+   * Check if the current tag is self closing
+   * @return true, if it is
+   */
+  boolean isSelfClosing() {
+    return this.selfClosing;
+  }
+
+  /**
+   * Returns the position within the page of the current token (the length of the page, at its end)
+   * @return Position
+   */
+  int getStart() {
+    return this.start;
+  }
+
+  /**
+   * Returns the position within the page past the current token
+   * @return Position
+   */
+  int getEnd() {
+    return this.end;
+  }
+
+  /**
+   * Read the tokens from the start of the page again, which is only possible if the page is kept
+   */
+  void rewind() {
+    if (!this.keep) {
+      throw new IllegalStateException("The page is not kept");
+    }
+    this.pos = 0;
+    this.rawText = null;
+  }
+
+  /**
+   * Returns a slice of the page, which is only possible if the page is kept
+   * @param start Position of the slice
+   * @param end Position past the end of the slice
+   * @return Slice
+   */
+  String substring(int start, int end) {
+    if (!this.keep) {
+      throw new IllegalStateException("The page is not kept");
+    }
+    return new String(this.buffer, start, end - start);
+  }
+
+  /**
+   * Read the markup at the current position, i.e. a tag, a comment or a declaration
+   * @return Kind of the token, {@link Token#END} if the page ends within a tag (the tag is dropped), or null if the
+   *         '&lt;' is not the start of markup and is to be read as text
+   * @throws IOException If the page cannot be read
+   */
+  private Token readMarkup() throws IOException {
+    int next = peek(1);
+    if (isLetter(next)) {
+      this.pos++;
+      readName();
+      if (!readAttributes()) {
+        return Token.END;
+      }
+      if (!this.selfClosing && RAW_TEXT.contains(this.name)) {
+        this.rawText = this.name;
+      }
+      return Token.START_TAG;
+    } else if (next == '/') {
+      int first = peek(2);
+      if (isLetter(first)) {
+        this.pos += 2;
+        readName();
+        return readAttributes() ? Token.END_TAG : Token.END;
+      }
+      this.pos += 2;
+      skipPast('>');
+      return Token.COMMENT;
+    } else if (next == '!') {
+      this.pos += 2;
+      if (peek(0) == '-' && peek(1) == '-') {
+        this.pos += 2;
+        skipComment();
+        return Token.COMMENT;
+      } else if (matches("[CDATA[", false)) {
+        skipCharacterData();
+        return Token.CHARACTER_DATA;
+      }
+      boolean doctype = matches("doctype", true);
+      skipPast('>');
+      return doctype ? Token.DOCTYPE : Token.COMMENT;
+    } else if (next == '?') {
+      this.pos += 2;
+      skipPast('>');
+      return Token.COMMENT;
+    }
+    return null;
+  }
+
+  /**
+   * Read text, up to the next '&lt;' (past the current character, which may be a '&lt;' that is not the start of
+   * markup)
+   * @throws IOException If the page cannot be read
+   */
+  private void readText() throws IOException {
+    if (this.keep) {
+      this.textPending = true;
+      this.pos++;
+      while (peek(0) != -1 && this.buffer[this.pos] != '<') {
+        this.pos++;
+      }
+      return;
+    }
+    this.text.setLength(0);
+    this.text.append(this.buffer[this.pos++]);
+    for (int c = peek(0); c != -1 && c != '<'; c = peek(0)) {
+      this.text.append((char) c);
+      this.pos++;
+    }
+  }
+
+  /**
+   * Read the name of a tag, in lower case
+   * @throws IOException If the page cannot be read
+   */
+  private void readName() throws IOException {
+    this.text.setLength(0);
+    for (int c = peek(0); c != -1 && !isSpace(c) && c != '/' && c != '>'; c = peek(0)) {
+      this.text.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : (char) c);
+      this.pos++;
+    }
+    this.name = this.text.toString();
+  }
+
+  /**
+   * Read the attributes of a tag, up to the end of the tag, only the attributes that are looked at are kept
+   * @return false, if the page ends within the tag (the tag is dropped)
+   * @throws IOException If the page cannot be read
+   */
+  private boolean readAttributes() throws IOException {
+    this.id = null;
+    this.className = null;
+    this.role = null;
+    this.href = null;
+    this.selfClosing = false;
+    while (true) {
+      int c = read();
+      if (c == -1) {
+        return false;
+      } else if (c == '>') {
+        return true;
+      } else if (c == '/') {
+        if (peek(0) == '>') {
+          this.pos++;
+          this.selfClosing = true;
+          return true;
+        }
+      } else if (!isSpace(c)) {
+        this.text.setLength(0);
+        this.text.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : (char) c);
+        for (c = peek(0); c != -1 && !isSpace(c) && c != '/' && c != '>' && c != '='; c = peek(0)) {
+          this.text.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : (char) c);
+          this.pos++;
+        }
+        String attribute = this.text.toString();
+        skipSpaces();
+        String value = "";
+        if (peek(0) == '=') {
+          this.pos++;
+          skipSpaces();
+          value = readValue();
+        }
+        setAttribute(attribute, value);
+      }
+    }
+  }
+
+  /**
+   * Read the value of an attribute, quoted or not
+   * @return Value, entities are not decoded yet
+   * @throws IOException If the page cannot be read
+   */
+  private String readValue() throws IOException {
+    this.text.setLength(0);
+    int quote = peek(0);
+    if (quote == '"' || quote == '\'') {
+      this.pos++;
+      for (int c = read(); c != -1 && c != quote; c = read()) {
+        this.text.append((char) c);
+      }
+    } else {
+      for (int c = peek(0); c != -1 && !isSpace(c) && c != '>'; c = peek(0)) {
+        this.text.append((char) c);
+        this.pos++;
+      }
+    }
+    return this.text.toString();
+  }
+
+  /**
+   * Keep the attribute, if it is looked at, the first of the attributes with the same name is the one kept
+   * @param attribute Name of the attribute
+   * @param value Value of the attribute
+   */
+  private void setAttribute(String attribute, String value) {
+    if (value.indexOf('&') != -1) {
+      value = Parser.unescapeEntities(value, true);
+    }
+    switch (attribute) {
+      case "id":
+        this.id = this.id == null ? value : this.id;
+        break;
+      case "class":
+        this.className = this.className == null ? value : this.className;
+        break;
+      case "role":
+        this.role = this.role == null ? value : this.role;
+        break;
+      case "href":
+        this.href = this.href == null ? value : this.href;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Skip the contents of an element that are read as is, up to its end tag (which is read as the next token)
+   * @param element Name of the element
+   * @throws IOException If the page cannot be read
+   */
+  private void skipRawText(String element) throws IOException {
+    boolean endless = element.equals("plaintext");
+    for (int c = peek(0); c != -1; c = peek(0)) {
+      if (c == '<' && !endless && peek(1) == '/' && matchesEndTag(element)) {
+        return;
+      }
+      this.pos++;
+    }
+  }
+
+  /**
+   * Check if the end tag of the element is at the current position
+   * @param element Name of the element, in lower case
+   * @return true, if the end tag of the element follows
+   * @throws IOException If the page cannot be read
+   */
+  private boolean matchesEndTag(String element) throws IOException {
+    for (int i = 0; i < element.length(); i++) {
+      int c = peek(i + 2);
+      if (c == -1 || Character.toLowerCase((char) c) != element.charAt(i)) {
+        return false;
+      }
+    }
+    int next = peek(element.length() + 2);
+    return next == -1 || isSpace(next) || next == '/' || next == '>';
+  }
+
+  /**
+   * Check if the text follows the current position
+   * @param value Text, in lower case if the case is ignored
+   * @param ignoreCase Set to ignore the case
+   * @return true, if the text follows
+   * @throws IOException If the page cannot be read
+   */
+  private boolean matches(String value, boolean ignoreCase) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      int c = peek(i);
+      if (c == -1 || (ignoreCase ? Character.toLowerCase((char) c) : c) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Skip a comment, past its end
+   * @throws IOException If the page cannot be read
+   */
+  private void skipComment() throws IOException {
+    if (peek(0) == '>') {
+      this.pos++;
+      return;
+    } else if (peek(0) == '-' && peek(1) == '>') {
+      this.pos += 2;
+      return;
+    }
+    for (int c = read(); c != -1; c = read()) {
+      if (c == '-' && peek(0) == '-' && peek(1) == '>') {
+        this.pos += 2;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Skip a character data section, past its end
+   * @throws IOException If the page cannot be read
+   */
+  private void skipCharacterData() throws IOException {
+    for (int c = read(); c != -1; c = read()) {
+      if (c == ']' && peek(0) == ']' && peek(1) == '>') {
+        this.pos += 2;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Skip past the next occurrence of the character
+   * @param c Character
+   * @throws IOException If the page cannot be read
+   */
+  private void skipPast(char c) throws IOException {
+    for (int next = read(); next != -1 && next != c; next = read()) {
+      // skip
+    }
+  }
+
+  /**
+   * Skip white space
+   * @throws IOException If the page cannot be read
+   */
+  private void skipSpaces() throws IOException {
+    while (isSpace(peek(0))) {
+      this.pos++;
+    }
+  }
+
+  /**
+   * Returns the character at the offset from the current position, without moving past it
+   * @param ahead Offset
+   * @return Character, -1 if the page ends before
+   * @throws IOException If the page cannot be read
+   */
+  private int peek(int ahead) throws IOException {
+    if (this.pos + ahead >= this.limit) {
+      fill(ahead + 1);
+    }
+    return this.pos + ahead < this.limit ? this.buffer[this.pos + ahead] : -1;
+  }
+
+  /**
+   * Returns the character at the current position and moves past it
+   * @return Character, -1 if the page has ended
+   * @throws IOException If the page cannot be read
+   */
+  private int read() throws IOException {
+    int c = peek(0);
+    if (c != -1) {
+      this.pos++;
+    }
+    return c;
+  }
+
+  /**
+   * Fill the buffer, so that it holds at least the number of characters from the current position, the characters
+   * before the current position are dropped unless the page is kept
+   * @param count Number of characters
+   * @throws IOException If the page cannot be read
+   */
+  private void fill(int count) throws IOException {
+    if (this.keep) {
+      if (this.pos + count > this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.pos + count));
+      }
+    } else if (this.pos > 0) {
+      System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+      this.limit -= this.pos;
+      this.offset += this.pos;
+      this.pos = 0;
+    }
+    while (!this.eof && this.limit < this.pos + count) {
+      if (this.limit == this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+      }
+      int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+      if (read == -1) {
+        this.eof = true;
+      } else {
+        this.limit += read;
+      }
+    }
+  }
+
+  /**
+   * Check if the character is white space, as the parser reads it within tags
+   * @param c Character
+   * @return true, if it is
+   */
+  static boolean isSpace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+
+  /**
+   * Check if the text is only white space
+   * @param text Text
+   * @return true, if it is
+   */
+  static boolean isBlank(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (!isSpace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static Set<String> set(String... names) {
+    return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+  }
+
+  /**
+   * End of an element implied by a tag, the nearest of the elements is closed, along with the elements that are open
+   * within it (which a parser may report as unsupported instead)
+   */
+  static final class ImpliedEnd {
+
+    /** Names of the elements that are closed */
+    final Set<String> names;
+
+    /** Names of the elements beyond which the elements are not looked for, null if only the current one is */
+    final Set<String> boundaries;
+
+    /**
+     * Constructor
+     * @param names Names of the elements that are closed
+     * @param boundaries Names of the elements beyond which the elements are not looked for, null if only the current
+     *                   element is looked at
+     */
+    ImpliedEnd(Set<String> names, Set<String> boundaries) {
+      this.names = names;
+      this.boundaries = boundaries;
+    }
+
+  }
+
+}
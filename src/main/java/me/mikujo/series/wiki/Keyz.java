@@ -41,6 +41,12 @@ public interface Keyz {
   /** Key 'series', identifies the list of series to be parsed */
   String SERIES = "series";
 
+  /** Key 'completed-series', identifies the list of series that have ended, they are left out unless asked for */
+  String COMPLETED_SERIES = "completed-series";
+
+  /** Key 'refresh', overrides how long the cached page of a series is used before it is refreshed */
+  String REFRESH = "refresh";
+
   /** Key 'extends', identifies the parent from which we should inherit properties */
   String EXTENDS = "extends";
 
@@ -50,6 +56,9 @@ public interface Keyz {
   /** Key 'wiki' indicates that we should be using the wiki parser */
   String TYPE_WIKI = "wiki";
 
+  /** Key 'parsed', name of the cache directory holding the episodes parsed out of the pages */
+  String PARSED = "parsed";
+
   /** Key 'text', that identifies that the format is text */
   String FORMAT_TEXT = "text";
 
@@ -71,9 +80,90 @@ public interface Keyz {
   /** Format of the air date column */
   String DATE_FORMAT = "air.date.format";
 
+  /** How the episodes are fetched, either the whole page ('page', the default) or just its episode sections */
+  String FETCH_MODE = "fetch.mode";
+
+  /** Fetch mode 'sections', fetches only the episode sections through the parse API of the wiki */
+  String FETCH_MODE_SECTIONS = "sections";
+
   /** Key for the setting used to fetch the episode unifier multiplier */
   String SEASON_MULTIPLIER = "unified.episode.season.multiplier";
 
   String SEASON_SKIP_LIST = "season.skip";
 
+  /** Key for the setting used to fetch the number of pages that are downloaded concurrently */
+  String FETCH_THREADS = "pipeline.fetch.threads";
+
+  /** Key for the setting used to fetch the number of pages that are parsed concurrently */
+  String PARSE_THREADS = "pipeline.parse.threads";
+
+  /** Key for the setting used to fetch the number of pending tasks allowed between the pipeline stages */
+  String PIPELINE_QUEUE_SIZE = "pipeline.queue.size";
+
+  /** Key for the setting used to fetch the connect timeout (in milliseconds) of HTTP requests */
+  String HTTP_CONNECT_TIMEOUT = "http.connect.timeout";
+
+  /** Key for the setting used to fetch the read timeout (in milliseconds) of HTTP requests */
+  String HTTP_READ_TIMEOUT = "http.read.timeout";
+
+  /** Key for the setting used to fetch the number of times a failed HTTP request is retried */
+  String HTTP_RETRIES = "http.retries";
+
+  /** Key for the setting used to fetch the delay (in milliseconds) before the first retry of a HTTP request */
+  String HTTP_RETRY_DELAY = "http.retry.delay";
+
+  /** Key for the setting used to fetch the maximum delay (in milliseconds) between retries of a HTTP request */
+  String HTTP_RETRY_MAX_DELAY = "http.retry.max.delay";
+
+  /** Key for the setting used to fetch the number of HTTP requests per second sent to a single host */
+  String HTTP_HOST_RATE = "http.host.rate";
+
+  /** Key for the setting used to fetch the number of HTTP requests that can be sent to a host in a burst */
+  String HTTP_HOST_BURST = "http.host.burst";
+
+  /** Key for the setting used to fetch the maximum number of concurrent HTTP requests to a single host */
+  String HTTP_HOST_MAX_CONCURRENCY = "http.host.max.concurrency";
+
+  /** Key for the setting used to fetch the latency (in milliseconds) above which a host is considered congested */
+  String HTTP_HOST_LATENCY_TARGET = "http.host.latency.target";
+
+  /** Key for the setting used to fetch the codec of a new cache directory (none, gzip or gzip-fast) */
+  String CACHE_CODEC = "cache.codec";
+
+  /** Key for the setting used to fetch the maximum size (in megabytes) of the cached pages */
+  String CACHE_MAX_SIZE = "cache.max.size";
+
+  /** Key for the setting used to fetch the number of days a cached entry is retained after it was last used */
+  String CACHE_MAX_AGE = "cache.max.age";
+
+  /** Key for the setting used to fetch the number of seconds to wait for another process to release a cache lock */
+  String CACHE_LOCK_TIMEOUT = "cache.lock.timeout";
+
+  /** Key for the setting used to fetch whether pages are cached pruned down to the TOC and the episode tables */
+  String CACHE_PRUNE = "cache.prune";
+
+  /** Key for the setting used to fetch how the episodes are extracted out of a page (dom, stream or slice) */
+  String PARSE_MODE = "parse.mode";
+
+  /** Parse mode 'stream', extracts the episodes as the page is read, without reading the page into a document */
+  String PARSE_MODE_STREAM = "stream";
+
+  /** Parse mode 'slice', parses only the slices of the page that hold the table of contents and the seasons */
+  String PARSE_MODE_SLICE = "slice";
+
+  /** Key for the setting used to fetch the number of threads the seasons of the pages are extracted on (0: none) */
+  String PARSE_SEASON_THREADS = "parse.season.threads";
+
+  /** Key for the setting used to fetch the maximum number of megabytes downloaded by a prefetch */
+  String PREFETCH_MAX_SIZE = "prefetch.max.size";
+
+  /** Key for the setting used to fetch the maximum number of seconds a prefetch keeps fetching pages */
+  String PREFETCH_MAX_TIME = "prefetch.max.time";
+
+  /** Key for the setting used to fetch whether the completed series are written to the output */
+  String OUTPUT_COMPLETED = "output.completed";
+
+  /** Key for the setting used to fetch the base URL of the wiki (pages are under 'wiki/', the API is 'w/api.php') */
+  String WIKI_URL = "wiki.url";
+
 }
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Layout of the episode tables of a page, as learned by parsing the page (for a series), i.e. the columns that hold
+ * the title and the air date of the episodes, and the pattern the air dates parse with, per season<br>
+ * A later parse of the page uses the columns as long as the header of the table has not changed, and tries the
+ * pattern first, see {@link WikiParser#parse(me.mikujo.series.RawInfo, org.jsoup.nodes.Document, java.util.Set,
+ * PageLayout)}. Seasons can be learned from multiple threads
+ *
+ * @author mithun.gonsalvez
+ */
+public final class PageLayout {
+
+  /** Layout of each season, keyed by the id of the season in the page */
+  private final Map<String, Season> seasons = new ConcurrentHashMap<>();
+
+  /** Whether a season was learned (or changed) since the layout was created */
+  private volatile boolean changed;
+
+  /**
+   * Constructor, of a layout where nothing is learned yet
+   */
+  public PageLayout() {
+  }
+
+  /**
+   * Constructor, of a layout learned earlier
+   *
+   * @param seasons Layout of each season, keyed by the id of the season in the page
+   */
+  public PageLayout(Map<String, Season> seasons) {
+    this.seasons.putAll(seasons);
+  }
+
+  /**
+   * Returns the layout of a season
+   *
+   * @param id Id of the season in the page
+   * @return Layout of the season, or null if it is not known
+   */
+  public Season get(String id) {
+    return this.seasons.get(id);
+  }
+
+  /**
+   * Learn the layout of a season
+   *
+   * @param id     Id of the season in the page
+   * @param season Layout of the season
+   */
+  public void put(String id, Season season) {
+    if (!season.equals(this.seasons.put(id, season))) {
+      this.changed = true;
+    }
+  }
+
+  /**
+   * Returns the layout of all the seasons
+   *
+   * @return Layout of each season, keyed by the id of the season in the page
+   */
+  public Map<String, Season> getSeasons() {
+    return Collections.unmodifiableMap(this.seasons);
+  }
+
+  /**
+   * Checks if a season was learned (or changed) since the layout was created, i.e. if it needs to be stored again
+   *
+   * @return true if the layout changed
+   */
+  public boolean isChanged() {
+    return this.changed;
+  }
+
+  /**
+   * Layout of the episode table of a season
+   */
+  public static final class Season {
+
+    /** Text of the cells of the header row */
+    public final List<String> header;
+
+    /** Column (1 based) of the title */
+    public final int titleColumn;
+
+    /** Column (1 based) of the air date */
+    public final int dateColumn;
+
+    /**
+     * Pattern (see {@link me.mikujo.series.utils.DateRecognizer}) the air dates were last recognized with, -1 if
+     * none were (or the layout of the page has its own date format)
+     */
+    public final int datePattern;
+
+    /**
+     * Constructor
+     *
+     * @param header      Text of the cells of the header row
+     * @param titleColumn Column (1 based) of the title
+     * @param dateColumn  Column (1 based) of the air date
+     * @param datePattern Pattern the air dates were last recognized with, -1 if none
+     */
+    public Season(List<String> header, int titleColumn, int dateColumn, int datePattern) {
+      this.header = Collections.unmodifiableList(new ArrayList<>(header));
+      this.titleColumn = titleColumn;
+      this.dateColumn = dateColumn;
+      this.datePattern = datePattern;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof Season)) {
+        return false;
+      }
+      Season other = (Season) obj;
+      return this.titleColumn == other.titleColumn && this.dateColumn == other.dateColumn
+              && this.datePattern == other.datePattern && this.header.equals(other.header);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.header, this.titleColumn, this.dateColumn, this.datePattern);
+    }
+
+  }
+
+}
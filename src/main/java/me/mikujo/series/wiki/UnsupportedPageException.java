@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+/**
+ * The episodes cannot be extracted out of the page without reading the page into a document, e.g. the page relies on
+ * the parser to fix its structure, see {@link Keyz#PARSE_MODE}
+ * @author mithun.gonsalvez
+ */
+final class UnsupportedPageException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor
+   * @param message What is not supported
+   */
+  UnsupportedPageException(String message) {
+    super(message, null, false, false);
+  }
+
+}
@@ -17,22 +17,27 @@ package me.mikujo.series.wiki;
 import me.mikujo.series.Episode;
 import me.mikujo.series.RawInfo;
 import me.mikujo.series.Series;
+import me.mikujo.series.cache.CacheEntry;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
 import me.mikujo.series.utils.Configs;
+import me.mikujo.series.utils.DateRecognizer;
 import me.mikujo.series.utils.Utils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
 import org.jsoup.select.Elements;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,216 +54,927 @@ public class WikiParser {
   private static final Pattern IN_BRACKET = Pattern.compile("\\((.+?)\\)");
 
   /**
-   * Prefix for english wikipedia pages
+   * Base URL of the english wikipedia
    */
-  private static final String WIKI_PREFIX = "https://en.wikipedia.org/wiki/";
+  private static final String WIKI_URL = "https://en.wikipedia.org/";
 
   /**
-   * Only one single instance
+   * Path of the pages, relative to the base URL of the wiki
+   */
+  private static final String WIKI_PAGES = "wiki/";
+
+  /**
+   * Version of the extraction logic, part of the {@link #fingerprint(RawInfo, Set)}<br>
+   * Must be incremented whenever a change to the parser changes the episodes it extracts from the same page
+   */
+  private static final int EXTRACTION_VERSION = 2;
+
+  /**
+   * Fetch mode that fetches the whole page, the default
+   */
+  private static final String FETCH_MODE_PAGE = "page";
+
+  /**
+   * Parse mode that reads the page into a document, the default
+   */
+  private static final String PARSE_MODE_DOM = "dom";
+
+  /**
+   * Number of pages whose episodes were extracted without reading the page into a document
+   */
+  private static final AtomicLong PARTIAL_PARSES = new AtomicLong();
+
+  /**
+   * Number of pages that had to be read into a document, as the episodes could not be extracted out of them otherwise
+   */
+  private static final AtomicLong PARTIAL_FALLBACKS = new AtomicLong();
+
+  /**
+   * Minimum number of seasons a page should have, for its seasons to be extracted in parallel, see
+   * {@link Keyz#PARSE_SEASON_THREADS}
+   */
+  private static final int PARALLEL_MIN_SEASONS = 4;
+
+  /**
+   * Only one single instance, it does not hold any state and hence can be shared across threads
    */
   private static final WikiParser PARSER = new WikiParser();
 
   /**
-   * Parse the provided series
+   * Fetch the page for the provided series into the cache<br>
+   * This is the network bound stage of processing a series and can be invoked from multiple threads
    *
-   * @param series  Series to parse
-   * @param rawDir  Directory where the raw series data should be stored
+   * @param rawInfo Series data to fetch
+   * @param cache   Cache where the raw series data should be stored
    * @param offline Use cached data if available, if data is not available, then connect and fetch data
-   * @return Series instance
-   * @throws IOException If something goes wrong while processing
+   * @return Cached copy of the page
+   * @throws IOException If something goes wrong while fetching
    */
-  public static Series parse(RawInfo series, Path rawDir, Set<Integer> seasonSkip, boolean offline) throws IOException {
-    return PARSER.process(series, rawDir, seasonSkip, offline);
+  public static CachedPage fetch(RawInfo rawInfo, PageCache cache, boolean offline) throws IOException {
+    return fetch(rawInfo, cache, offline, 0);
   }
 
   /**
-   * Process the series and return the data
+   * Fetch the page for the provided series into the cache, unless the cached copy is recent enough to be used as is
    *
-   * @param rawInfo Series data to process
-   * @param rawDir  Directory where the raw series data should be stored
+   * @param rawInfo Series data to fetch
+   * @param cache   Cache where the raw series data should be stored
    * @param offline Use cached data if available, if data is not available, then connect and fetch data
-   * @return Series instance
-   * @throws IOException If something goes wrong while reading the data
+   * @param maxAge  Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   *                without revalidating it
+   * @return Cached copy of the page
+   * @throws IOException If something goes wrong while fetching
    */
-  private Series process(RawInfo rawInfo, Path rawDir, Set<Integer> seasonSkip, boolean offline) throws IOException {
+  public static CachedPage fetch(RawInfo rawInfo, PageCache cache, boolean offline, long maxAge)
+          throws IOException {
+    return fetch(rawInfo, cache, offline, maxAge, null);
+  }
+
+  /**
+   * Fetch the page for the provided series into the cache, unless the cached copy is recent enough to be used as is,
+   * the page is passed to the reader as it is being downloaded (e.g. to {@link #read(RawInfo, InputStream)} it)
+   *
+   * @param rawInfo Series data to fetch
+   * @param cache   Cache where the raw series data should be stored
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge  Maximum time (in millis) since the cached copy was fetched or revalidated, for it to be used
+   *                without revalidating it
+   * @param reader  Reads the page if it is downloaded, it is not invoked if the cached copy is used, can be null
+   * @return Cached copy of the page
+   * @throws IOException If something goes wrong while fetching
+   */
+  public static CachedPage fetch(RawInfo rawInfo, PageCache cache, boolean offline, long maxAge,
+                                 PageCache.DownloadReader reader) throws IOException {
     Map<String, Object> series = rawInfo.getSeriesInfo();
     String title = (String) series.get(Keyz.TITLE);
-    String page = (String) series.get(Keyz.PAGE);
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    if (isSectionsMode(layoutConfig)) {
+      String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+      return WikiSections.fetch(title, getPageName(rawInfo), epClz, cache, offline, maxAge, reader);
+    }
+    if (!isPruned()) {
+      return cache.fetch(title, getCachedUrl(rawInfo), offline, maxAge, reader);
+    }
+    String strUrl = getPageUrl(rawInfo);
+    String tocId = (String) layoutConfig.get(Keyz.TOC_ID);
+    String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+    String rowClass = (String) layoutConfig.get(Keyz.TABLE_ROW_CLZ);
+    return cache.fetch(title, getCachedUrl(rawInfo), offline, maxAge, reader,
+            in -> WikiPruner.prune(in, strUrl, tocId, epClz, rowClass));
+  }
+
+  /**
+   * Import the copy of the page that was cached for the provided series before the cache was indexed, see
+   * {@link PageCache#importLegacy(String, String)}
+   *
+   * @param rawInfo Series data
+   * @param cache   Cache where the raw series data is stored
+   * @throws IOException If something goes wrong while importing
+   */
+  public static void importLegacy(RawInfo rawInfo, PageCache cache) throws IOException {
+    if (!isSectionsMode(rawInfo.getLayoutConfig())) { // sections were never cached before the index
+      cache.importLegacy((String) rawInfo.getSeriesInfo().get(Keyz.TITLE), getCanonicalUrl(rawInfo));
+    }
+  }
+
+  /**
+   * Returns the cached copy of the page for the provided series as is, without connecting
+   *
+   * @param rawInfo Series data
+   * @param cache   Cache where the raw series data is stored
+   * @return Cached copy of the page, or null if it is not cached
+   * @throws IOException If something goes wrong while reading the cache
+   */
+  public static CachedPage peek(RawInfo rawInfo, PageCache cache) throws IOException {
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    if (isSectionsMode(layoutConfig)) {
+      String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+      return WikiSections.peek(getPageName(rawInfo), epClz, cache);
+    }
+    return cache.peek(getCachedUrl(rawInfo));
+  }
+
+  /**
+   * Parse the fetched page of the provided series<br>
+   * This is the CPU bound stage of processing a series and can be invoked from multiple threads
+   *
+   * @param rawInfo    Series data to parse
+   * @param page       Cached copy of the page, as returned by {@link #fetch(RawInfo, PageCache, boolean)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @return Series instance
+   * @throws IOException If something goes wrong while processing
+   */
+  public static Series parse(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip) throws IOException {
+    List<List<Episode>> episodes = extract(rawInfo, page, seasonSkip);
+    if (episodes == null) {
+      episodes = parse(rawInfo, read(rawInfo, page), seasonSkip);
+    }
+    return new Series(getPageUrl(rawInfo), (String) rawInfo.getSeriesInfo().get(Keyz.TITLE), episodes);
+  }
+
+  /**
+   * Read the document out of the fetched page of the provided series<br>
+   * The document is only read from while the episodes are extracted, so a single document can serve all the series
+   * that are parsed out of the same page, see {@link #getSource(RawInfo)}
+   *
+   * @param rawInfo Series data
+   * @param page    Cached copy of the page, as returned by {@link #fetch(RawInfo, PageCache, boolean)}
+   * @return Document
+   * @throws IOException If the page cannot be read
+   */
+  public static Document read(RawInfo rawInfo, CachedPage page) throws IOException {
+    // the page is decompressed as it is read, straight into the parser
+    try (InputStream is = page.open()) {
+      return read(rawInfo, is);
+    }
+  }
+
+  /**
+   * Read the document out of the page of the provided series, e.g. while it is being downloaded
+   *
+   * @param rawInfo Series data
+   * @param in      Stream with the contents of the page, it is not closed
+   * @return Document
+   * @throws IOException If the page cannot be read
+   */
+  public static Document read(RawInfo rawInfo, InputStream in) throws IOException {
+    String strUrl = getPageUrl(rawInfo);
+    if (isSectionsMode(rawInfo.getLayoutConfig())) {
+      return WikiSections.parse(in, strUrl);
+    }
+    return Jsoup.parse(in, StandardCharsets.UTF_8.name(), strUrl);
+  }
+
+  /**
+   * Extract the episodes of the provided series out of the document of its page<br>
+   * Can be invoked from multiple threads, also on the same document
+   *
+   * @param rawInfo    Series data
+   * @param doc        Document, as returned by {@link #read(RawInfo, CachedPage)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found in the document
+   */
+  public static List<List<Episode>> parse(RawInfo rawInfo, Document doc, Set<Integer> seasonSkip)
+          throws IOException {
+    return parse(rawInfo, doc, seasonSkip, new PageLayout());
+  }
+
+  /**
+   * Extract the episodes of the provided series out of the document of its page, trying the layout learned by an
+   * earlier parse of the page first, and learning the layout meanwhile<br>
+   * Can be invoked from multiple threads, also on the same document
+   *
+   * @param rawInfo    Series data
+   * @param doc        Document, as returned by {@link #read(RawInfo, CachedPage)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned for the series by earlier parses, updated with what this one learns
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found in the document
+   */
+  public static List<List<Episode>> parse(RawInfo rawInfo, Document doc, Set<Integer> seasonSkip, PageLayout layout)
+          throws IOException {
+    return parse(rawInfo, doc, seasonSkip, layout, null);
+  }
+
+  /**
+   * Extract the episodes of the provided series out of the document of its page, see
+   * {@link #parse(RawInfo, Document, Set, PageLayout)}, extracting the seasons of the page on the provided pool
+   *
+   * @param rawInfo    Series data
+   * @param doc        Document, as returned by {@link #read(RawInfo, CachedPage)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned for the series by earlier parses, updated with what this one learns
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread, see
+   *                   {@link Keyz#PARSE_SEASON_THREADS}
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found in the document
+   */
+  public static List<List<Episode>> parse(RawInfo rawInfo, Document doc, Set<Integer> seasonSkip, PageLayout layout,
+                                          ForkJoinPool seasonPool) throws IOException {
+    return PARSER.process(rawInfo, doc, seasonSkip, layout, seasonPool);
+  }
+
+  /**
+   * Extract the episodes of the provided series without reading its page into a document, either as the page is
+   * read or out of slices of the page, see {@link Keyz#PARSE_MODE}<br>
+   * Can be invoked from multiple threads
+   *
+   * @param rawInfo    Series data
+   * @param page       Cached copy of the page, as returned by {@link #fetch(RawInfo, PageCache, boolean)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @return A list containing all the seasons for the provided series, or null if the page has to be read into a
+   *         document instead, see {@link #read(RawInfo, CachedPage)}
+   * @throws IOException If the page cannot be read, or the episodes are not found in the page
+   */
+  public static List<List<Episode>> extract(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip)
+          throws IOException {
+    return extract(rawInfo, page, seasonSkip, new PageLayout());
+  }
+
+  /**
+   * Extract the episodes of the provided series without reading its page into a document, see
+   * {@link #extract(RawInfo, CachedPage, Set)}, trying the layout learned by an earlier parse of the page first, and
+   * learning the layout meanwhile
+   *
+   * @param rawInfo    Series data
+   * @param page       Cached copy of the page, as returned by {@link #fetch(RawInfo, PageCache, boolean)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned for the series by earlier parses, updated with what this one learns
+   * @return A list containing all the seasons for the provided series, or null if the page has to be read into a
+   *         document instead, see {@link #read(RawInfo, CachedPage)}
+   * @throws IOException If the page cannot be read, or the episodes are not found in the page
+   */
+  public static List<List<Episode>> extract(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip,
+                                            PageLayout layout) throws IOException {
+    return extract(rawInfo, page, seasonSkip, layout, null);
+  }
+
+  /**
+   * Extract the episodes of the provided series without reading its page into a document, see
+   * {@link #extract(RawInfo, CachedPage, Set, PageLayout)}, extracting the seasons of the page on the provided pool
+   *
+   * @param rawInfo    Series data
+   * @param page       Cached copy of the page, as returned by {@link #fetch(RawInfo, PageCache, boolean)}
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned for the series by earlier parses, updated with what this one learns
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread, see
+   *                   {@link Keyz#PARSE_SEASON_THREADS}
+   * @return A list containing all the seasons for the provided series, or null if the page has to be read into a
+   *         document instead, see {@link #read(RawInfo, CachedPage)}
+   * @throws IOException If the page cannot be read, or the episodes are not found in the page
+   */
+  public static List<List<Episode>> extract(RawInfo rawInfo, CachedPage page, Set<Integer> seasonSkip,
+                                            PageLayout layout, ForkJoinPool seasonPool) throws IOException {
+    if (!isPartial(rawInfo)) {
+      return null;
+    }
+    boolean sliced = Keyz.PARSE_MODE_SLICE.equals(getParseMode());
+    List<List<Episode>> episodes;
+    try (InputStream is = page.open()) {
+      if (sliced) {
+        episodes = PARSER.slice(rawInfo, is, seasonSkip, layout, seasonPool);
+      } else {
+        Configs layoutConfig = rawInfo.getLayoutConfig();
+        WikiStreamParser parser = WikiStreamParser.parse(is, (String) layoutConfig.get(Keyz.TOC_ID),
+                (String) layoutConfig.get(Keyz.EPISODES_LINK), (String) layoutConfig.get(Keyz.TABLE_ROW_CLZ));
+        episodes = PARSER.process(rawInfo, parser, seasonSkip, layout, seasonPool);
+      }
+    } catch (UnsupportedPageException e) {
+      PARTIAL_FALLBACKS.incrementAndGet();
+      System.err.println("Reading the page of [" + rawInfo.getSeriesInfo().get(Keyz.TITLE) + "] into a document, "
+              + "it cannot be " + (sliced ? "sliced: " : "streamed: ") + e.getMessage());
+      return null;
+    }
+    PARTIAL_PARSES.incrementAndGet();
+    return episodes;
+  }
+
+  /**
+   * Checks if the episodes of the provided series are extracted without reading its page into a document, see
+   * {@link Keyz#PARSE_MODE}<br>
+   * The page is then not read into a document (unless it turns out that it has to be)
+   *
+   * @param rawInfo Series data
+   * @return true if the page is streamed or sliced
+   * @throws IllegalArgumentException If the parse mode is not known
+   */
+  public static boolean isPartial(RawInfo rawInfo) throws IllegalArgumentException {
+    String parseMode = getParseMode();
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    if (PARSE_MODE_DOM.equals(parseMode) || isSectionsMode(layoutConfig)) {
+      return false;
+    } else if (Keyz.PARSE_MODE_SLICE.equals(parseMode)) {
+      return true;
+    }
+    return WikiStreamParser.supports((String) layoutConfig.get(Keyz.TOC_ID),
+            (String) layoutConfig.get(Keyz.EPISODES_LINK), (String) layoutConfig.get(Keyz.TABLE_ROW_CLZ));
+  }
+
+  /**
+   * Returns the number of pages whose episodes were extracted without reading the page into a document, see
+   * {@link #extract(RawInfo, CachedPage, Set)}
+   *
+   * @return Number of pages, since the start
+   */
+  public static long getPartialCount() {
+    return PARTIAL_PARSES.get();
+  }
+
+  /**
+   * Returns the number of pages that had to be read into a document, as the episodes could not be extracted out of
+   * them otherwise, see {@link #extract(RawInfo, CachedPage, Set)}
+   *
+   * @return Number of pages, since the start
+   */
+  public static long getFallbackCount() {
+    return PARTIAL_FALLBACKS.get();
+  }
+
+  /**
+   * Returns the time when the cached copy of the page for the provided series was last fetched or revalidated
+   *
+   * @param rawInfo Series data
+   * @param cache   Cache where the raw series data is stored
+   * @return Time (epoch millis), or -1 if the page is not cached
+   * @throws IOException If something goes wrong while reading the cache
+   */
+  public static long getFetchTime(RawInfo rawInfo, PageCache cache) throws IOException {
+    CacheEntry entry = cache.get(getRevalidatedUrl(rawInfo));
+    return entry == null ? -1 : entry.fetchTime;
+  }
+
+  /**
+   * Returns the current revisions of the pages on the wiki, looked up in batches, see {@link WikiRevisions}
+   *
+   * @param pages Names of the pages
+   * @return Revision of each page, keyed by the name of the page as provided, pages that do not exist are left out
+   * @throws IOException If the revisions cannot be looked up
+   */
+  public static Map<String, Long> getRevisions(Collection<String> pages) throws IOException {
+    return WikiRevisions.getRevisions(pages);
+  }
+
+  /**
+   * Mark the cached copy of the page for the provided series as revalidated, if it belongs to the current revision of
+   * the page, see {@link PageCache#confirm(String, long)}
+   *
+   * @param rawInfo  Series data
+   * @param cache    Cache where the raw series data is stored
+   * @param revision Current revision of the page
+   * @return true, if the cached copy is current
+   * @throws IOException If something goes wrong while updating the cache
+   */
+  public static boolean confirm(RawInfo rawInfo, PageCache cache, long revision) throws IOException {
+    return cache.confirm(getRevalidatedUrl(rawInfo), revision);
+  }
+
+  /**
+   * Record the revision the cached copy of the page for the provided series belongs to, see
+   * {@link PageCache#setRevision(String, long, long)}
+   *
+   * @param rawInfo  Series data
+   * @param cache    Cache where the raw series data is stored
+   * @param revision Revision of the page
+   * @param since    Time (epoch millis) when the revision was looked up
+   * @throws IOException If something goes wrong while updating the cache
+   */
+  public static void setRevision(RawInfo rawInfo, PageCache cache, long revision, long since) throws IOException {
+    cache.setRevision(getRevalidatedUrl(rawInfo), revision, since);
+  }
+
+  /**
+   * Returns the URL whose cached copy is revalidated for the provided series, i.e. the page itself, or the list of
+   * sections of the page if only the episode sections are fetched (the sections of a revision never change)
+   *
+   * @param rawInfo Series data
+   * @return URL in string form
+   * @throws IOException If the name of the page cannot be encoded
+   */
+  private static String getRevalidatedUrl(RawInfo rawInfo) throws IOException {
+    if (isSectionsMode(rawInfo.getLayoutConfig())) {
+      return WikiSections.getSectionsUrl(getPageName(rawInfo));
+    }
+    return getCachedUrl(rawInfo);
+  }
+
+  /**
+   * Check if pages are cached pruned down to the table of contents, the headings and the episode tables, see
+   * {@link WikiPruner}<br>
+   * Only applies to series whose whole page is fetched, the episode sections are small enough as they are
+   *
+   * @return true, if the pages are pruned
+   */
+  private static boolean isPruned() {
+    return Boolean.getBoolean(Keyz.CACHE_PRUNE);
+  }
+
+  /**
+   * Returns the URL the page of the provided series (fetched as a whole) is cached under, i.e. the canonical URL of
+   * the page, or along with the layout the page is pruned for, if pages are pruned (the fragment is not sent along
+   * with the request)
+   *
+   * @param rawInfo Series data
+   * @return URL in string form
+   */
+  private static String getCachedUrl(RawInfo rawInfo) {
+    String strUrl = getCanonicalUrl(rawInfo);
+    return isPruned() ? strUrl + getPrunedFragment(rawInfo.getLayoutConfig()) : strUrl;
+  }
+
+  /**
+   * Returns the fragment that tells apart the copies of a page pruned for different layouts
+   *
+   * @param layoutConfig Layout of the series
+   * @return Fragment
+   */
+  private static String getPrunedFragment(Configs layoutConfig) {
+    return "#pruned:" + layoutConfig.getOptional(Keyz.TOC_ID) + ':' + layoutConfig.getOptional(Keyz.EPISODES_LINK)
+            + ':' + layoutConfig.getOptional(Keyz.TABLE_ROW_CLZ);
+  }
+
+  /**
+   * Returns a fingerprint of everything, other than the page itself, that influences the episodes parsed out of it
+   * (i.e. the resolved layout, the hints and the seasons to skip)<br>
+   * Two parses of the same page with the same fingerprint yield the same episodes
+   *
+   * @param rawInfo    Series data
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @return Fingerprint
+   */
+  public static String fingerprint(RawInfo rawInfo, Set<Integer> seasonSkip) {
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    StringBuilder fingerprint = new StringBuilder().append(EXTRACTION_VERSION);
+    for (String key : new String[]{Keyz.TOC_ID, Keyz.EPISODES_LINK, Keyz.TABLE_ROW_CLZ, Keyz.DATE_FORMAT,
+            Keyz.FETCH_MODE}) {
+      fingerprint.append('\u0000').append(key).append('=').append(layoutConfig.getOptional(key));
+    }
+    fingerprint.append('\u0000').append(new TreeMap<>(rawInfo.getTableHints()));
+    fingerprint.append('\u0000').append(new TreeSet<>(seasonSkip));
+    return fingerprint.toString();
+  }
+
+  /**
+   * Returns the URL of the page for the provided series
+   *
+   * @param rawInfo Series data
+   * @return URL in string form
+   */
+  public static String getPageUrl(RawInfo rawInfo) {
+    return getBaseUrl() + WIKI_PAGES + rawInfo.getSeriesInfo().get(Keyz.PAGE);
+  }
+
+  /**
+   * Returns the canonical name of the page for the provided series, the cached copies of the page are looked up by it
+   * whichever way the series spells it
+   *
+   * @param rawInfo Series data
+   * @return Name of the page
+   */
+  public static String getPageName(RawInfo rawInfo) {
+    // the wiki treats spaces and underscores in the name of a page alike
+    return ((String) rawInfo.getSeriesInfo().get(Keyz.PAGE)).trim().replace(' ', '_');
+  }
+
+  /**
+   * Returns the canonical URL of the page for the provided series, see {@link #getPageName(RawInfo)}
+   *
+   * @param rawInfo Series data
+   * @return URL in string form
+   */
+  private static String getCanonicalUrl(RawInfo rawInfo) {
+    return getBaseUrl() + WIKI_PAGES + getPageName(rawInfo);
+  }
+
+  /**
+   * Returns the source the provided series is parsed out of, i.e. the canonical URL of its page, along with the
+   * anchor of the episodes section if only the episode sections are fetched, or the layout if the page is pruned<br>
+   * Series with the same source are parsed out of the same cached copy, hence the page needs to be fetched and read
+   * only once for all of them
+   *
+   * @param rawInfo Series data
+   * @return Source
+   */
+  public static String getSource(RawInfo rawInfo) {
+    String source = getCanonicalUrl(rawInfo);
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    if (isSectionsMode(layoutConfig)) {
+      String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+      source += epClz.charAt(0) == '#' ? epClz : '#' + epClz;
+    } else if (isPruned()) {
+      source += getPrunedFragment(layoutConfig);
+    }
+    return source;
+  }
+
+  /**
+   * Returns the base URL of the wiki, as specified by the setting {@link Keyz#WIKI_URL}
+   *
+   * @return Base URL, ending with a '/'
+   */
+  static String getBaseUrl() {
+    String baseUrl = System.getProperty(Keyz.WIKI_URL, WIKI_URL);
+    return baseUrl.endsWith("/") ? baseUrl : baseUrl + '/';
+  }
+
+  /**
+   * Returns the parse mode, see {@link Keyz#PARSE_MODE}
+   *
+   * @return Parse mode
+   * @throws IllegalArgumentException If the parse mode is not known
+   */
+  private static String getParseMode() throws IllegalArgumentException {
+    String parseMode = System.getProperty(Keyz.PARSE_MODE, PARSE_MODE_DOM);
+    if (!PARSE_MODE_DOM.equals(parseMode) && !Keyz.PARSE_MODE_STREAM.equals(parseMode)
+            && !Keyz.PARSE_MODE_SLICE.equals(parseMode)) {
+      throw new IllegalArgumentException("Unknown parse mode [" + parseMode + "]");
+    }
+    return parseMode;
+  }
+
+  /**
+   * Checks if the layout fetches only the episode sections of the page, see {@link Keyz#FETCH_MODE}
+   *
+   * @param layoutConfig Layout of the page
+   * @return true if only the episode sections are fetched, false if the whole page is fetched
+   * @throws IllegalArgumentException If the fetch mode is not known
+   */
+  private static boolean isSectionsMode(Configs layoutConfig) throws IllegalArgumentException {
+    Object fetchMode = layoutConfig.getOptional(Keyz.FETCH_MODE);
+    if (fetchMode == null || FETCH_MODE_PAGE.equals(fetchMode)) {
+      return false;
+    } else if (Keyz.FETCH_MODE_SECTIONS.equals(fetchMode)) {
+      return true;
+    }
+    throw new IllegalArgumentException("Unknown fetch mode [" + fetchMode + "]");
+  }
+
+  /**
+   * Process the series and return the data
+   *
+   * @param rawInfo    Series data to process
+   * @param doc        Document of the page
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found in the document
+   */
+  private List<List<Episode>> process(RawInfo rawInfo, Document doc, Set<Integer> seasonSkip, PageLayout layout,
+                                      ForkJoinPool seasonPool) throws IOException {
+    String title = (String) rawInfo.getSeriesInfo().get(Keyz.TITLE);
 
     Configs layoutConfig = rawInfo.getLayoutConfig();
     String tocId = (String) layoutConfig.get(Keyz.TOC_ID);
     String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
     String rowClass = (String) layoutConfig.get(Keyz.TABLE_ROW_CLZ);
-    String strDateFormat = (String) layoutConfig.getOptional(Keyz.DATE_FORMAT);
-    DateTimeFormatter dateFormat = null;
-    if (strDateFormat != null) {
-      dateFormat = DateTimeFormatter.ofPattern(strDateFormat);
+    DateTimeFormatter dateFormat = getDateFormat(layoutConfig);
+
+    ColumnMatcher hints = rawInfo.getColumnMatcher();
+
+    if (isSectionsMode(layoutConfig)) {
+      return parseSections(doc, title, epClz, rowClass, dateFormat, hints, seasonSkip, layout, seasonPool);
+    }
+    return parse(doc, title, tocId, epClz, rowClass, dateFormat, hints, seasonSkip, layout, seasonPool);
+  }
+
+  /**
+   * Process the series out of the episode tables read as the page was streamed
+   *
+   * @param rawInfo    Series data to process
+   * @param page       Episode tables of the page
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found in the page
+   */
+  private List<List<Episode>> process(RawInfo rawInfo, WikiStreamParser page, Set<Integer> seasonSkip,
+                                      PageLayout layout, ForkJoinPool seasonPool) throws IOException {
+    String title = (String) rawInfo.getSeriesInfo().get(Keyz.TITLE);
+
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    String tocId = (String) layoutConfig.get(Keyz.TOC_ID);
+    String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+    DateTimeFormatter dateFormat = getDateFormat(layoutConfig);
+
+    ColumnMatcher hints = rawInfo.getColumnMatcher();
+
+    if (!page.isTocFound()) {
+      return processSingleSeason(epClz, page, title, dateFormat, hints, layout,
+              '#' + tocId + " a[href=" + epClz + ']');
     }
+    return processSeasons(page.getLinks(), page.getEpisodesLink(), page, title, dateFormat, hints, seasonSkip,
+            layout, seasonPool);
+  }
+
+  /**
+   * Process the series out of slices of the page, only the table of contents and the headings of the seasons (along
+   * with the siblings that follow them, up to the episode table) are parsed, see {@link WikiSlicer}
+   *
+   * @param rawInfo    Series data to process
+   * @param in         Stream with the contents of the page, it is read only as far as needed and is not closed
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException              If the page cannot be read, or the episodes are not found in the page
+   * @throws UnsupportedPageException If the page could not be sliced
+   */
+  private List<List<Episode>> slice(RawInfo rawInfo, InputStream in, Set<Integer> seasonSkip, PageLayout layout,
+                                    ForkJoinPool seasonPool) throws IOException, UnsupportedPageException {
+    String title = (String) rawInfo.getSeriesInfo().get(Keyz.TITLE);
+
+    Configs layoutConfig = rawInfo.getLayoutConfig();
+    String tocId = (String) layoutConfig.get(Keyz.TOC_ID);
+    String epClz = (String) layoutConfig.get(Keyz.EPISODES_LINK);
+    String rowClass = (String) layoutConfig.get(Keyz.TABLE_ROW_CLZ);
+    DateTimeFormatter dateFormat = getDateFormat(layoutConfig);
 
-    Map<String, List<String>> hints = rawInfo.getTableHints();
+    ColumnMatcher hints = rawInfo.getColumnMatcher();
 
-    String strUrl = WIKI_PREFIX + page;
-    Path file = Utils.fetchUrl(title, strUrl, rawDir, offline);
+    WikiSlicer slicer = new WikiSlicer(in, getPageUrl(rawInfo));
+    Document toc = slicer.sliceElement(tocId);
+    String query = '#' + tocId + " a[href=" + epClz + ']';
+    Elements tocEpisodesLst = toc == null ? new Elements() : toc.select(query);
+    List<String> links = tocEpisodesLst.isEmpty() ? null : getSeasonLinks(tocEpisodesLst.get(0));
+    String episodesLink = links == null ? epClz : getLink(tocEpisodesLst.get(0));
 
-    try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
-      List<List<Episode>> list = parse(is, strUrl, title, tocId, epClz, rowClass, dateFormat, hints, seasonSkip);
+    Set<String> ids = new HashSet<>();
+    for (String link : links == null ? Collections.singletonList(episodesLink) : links) {
+      if (link.isEmpty() || link.equals("#")) {
+        throw new UnsupportedPageException("empty link [" + link + "]");
+      }
+      ids.add(link.charAt(0) == '#' ? link.substring(1) : link);
+    }
+    if (links != null) {
+      ids.add(episodesLink.charAt(0) == '#' ? episodesLink.substring(1) : episodesLink);
+    }
+    Map<String, Document> fragments = slicer.sliceHeadings(ids);
+    EpisodeTables tables = id -> {
+      Document fragment = fragments.get(id);
+      return fragment == null ? null : new DocumentTables(fragment, rowClass).find(id);
+    };
 
-      return new Series(strUrl, title, list);
+    if (links == null) {
+      return processSingleSeason(epClz, tables, title, dateFormat, hints, layout, query);
     }
+    return processSeasons(links, episodesLink, tables, title, dateFormat, hints, seasonSkip, layout, seasonPool);
+  }
 
+  /**
+   * Returns the date format of the layout
+   *
+   * @param layoutConfig Layout of the page
+   * @return Date format, null if the layout does not have one
+   */
+  private static DateTimeFormatter getDateFormat(Configs layoutConfig) {
+    String strDateFormat = (String) layoutConfig.getOptional(Keyz.DATE_FORMAT);
+    return strDateFormat == null ? null : DateTimeFormatter.ofPattern(strDateFormat);
   }
 
   /**
    * Parse the provided data and return the data in the form of a list(Seasons.Episodes
    *
-   * @param in         Input stream for the data
-   * @param baseUrl    String form of the URL
+   * @param doc        Document of the page
    * @param title      Title of the series
    * @param tocId      Table of contents Id
    * @param epClz      Episodes Class name
    * @param rowClass   class attribute value to be used to filter rows (can be null if it does not have a class)
    * @param dateFormat Date format to apply
-   * @param hints      hints that help identify the columns to fetch
+   * @param hints      compiled hints that help identify the columns to fetch
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
    * @return A list containing all the seasons for the provided series
-   * @throws IOException If there is a problem while parsing the data
+   * @throws IOException If the episodes are not found
    */
-  private List<List<Episode>> parse(InputStream in, String baseUrl, String title, String tocId, String epClz,
-                                    String rowClass, DateTimeFormatter dateFormat, Map<String, List<String>> hints,
-                                    Set<Integer> seasonSkip) throws IOException {
+  private List<List<Episode>> parse(Document doc, String title, String tocId, String epClz, String rowClass,
+                                    DateTimeFormatter dateFormat, ColumnMatcher hints,
+                                    Set<Integer> seasonSkip, PageLayout layout, ForkJoinPool seasonPool)
+          throws IOException {
 
-    List<List<Episode>> allSeasons = new ArrayList<>();
-    Document doc = Jsoup.parse(in, StandardCharsets.UTF_8.name(), baseUrl);
     // get the table of contents which will help us to find the class names which have episodes tables list
     String query = '#' + tocId + " a[href=" + epClz + ']';
     Elements tocEpisodesLst = doc.select(query);
     if (tocEpisodesLst.isEmpty()) {
       // if not found, possibly no TOC is present, so lets see if we can fetch episodes list directly
-      List<Episode> season = processSeason(epClz, doc, title, 1, rowClass, dateFormat, hints);
-      if (season == null) {
-        throw new IOException("Unable to find data for query [" + query + "]");
-      }
-      allSeasons.add(season);
+      return processSingleSeason(epClz, new DocumentTables(doc, rowClass), title, dateFormat, hints, layout,
+              query);
 
     } else {
       Element tocEpisodes = tocEpisodesLst.get(0);
-      Elements seasonIds = tocEpisodes.parent().select("ul > li > a");
+      List<String> links = getSeasonLinks(tocEpisodes);
+      return processSeasons(links, getLink(tocEpisodes), new DocumentTables(doc, rowClass), title, dateFormat, hints,
+              seasonSkip, layout, seasonPool);
+    }
+  }
 
-      int adjustment = 0;
-      for (int i = 0; i < seasonIds.size(); i++) {
-        if (seasonSkip.contains(i + 1)) {
-          adjustment++;
-          continue;
-        }
+  /**
+   * Parse the episode sections fetched through the parse API of the wiki, the sub sections of the episodes section
+   * take the place of the entries of the table of contents
+   *
+   * @param doc        Document of the sections
+   * @param title      Title of the series
+   * @param epClz      Episodes Class name
+   * @param rowClass   class attribute value to be used to filter rows (can be null if it does not have a class)
+   * @param dateFormat Date format to apply
+   * @param hints      compiled hints that help identify the columns to fetch
+   * @param seasonSkip Seasons (1 based) that should be skipped
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param seasonPool Pool the seasons are extracted on, null to extract them on the calling thread
+   * @return A list containing all the seasons for the provided series
+   * @throws IOException If the episodes are not found
+   */
+  private List<List<Episode>> parseSections(Document doc, String title, String epClz, String rowClass,
+                                            DateTimeFormatter dateFormat, ColumnMatcher hints,
+                                            Set<Integer> seasonSkip, PageLayout layout, ForkJoinPool seasonPool)
+          throws IOException {
 
-        int seasonNo = i + 1 - adjustment;
-        Element elLink = seasonIds.get(i);
-        String link = getLink(elLink);
-        List<Episode> season = processSeason(link, doc, title, seasonNo, rowClass, dateFormat, hints);
-        if (season != null) {
-          allSeasons.add(season);
-        }
+    List<String> links = WikiSections.getSubSectionLinks(doc);
+    EpisodeTables tables = new DocumentTables(doc, rowClass);
+    if (links.isEmpty()) {
+      return processSingleSeason(epClz, tables, title, dateFormat, hints, layout, epClz);
+    }
+    return processSeasons(links, epClz, tables, title, dateFormat, hints, seasonSkip, layout, seasonPool);
+  }
+
+  /**
+   * Process the episodes list as a single season, used when the episodes are not split into seasons
+   *
+   * @param epClz      Episodes Class name
+   * @param tables     Episode tables of the page
+   * @param title      Title of the series
+   * @param dateFormat Date format to apply
+   * @param hints      compiled hints that help identify the columns to fetch
+   * @param layout     Layout of the page, learned by earlier parses
+   * @param query      Query that was used to look for the seasons, reported if the episodes are not found
+   * @return A list containing the single season
+   * @throws IOException If the episodes are not found
+   */
+  private List<List<Episode>> processSingleSeason(String epClz, EpisodeTables tables, String title,
+                                                  DateTimeFormatter dateFormat, ColumnMatcher hints,
+                                                  PageLayout layout, String query) throws IOException {
+    List<Episode> season = processSeason(epClz, tables, title, 1, dateFormat, hints, layout);
+    if (season == null) {
+      throw new IOException("Unable to find data for query [" + query + "]");
+    }
+    List<List<Episode>> allSeasons = new ArrayList<>();
+    allSeasons.add(season);
+    return allSeasons;
+  }
+
+  /**
+   * Process all the seasons
+   *
+   * @param links        Links to the seasons, in order
+   * @param episodesLink Link to the episodes, tried as the first season if none of the seasons are found
+   * @param tables       Episode tables of the page
+   * @param title        Title of the series
+   * @param dateFormat   Date format to apply
+   * @param hints        compiled hints that help identify the columns to fetch
+   * @param seasonSkip   Seasons (1 based) that should be skipped
+   * @param layout       Layout of the page, learned by earlier parses
+   * @param seasonPool   Pool the seasons are extracted on, null to extract them on the calling thread (as are the
+   *                     seasons of pages with fewer than {@link #PARALLEL_MIN_SEASONS} seasons)
+   * @return A list containing all the seasons that were found
+   */
+  private List<List<Episode>> processSeasons(List<String> links, String episodesLink, EpisodeTables tables,
+                                             String title, DateTimeFormatter dateFormat, ColumnMatcher hints,
+                                             Set<Integer> seasonSkip, PageLayout layout, ForkJoinPool seasonPool) {
+    // the seasons are numbered (and skipped) up front, so that they can be extracted in any order
+    List<ForkJoinTask<List<Episode>>> tasks = new ArrayList<>(links.size());
+    int adjustment = 0;
+    for (int i = 0; i < links.size(); i++) {
+      if (seasonSkip.contains(i + 1)) {
+        adjustment++;
+        continue;
       }
 
-      if (allSeasons.isEmpty()) {
-        // two possibilities: 1. First season 2. This wiki page does not follow our standard :(
-        // since we are optimistic, try fetching the 'Episodes' and seeing if we are right
-        String link = getLink(tocEpisodes);
-        List<Episode> season = processSeason(link, doc, title, 1, rowClass, dateFormat, hints);
-        if (season != null) {
-          allSeasons.add(season);
-        }
+      String link = links.get(i);
+      int seasonNo = i + 1 - adjustment;
+      tasks.add(ForkJoinTask.adapt(() -> processSeason(link, tables, title, seasonNo, dateFormat, hints, layout)));
+    }
+
+    ForkJoinPool pool = tasks.size() < PARALLEL_MIN_SEASONS ? null : seasonPool;
+    if (pool != null) {
+      tasks.forEach(pool::execute);
+    }
+    List<List<Episode>> allSeasons = new ArrayList<>();
+    for (ForkJoinTask<List<Episode>> task : tasks) {
+      List<Episode> season = pool == null ? task.invoke() : task.join();
+      if (season != null) {
+        allSeasons.add(season);
       }
+    }
 
+    if (allSeasons.isEmpty()) {
+      // two possibilities: 1. First season 2. This wiki page does not follow our standard :(
+      // since we are optimistic, try fetching the 'Episodes' and seeing if we are right
+      List<Episode> season = processSeason(episodesLink, tables, title, 1, dateFormat, hints, layout);
+      if (season != null) {
+        allSeasons.add(season);
+      }
     }
 
     return allSeasons;
   }
 
   /**
-   * Process a single season
+   * Process a single season<br>
+   * The columns learned for the season are used as long as the header of its table has not changed, and the date
+   * pattern learned for it is tried first (see {@link DateRecognizer}), the layout of the season is learned again
+   * otherwise
    *
    * @param link       Link pointing to the table containing all the info
-   * @param doc        Document
+   * @param tables     Episode tables of the page
    * @param title      Title of the series
    * @param season     Current season being parsed (1 based index)
-   * @param rowClass   Row class to use to fetch the actual rows and avoid the descriptions
    * @param dateFormat Date format to apply
-   * @param hints      hints that help identify the columns to fetch
+   * @param hints      compiled hints that help identify the columns to fetch
+   * @param layout     Layout of the page, learned by earlier parses
    * @return Data for a single season
    */
-  private List<Episode> processSeason(String link, Document doc, String title, int season, String rowClass,
-                                      DateTimeFormatter dateFormat, Map<String, List<String>> hints) {
+  private List<Episode> processSeason(String link, EpisodeTables tables, String title, int season,
+                                      DateTimeFormatter dateFormat, ColumnMatcher hints, PageLayout layout) {
 
     if (link.charAt(0) == '#') {
       link = link.substring(1);
     }
-    Element linkData = doc.getElementById(link);
-    if (linkData == null) {
-      System.err.println("No Episodes found for season [" + season + "] for title [" + title + "]");
-      return null;
-    }
-
-    Element headingTag = linkData.parent();
-    int idx = headingTag.elementSiblingIndex();
-    Element elTable = findNextTable(idx + 1, headingTag.parent(), 3);
-    if (elTable == null) {
+    EpisodeTable table = tables.find(link);
+    if (table == null || table.size() == 0) {
       System.err.println("No Episodes found for season [" + season + "] for title [" + title + "]");
       return null;
     }
 
-    Elements trTags;
-    if (rowClass == null) {
-      trTags = elTable.getElementsByTag("tr");
+    List<String> header = table.getHeader();
+    PageLayout.Season learned = layout.get(link);
+    int colTitle;
+    int colDate;
+    if (learned != null && learned.header.equals(header)) {
+      colTitle = learned.titleColumn;
+      colDate = learned.dateColumn;
     } else {
-      trTags = elTable.select("tr." + rowClass);
+      Map<String, Integer> colIdentifiers = hints.match(header);
+      colTitle = Utils.getOrThrow(colIdentifiers, Keyz.TABLE_COL_TITLE);
+      colDate = Utils.getOrThrow(colIdentifiers, Keyz.TABLE_COL_AIRDATE);
     }
+    // the dates are recognized by the default patterns, unless the layout has its own format
+    DateRecognizer recognizer = dateFormat != null ? null
+            : new DateRecognizer(learned == null ? -1 : learned.datePattern);
+    String undated = null;
+    int undatedCount = 0;
 
-    Map<String, Integer> colIdentifiers = getColumnIdentifiers(trTags, hints);
-
-    if (trTags.isEmpty() && colIdentifiers.isEmpty()) {
-      System.err.println("No Episodes found for season [" + season + "] for title [" + title + "]");
-      return null;
-    }
-
-    int colTitle = Utils.getOrThrow(colIdentifiers, Keyz.TABLE_COL_TITLE);
-    int colDate = Utils.getOrThrow(colIdentifiers, Keyz.TABLE_COL_AIRDATE);
-
+    // only the title is kept as a string, the air date is recognized from the text in the buffer
+    CellText text = CellText.get();
     int episodeNum = 1;
-    List<Episode> oneSeason = new ArrayList<>(trTags.size());
-    for (Element trTag : trTags) {
-      Elements children = trTag.children();
-      String episodeTitle = getText(children, colTitle);
-      String episodeAiredDate = extractDate(getText(children, colDate));
-      Temporal date = Utils.parseDate(episodeAiredDate, dateFormat);
+    List<Episode> oneSeason = new ArrayList<>(table.size());
+    for (int row = 0; row < table.size(); row++) {
+      table.readText(row, colTitle - 1, text);
+      String episodeTitle = text.toString();
+      table.readText(row, colDate - 1, text);
+      Temporal date;
+      if (recognizer == null) {
+        date = Utils.parseDate(extractDate(text.toString()), dateFormat);
+      } else {
+        date = recognizer.recognizeCell(text);
+        if (date == null && undatedCount++ == 0) {
+          undated = text.toString();
+        }
+      }
 
       oneSeason.add(new Episode(season, episodeNum++, episodeTitle, date));
     }
+    if (undatedCount > 0) {
+      System.err.println("No air date for [" + undatedCount + "] episodes of season [" + season + "] for title ["
+              + title + "], e.g. [" + undated + "]");
+    }
 
+    layout.put(link, new PageLayout.Season(header, colTitle, colDate,
+            recognizer == null ? -1 : recognizer.getLastPattern()));
     return oneSeason;
   }
 
-  private Map<String, Integer> getColumnIdentifiers(Elements trTags, Map<String, List<String>> hints) {
-    if (trTags.size() > 0) {
-      Element tr0Tag = trTags.get(0).previousElementSibling();
-      Map<String, Integer> result = new HashMap<>(tr0Tag.childNodeSize());
-      for (Map.Entry<String, List<String>> entry : hints.entrySet()) {
-        String key = entry.getKey();
-        for (Element childTag : tr0Tag.children()) {
-          String text = childTag.text().toLowerCase();
-          for (String identifier : entry.getValue()) {
-            if (text.contains(identifier)) {
-              result.put(key, childTag.elementSiblingIndex() + 1);
-            }
-          }
-        }
-      }
-
-      return result;
-    } else {
-      return Collections.emptyMap();
-    }
-  }
-
   /**
    * Extracts the date from the provided raw input This is achieved by extracting the contents of the brackets
    *
@@ -276,14 +992,18 @@ public class WikiParser {
   }
 
   /**
-   * Fetch the text from the elements provided which is in the position indicated by the value column
+   * Returns the links to the seasons, listed along with the link to the episodes in the table of contents
    *
-   * @param episodeRow Episode row that contains data for a single episode
-   * @param column     Column from which we should extract the data
-   * @return String data from the column
+   * @param tocEpisodes Link to the episodes in the table of contents
+   * @return Links to the seasons, in order
    */
-  private String getText(Elements episodeRow, int column) {
-    return cleanData(episodeRow.get(column - 1).text());
+  private List<String> getSeasonLinks(Element tocEpisodes) {
+    Elements seasonIds = tocEpisodes.parent().select("ul > li > a");
+    List<String> links = new ArrayList<>(seasonIds.size());
+    for (Element elLink : seasonIds) {
+      links.add(getLink(elLink));
+    }
+    return links;
   }
 
   /**
@@ -296,24 +1016,6 @@ public class WikiParser {
     return elLink.attr("href");
   }
 
-  /**
-   * Cleanup the data<br>
-   * The &amp;&nbsp; is interpreted as '\u00a0' ascii code of 160 instead of 32 for the standard space, so we clean it
-   * by replacing it and other things like it into space characters
-   *
-   * @param rawData Raw data to be cleaned up
-   * @return Cleaned up data
-   */
-  private String cleanData(String rawData) {
-    char[] chars = rawData.toCharArray();
-    for (int i = 0; i < chars.length; i++) {
-      if (Character.isSpaceChar(chars[i])) {
-        chars[i] = ' '; // normalize the space
-      }
-    }
-    return String.valueOf(chars).trim();
-  }
-
   /**
    * Find the next table element
    *
@@ -322,7 +1024,7 @@ public class WikiParser {
    * @param limit      Limit the number of elements to search for to find the table
    * @return Table element
    */
-  private Element findNextTable(int childIndex, Element parent, int limit) {
+  private static Element findNextTable(int childIndex, Element parent, int limit) {
     Element elTable = null;
 
     for (int count = 0; count < limit; count++) {
@@ -337,4 +1039,90 @@ public class WikiParser {
     return elTable;
   }
 
+  /**
+   * Find a cell of a row, walking the child nodes of the row instead of listing its child elements (which are kept
+   * aside by the row, for every row)
+   *
+   * @param trTag  Row
+   * @param column Column (0 based)
+   * @return Cell
+   */
+  private static Element cell(Element trTag, int column) {
+    int count = 0;
+    for (int i = 0; i < trTag.childNodeSize(); i++) {
+      Node node = trTag.childNode(i);
+      if (node instanceof Element && count++ == column) {
+        return (Element) node;
+      }
+    }
+    throw new IndexOutOfBoundsException("No column [" + column + "] in a row of [" + count + "] columns");
+  }
+
+  /**
+   * Episode tables of a document, i.e. the table that follows the heading that holds the link target
+   */
+  private static final class DocumentTables implements EpisodeTables {
+
+    /** Document of the page */
+    private final Document doc;
+
+    /** Class of the episode rows (can be null if the rows do not have a class) */
+    private final String rowClass;
+
+    /**
+     * Constructor
+     *
+     * @param doc      Document of the page
+     * @param rowClass Class of the episode rows (can be null if the rows do not have a class)
+     */
+    DocumentTables(Document doc, String rowClass) {
+      this.doc = doc;
+      this.rowClass = rowClass;
+    }
+
+    @Override
+    public EpisodeTable find(String id) {
+      Element linkData = this.doc.getElementById(id);
+      if (linkData == null) {
+        return null;
+      }
+
+      Element headingTag = linkData.parent();
+      int idx = headingTag.elementSiblingIndex();
+      Element elTable = findNextTable(idx + 1, headingTag.parent(), 3);
+      if (elTable == null) {
+        return null;
+      }
+
+      Elements trTags;
+      if (this.rowClass == null) {
+        trTags = elTable.getElementsByTag("tr");
+      } else {
+        trTags = elTable.select("tr." + this.rowClass);
+      }
+      return new EpisodeTable() {
+        @Override
+        public int size() {
+          return trTags.size();
+        }
+
+        @Override
+        public List<String> getHeader() {
+          Element tr0Tag = trTags.get(0).previousElementSibling();
+          List<String> header = new ArrayList<>(tr0Tag.childNodeSize());
+          for (Element childTag : tr0Tag.children()) {
+            header.add(childTag.text());
+          }
+          return header;
+        }
+
+        @Override
+        public void readText(int row, int column, CellText text) {
+          text.read(cell(trTags.get(row), column));
+        }
+      };
+    }
+
+  }
+
 }
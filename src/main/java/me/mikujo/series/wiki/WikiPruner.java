@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.DocumentType;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Prunes a page down to what the extraction of the episodes reads, i.e. the table of contents, the headings and the
+ * episode tables that follow the headings, so that only that much is cached<br>
+ * Elements that are left out are replaced by empty elements of the same tag, so that every element that is kept has
+ * the same position among its siblings as it had on the whole page (the episode tables are looked up by position),
+ * and the episodes extracted from the pruned page are the same as those extracted from the whole page
+ * @author mithun.gonsalvez
+ */
+final class WikiPruner {
+
+  /** Headings that mark the start of a section */
+  private static final String HEADINGS = "h1, h2, h3, h4, h5, h6";
+
+  /** Number of siblings following a heading that are looked at for the episode table */
+  private static final int TABLE_LOOKAHEAD = 3;
+
+  /**
+   * Constructor
+   */
+  private WikiPruner() {
+  }
+
+  /**
+   * Prune the page
+   * @param in Stream with the contents of the page
+   * @param baseUrl Base URL of the page
+   * @param tocId Table of contents Id
+   * @param epClz Link to the episodes section
+   * @param rowClass Class of the rows of the episode tables (can be null if the rows do not have a class)
+   * @return Stream with the contents of the pruned page
+   * @throws IOException If the page cannot be read
+   */
+  static InputStream prune(InputStream in, String baseUrl, String tocId, String epClz, String rowClass)
+          throws IOException {
+    Document doc = Jsoup.parse(in, StandardCharsets.UTF_8.name(), baseUrl);
+    try {
+      prune(doc, tocId, epClz, rowClass);
+    } catch (Selector.SelectorParseException ex) {
+      // the extraction cannot use the layout either, so the page is cached as is for it to report the problem
+      System.err.println("Unable to prune [" + baseUrl + "], caching it as is: " + ex.getMessage());
+    }
+    doc.outputSettings().prettyPrint(false);
+    return new ByteArrayInputStream(doc.outerHtml().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Prune the document in place
+   * @param doc Document of the page
+   * @param tocId Table of contents Id
+   * @param epClz Link to the episodes section
+   * @param rowClass Class of the rows of the episode tables (can be null if the rows do not have a class)
+   */
+  private static void prune(Document doc, String tocId, String epClz, String rowClass) {
+    Set<Element> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+    Elements tocs = doc.select('#' + tocId);
+    keep.addAll(tocs);
+
+    // the elements the seasons are looked up by, i.e. the first element with the id of a heading or of a link of the
+    // table of contents (or the episodes section itself, if there is no table of contents)
+    Set<String> ids = new LinkedHashSet<>();
+    ids.add(epClz.charAt(0) == '#' ? epClz.substring(1) : epClz);
+    for (Element heading : doc.select(HEADINGS)) {
+      for (Element element : heading.select("[id]")) {
+        ids.add(element.id());
+      }
+    }
+    for (Element link : tocs.select("a[href^=#]")) {
+      ids.add(link.attr("href").substring(1));
+    }
+
+    for (String id : ids) {
+      Element anchor = doc.getElementById(id);
+      Element heading = anchor == null ? null : anchor.parent();
+      if (heading == null || heading.parent() == null) {
+        continue;
+      }
+      keep.add(heading);
+      Element parent = heading.parent();
+      int index = heading.elementSiblingIndex();
+      for (int i = index + 1; i <= index + TABLE_LOOKAHEAD && i < parent.children().size(); i++) {
+        Element sibling = parent.child(i);
+        if (sibling.tagName().equalsIgnoreCase("table") && !"presentation".equals(sibling.attr("role"))) {
+          keepTable(sibling, rowClass, keep);
+          break;
+        }
+      }
+    }
+
+    Set<Element> ancestors = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Element element : keep) {
+      ancestors.addAll(element.parents());
+    }
+    prune(doc, keep, ancestors);
+  }
+
+  /**
+   * Keep the episode table, only the episode rows (rows of the row class) and the header row (the row preceding the
+   * first episode row) are kept, unless the rows do not have a class
+   * @param table Episode table
+   * @param rowClass Class of the episode rows, can be null
+   * @param keep Elements that are kept along with everything within them
+   */
+  private static void keepTable(Element table, String rowClass, Set<Element> keep) {
+    Elements rows = rowClass == null ? new Elements() : table.select("tr." + rowClass);
+    if (rows.isEmpty()) {
+      keep.add(table);
+      return;
+    }
+    keep.addAll(rows);
+    Element header = rows.get(0).previousElementSibling();
+    if (header != null) {
+      keep.add(header);
+    }
+  }
+
+  /**
+   * Replace the children of the element that are neither kept nor hold anything that is kept with empty elements
+   * @param element Element to prune
+   * @param keep Elements that are kept along with everything within them
+   * @param ancestors Elements that hold elements that are kept
+   */
+  private static void prune(Element element, Set<Element> keep, Set<Element> ancestors) {
+    for (Node child : new ArrayList<>(element.childNodes())) {
+      if (child instanceof Element) {
+        Element childElement = (Element) child;
+        if (ancestors.contains(childElement)) {
+          prune(childElement, keep, ancestors);
+        } else if (!keep.contains(childElement)) {
+          // the role is what tells an episode table apart from a layout table, see WikiParser.findNextTable(..)
+          Element placeholder = new Element(childElement.tagName());
+          if (childElement.hasAttr("role")) {
+            placeholder.attr("role", childElement.attr("role"));
+          }
+          childElement.replaceWith(placeholder);
+        }
+      } else if (!(child instanceof DocumentType)) {
+        child.remove(); // text outside the elements that are kept is never read
+      }
+    }
+  }
+
+}
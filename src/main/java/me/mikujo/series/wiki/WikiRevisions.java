@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import me.mikujo.series.net.WebClient;
+import me.mikujo.series.net.WebResponse;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the current revisions of pages, through the query API of the wiki (action=query&amp;prop=info)<br>
+ * The API takes up to {@link #BATCH_SIZE} titles per request, so the revisions of all the pages of a run are known
+ * after a handful of requests, instead of a conditional request per page
+ * @author mithun.gonsalvez
+ */
+final class WikiRevisions {
+
+  /** Maximum number of titles the API accepts in a single request */
+  static final int BATCH_SIZE = 50;
+
+  /**
+   * Constructor
+   */
+  private WikiRevisions() {
+  }
+
+  /**
+   * Returns the current revisions of the pages
+   * @param pages Names of the pages
+   * @return Revision of each page, keyed by the name of the page as provided, pages that do not exist are left out
+   * @throws IOException If a request fails, or the API reports an error
+   */
+  static Map<String, Long> getRevisions(Collection<String> pages) throws IOException {
+    List<String> names = new ArrayList<>(new LinkedHashSet<>(pages));
+    Map<String, Long> revisions = new HashMap<>();
+    for (int i = 0; i < names.size(); i += BATCH_SIZE) {
+      query(names.subList(i, Math.min(names.size(), i + BATCH_SIZE)), revisions);
+    }
+    return revisions;
+  }
+
+  /**
+   * Look up the current revisions of a single batch of pages
+   * @param names Names of the pages, not more than {@link #BATCH_SIZE}
+   * @param revisions Populated with the revision of each page, keyed by the name of the page as provided
+   * @throws IOException If the request fails, or the API reports an error
+   */
+  private static void query(List<String> names, Map<String, Long> revisions) throws IOException {
+    String url = WikiParser.getBaseUrl() + WikiSections.API_PATH
+            + "?action=query&format=json&formatversion=2&prop=info&redirects=1&titles="
+            + URLEncoder.encode(String.join("|", names), StandardCharsets.UTF_8.name());
+
+    JSONObject response;
+    try (WebResponse webResponse = WebClient.getInstance().get(url, Collections.emptyMap())) {
+      if (webResponse.getStatus() != 200) {
+        throw new IOException("Unexpected response [" + webResponse.getStatus() + "] for [" + url + "]");
+      }
+      try { // the body is closed along with the response
+        Reader reader = new InputStreamReader(webResponse.getBody(), StandardCharsets.UTF_8);
+        response = (JSONObject) new JSONParser().parse(reader);
+      } catch (ParseException ex) {
+        throw new IOException(ex);
+      }
+    }
+
+    Object error = response.get("error");
+    if (error != null) {
+      throw new IOException("Wiki API error: " + ((Map<?, ?>) error).get("info"));
+    }
+    Map<?, ?> query = (Map<?, ?>) response.get("query");
+    if (query == null) {
+      return;
+    }
+
+    // titles are normalized first (e.g. underscores to spaces) and redirects are followed after that
+    Map<String, String> renames = new HashMap<>();
+    addRenames(query.get("normalized"), renames);
+    addRenames(query.get("redirects"), renames);
+    Map<String, Long> current = new HashMap<>();
+    for (Object page : (List<?>) query.get("pages")) {
+      Object revision = ((Map<?, ?>) page).get("lastrevid");
+      if (revision instanceof Number) {
+        current.put((String) ((Map<?, ?>) page).get("title"), ((Number) revision).longValue());
+      }
+    }
+
+    for (String name : names) {
+      String title = name;
+      for (int hops = 0; hops < 2 && renames.containsKey(title); hops++) {
+        title = renames.get(title);
+      }
+      Long revision = current.get(title);
+      if (revision != null) {
+        revisions.put(name, revision);
+      }
+    }
+  }
+
+  /**
+   * Collect the renames (from and to titles) listed by the API
+   * @param list List of renames, can be null
+   * @param renames Populated with the new title, keyed by the old title
+   */
+  private static void addRenames(Object list, Map<String, String> renames) {
+    if (list != null) {
+      for (Object rename : (List<?>) list) {
+        renames.put((String) ((Map<?, ?>) rename).get("from"), (String) ((Map<?, ?>) rename).get("to"));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches only the episode sections of a page, through the parse API of the wiki (action=parse)<br>
+ * The sections of the page are listed first, to resolve the index of the episodes section, which is then requested
+ * as HTML along with its sub sections (i.e. the seasons). The sections are requested for the current revision of the
+ * page, so once cached, they never need to be revalidated
+ * @author mithun.gonsalvez
+ */
+final class WikiSections {
+
+  /** Path of the API, relative to the base URL of the wiki */
+  static final String API_PATH = "w/api.php";
+
+  /** Headings that mark the start of a section */
+  private static final String HEADINGS = "h1, h2, h3, h4, h5, h6";
+
+  /**
+   * Constructor
+   */
+  private WikiSections() {
+  }
+
+  /**
+   * Fetch the episode sections of the page into the cache
+   * @param title Title of the series
+   * @param page Name of the page
+   * @param episodesLink Link to the episodes section (i.e. its anchor)
+   * @param cache Cache where the sections should be stored
+   * @param offline Use cached data if available, if data is not available, then connect and fetch data
+   * @param maxAge Maximum time (in millis) since the list of sections was fetched or revalidated, for the cached copy
+   * to be used without revalidating it
+   * @param reader Reads the API response holding the HTML of the sections if it is downloaded, can be null
+   * @return Cached copy of the API response holding the HTML of the sections
+   * @throws IOException If something goes wrong while fetching, or the page does not have the episodes section
+   */
+  static CachedPage fetch(String title, String page, String episodesLink, PageCache cache, boolean offline,
+                          long maxAge, PageCache.DownloadReader reader) throws IOException {
+    CachedPage sections = cache.fetchResource(title, getSectionsUrl(page), offline, maxAge);
+    return cache.fetchResource(title, getTextUrl(sections, page, episodesLink), offline, Long.MAX_VALUE, reader);
+  }
+
+  /**
+   * Returns the cached copy of the episode sections of the page as is, without connecting
+   * @param page Name of the page
+   * @param episodesLink Link to the episodes section (i.e. its anchor)
+   * @param cache Cache where the sections are stored
+   * @return Cached copy of the API response holding the HTML of the sections, or null if it is not cached
+   * @throws IOException If the cached list of sections cannot be read, or it does not have the episodes section
+   */
+  static CachedPage peek(String page, String episodesLink, PageCache cache) throws IOException {
+    CachedPage sections = cache.peek(getSectionsUrl(page));
+    return sections == null ? null : cache.peek(getTextUrl(sections, page, episodesLink));
+  }
+
+  /**
+   * Returns the URL of the list of sections of the page
+   * @param page Name of the page
+   * @return URL in string form
+   * @throws IOException If the name of the page cannot be encoded
+   */
+  static String getSectionsUrl(String page) throws IOException {
+    return getApiUrl() + "&prop=sections%7Crevid&redirects=1&page="
+            + URLEncoder.encode(page, StandardCharsets.UTF_8.name());
+  }
+
+  /**
+   * Returns the URL of the HTML of the episode sections, of the revision of the page the list of sections belongs to
+   * @param sections Cached copy of the list of sections of the page
+   * @param page Name of the page
+   * @param episodesLink Link to the episodes section (i.e. its anchor)
+   * @return URL in string form
+   * @throws IOException If the list of sections cannot be read, or it does not have the episodes section
+   */
+  private static String getTextUrl(CachedPage sections, String page, String episodesLink) throws IOException {
+    JSONObject parse;
+    try (InputStream in = sections.open()) {
+      parse = read(in);
+    }
+
+    String anchor = episodesLink.charAt(0) == '#' ? episodesLink.substring(1) : episodesLink;
+    Object index = null;
+    for (Object section : (List<?>) parse.get("sections")) {
+      if (anchor.equals(((Map<?, ?>) section).get("anchor"))) {
+        index = ((Map<?, ?>) section).get("index");
+        break;
+      }
+    }
+    if (index == null) {
+      throw new IOException("Unable to find the section [" + anchor + "] on the page [" + page + "]");
+    }
+
+    return getApiUrl() + "&prop=text&disableeditsection=1&disablelimitreport=1&oldid=" + parse.get("revid")
+            + "&section=" + index;
+  }
+
+  private static String getApiUrl() {
+    return WikiParser.getBaseUrl() + API_PATH + "?action=parse&format=json&formatversion=2";
+  }
+
+  /**
+   * Parse the HTML of the sections, out of the API response
+   * @param in Input stream of the API response
+   * @param baseUrl Base URL of the document
+   * @return Document of the sections
+   * @throws IOException If the response cannot be read
+   */
+  static Document parse(InputStream in, String baseUrl) throws IOException {
+    return Jsoup.parse((String) read(in).get("text"), baseUrl);
+  }
+
+  /**
+   * Returns the links to the sub sections of the sections, in the same form as they are linked from the table of
+   * contents of the page
+   * @param doc Document of the sections
+   * @return Links to the sub sections (the first heading is that of the section itself and is not included)
+   */
+  static List<String> getSubSectionLinks(Document doc) {
+    Elements headings = doc.select(HEADINGS);
+    List<String> links = new ArrayList<>(headings.size());
+    for (int i = 1; i < headings.size(); i++) {
+      Element headline = headings.get(i).selectFirst(".mw-headline[id]");
+      String id = headline == null ? headings.get(i).id() : headline.id();
+      if (!id.isEmpty()) {
+        links.add('#' + id);
+      }
+    }
+    return links;
+  }
+
+  /**
+   * Read the result of the parse API out of the response
+   * @param in Input stream of the API response
+   * @return Result of the parse API
+   * @throws IOException If the response cannot be read, or the API reported an error
+   */
+  private static JSONObject read(InputStream in) throws IOException {
+    JSONObject response;
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      response = (JSONObject) new JSONParser().parse(reader);
+    } catch (ParseException ex) {
+      throw new IOException(ex);
+    }
+
+    Object error = response.get("error");
+    if (error != null) {
+      throw new IOException("Wiki API error: " + ((Map<?, ?>) error).get("info"));
+    }
+    return (JSONObject) response.get("parse");
+  }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Slices a page into the parts that the episodes are extracted from, so that only those parts are parsed<br>
+ * The page is scanned for tags (see {@link HtmlTokenizer}, nothing else is parsed), tracking which elements are open
+ * and closing them by the same rules as {@link WikiStreamParser}, though without checking them as strictly. The table
+ * of contents, and each heading that holds a link target along with the siblings that follow it up to the episode
+ * table (the siblings that WikiParser.findNextTable(..) looks at), are parsed as fragments of their own. Every fragment
+ * is checked to have parsed into the structure the scan saw, otherwise the slicing is reported as unsupported, and
+ * the page has to be read into a document instead<br>
+ * The page is read only until the last of the slices
+ * @author mithun.gonsalvez
+ */
+final class WikiSlicer {
+
+  /** Number of siblings following a heading that are looked at for the episode table, as by the document */
+  private static final int TABLE_LOOKAHEAD = 3;
+
+  /** End of a paragraph, implied by the elements in {@link HtmlTokenizer#CLOSES_P} */
+  private static final HtmlTokenizer.ImpliedEnd PARAGRAPH = new HtmlTokenizer.ImpliedEnd(Collections.singleton("p"),
+          HtmlTokenizer.SCOPE);
+
+  /** Tokenizer of the page, which keeps the page for the slices */
+  private final HtmlTokenizer tokenizer;
+
+  /** Base URL of the fragments */
+  private final String baseUrl;
+
+  /** Names of the elements that are open */
+  private String[] names = new String[64];
+
+  /** Positions of the start tags of the elements that are open */
+  private int[] starts = new int[64];
+
+  /** Serials of the elements that are open */
+  private long[] serials = new long[64];
+
+  /** Number of elements that are open */
+  private int depth;
+
+  /** Number of elements opened so far, each element is identified by its serial */
+  private long serial;
+
+  /** Id of the element being sliced out, null if none */
+  private String elementId;
+
+  /** Serial of the element being sliced out, -1 until it is found */
+  private long elementSerial = -1;
+
+  /** Position of the start tag of the element being sliced out */
+  private int elementStart;
+
+  /** Element that was sliced out, null until it ends */
+  private Document element;
+
+  /** Ids of the link targets that are still looked for */
+  private final Set<String> wanted = new HashSet<>();
+
+  /** Headings whose siblings are being looked at */
+  private final List<Watch> watches = new ArrayList<>();
+
+  /** Fragments of the headings sliced out, keyed by the id of the link target */
+  private final Map<String, Document> fragments = new HashMap<>();
+
+  /**
+   * Constructor
+   * @param in Stream with the contents of the page, it is read only as far as needed and is not closed
+   * @param baseUrl Base URL of the fragments
+   */
+  WikiSlicer(InputStream in, String baseUrl) {
+    this.tokenizer = new HtmlTokenizer(in, true);
+    this.baseUrl = baseUrl;
+  }
+
+  /**
+   * Slice out the first element with the id (e.g. the table of contents)
+   * @param id Id of the element
+   * @return Fragment that holds only the element, null if the page has no element with the id
+   * @throws IOException If the page cannot be read
+   * @throws UnsupportedPageException If the element could not be sliced
+   */
+  Document sliceElement(String id) throws IOException, UnsupportedPageException {
+    reset();
+    this.elementId = id;
+    while (this.element == null) {
+      HtmlTokenizer.Token token = nextTag();
+      if (token == HtmlTokenizer.Token.END) {
+        break;
+      }
+      onTag(token == HtmlTokenizer.Token.END_TAG);
+    }
+    while (this.element == null && this.elementSerial >= 0) {
+      pop(this.tokenizer.getEnd());
+    }
+    this.elementId = null;
+    return this.element;
+  }
+
+  /**
+   * Slice out the headings that hold the link targets, along with the siblings that follow each of them up to the
+   * episode table
+   * @param ids Ids of the link targets
+   * @return Fragments, keyed by the id of the link target, a target that is not found has no fragment
+   * @throws IOException If the page cannot be read
+   * @throws UnsupportedPageException If a heading could not be sliced
+   */
+  Map<String, Document> sliceHeadings(Collection<String> ids) throws IOException, UnsupportedPageException {
+    reset();
+    this.wanted.addAll(ids);
+    while (!this.wanted.isEmpty() || !this.watches.isEmpty()) {
+      HtmlTokenizer.Token token = nextTag();
+      if (token == HtmlTokenizer.Token.END) {
+        while (this.depth > 0) {
+          pop(this.tokenizer.getEnd());
+        }
+        break;
+      }
+      onTag(token == HtmlTokenizer.Token.END_TAG);
+    }
+    this.wanted.clear();
+    return this.fragments;
+  }
+
+  /**
+   * Track the elements that are open through the current tag
+   * @param endTag Set if the tag is an end tag
+   * @throws UnsupportedPageException If a heading could not be sliced
+   */
+  private void onTag(boolean endTag) throws UnsupportedPageException {
+    String name = this.tokenizer.getName();
+    if (endTag) {
+      int open = find(name);
+      while (open >= 0 && this.depth > open) {
+        pop(this.depth - 1 == open ? this.tokenizer.getEnd() : this.tokenizer.getStart());
+      }
+      return;
+    }
+
+    closeImplied(name);
+    long parent = this.depth == 0 ? 0 : this.serials[this.depth - 1];
+    for (Watch watch : this.watches) {
+      if (watch.parent == parent && watch.decisive < 0) {
+        watch.siblings++;
+        if (name.equals("table") && !"presentation".equals(this.tokenizer.getRole())
+                || watch.siblings == TABLE_LOOKAHEAD) {
+          watch.decisive = this.serial + 1;
+        }
+      }
+    }
+    push(name);
+    String id = this.tokenizer.getId();
+    if (id != null) {
+      if (this.elementSerial < 0 && id.equals(this.elementId)) {
+        this.elementSerial = this.serial;
+        this.elementStart = this.tokenizer.getStart();
+      }
+      if (this.wanted.remove(id)) {
+        if (this.depth < 3) {
+          throw new UnsupportedPageException("[" + id + "] is not within a heading");
+        }
+        this.watches.add(new Watch(id, this.starts[this.depth - 2], this.serials[this.depth - 3]));
+      }
+    }
+    if (this.tokenizer.isSelfClosing() || Tag.valueOf(name).isEmpty()) {
+      pop(this.tokenizer.getEnd());
+    }
+  }
+
+  /**
+   * Close the elements whose end tags are left out, when the start tag implies their end (the fragments are checked
+   * anyway, so the elements within them are closed as well, instead of being reported as unsupported)
+   * @param name Name of the element that is being opened
+   * @throws UnsupportedPageException If a heading could not be sliced
+   */
+  private void closeImplied(String name) throws UnsupportedPageException {
+    for (HtmlTokenizer.ImpliedEnd end : HtmlTokenizer.impliedByStart(name)) {
+      closeNearest(end);
+    }
+    if (HtmlTokenizer.CLOSES_P.contains(name)) {
+      closeNearest(PARAGRAPH);
+    }
+  }
+
+  /**
+   * Close the nearest of the elements, along with the elements within it
+   * @param end Elements to close, and the elements beyond which they are not looked for
+   * @throws UnsupportedPageException If a heading could not be sliced
+   */
+  private void closeNearest(HtmlTokenizer.ImpliedEnd end) throws UnsupportedPageException {
+    for (int i = this.depth - 1; i >= 0; i--) {
+      if (end.names.contains(this.names[i])) {
+        while (this.depth > i) {
+          pop(this.tokenizer.getStart());
+        }
+        return;
+      } else if (end.boundaries == null || end.boundaries.contains(this.names[i])) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Close the current element
+   * @param end Position past the end of the element
+   * @throws UnsupportedPageException If a heading could not be sliced
+   */
+  private void pop(int end) throws UnsupportedPageException {
+    long closed = this.serials[--this.depth];
+    if (closed == this.elementSerial && this.element == null) {
+      this.element = slice(this.elementStart, end, this.elementId);
+    }
+    for (int i = this.watches.size() - 1; i >= 0; i--) {
+      Watch watch = this.watches.get(i);
+      if (watch.decisive == closed) {
+        Document fragment = slice(watch.start, end, null);
+        Element anchor = fragment.getElementById(watch.id);
+        Element body = fragment.body();
+        if (body.childrenSize() != watch.siblings + 1 || anchor == null || anchor.parent() != body.child(0)) {
+          throw new UnsupportedPageException("the heading of [" + watch.id + "] did not slice as it was scanned");
+        }
+        this.fragments.put(watch.id, fragment);
+        this.watches.remove(i);
+      } else if (watch.parent == closed) {
+        // the document would run out of siblings while looking for the table
+        throw new UnsupportedPageException("fewer than " + TABLE_LOOKAHEAD + " siblings follow the heading of ["
+                + watch.id + "]");
+      }
+    }
+  }
+
+  /**
+   * Parse a slice of the page as a fragment
+   * @param start Position of the slice
+   * @param end Position past the end of the slice
+   * @param id Id of the single element the slice holds, null if it is not checked
+   * @return Fragment
+   * @throws UnsupportedPageException If the slice does not hold the single element
+   */
+  private Document slice(int start, int end, String id) throws UnsupportedPageException {
+    Document fragment = Jsoup.parseBodyFragment(this.tokenizer.substring(start, end), this.baseUrl);
+    if (id != null) {
+      Element body = fragment.body();
+      if (body.childrenSize() != 1 || !id.equals(body.child(0).id())) {
+        throw new UnsupportedPageException("[" + id + "] did not slice as it was scanned");
+      }
+    }
+    return fragment;
+  }
+
+  /**
+   * Scan the page from the start again
+   */
+  private void reset() {
+    this.tokenizer.rewind();
+    this.depth = 0;
+    this.elementSerial = -1;
+    this.element = null;
+    this.watches.clear();
+  }
+
+  /**
+   * Open an element for the current start tag
+   * @param name Name of the element
+   */
+  private void push(String name) {
+    if (this.depth == this.names.length) {
+      this.names = Arrays.copyOf(this.names, this.depth * 2);
+      this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+      this.serials = Arrays.copyOf(this.serials, this.depth * 2);
+    }
+    this.names[this.depth] = name;
+    this.starts[this.depth] = this.tokenizer.getStart();
+    this.serials[this.depth++] = ++this.serial;
+  }
+
+  /**
+   * Find the innermost open element with the name, elements whose end tags are left out are closed by the end tag
+   * of their parent
+   * @param name Name of the element
+   * @return Position of the element in the stack, -1 if it is not open (the end tag is ignored)
+   */
+  private int find(String name) {
+    for (int i = this.depth - 1; i >= 0; i--) {
+      if (this.names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Scan for the next tag, skipping text, comments and declarations
+   * @return Kind of the tag, {@link HtmlTokenizer.Token#END} if the page has ended
+   * @throws IOException If the page cannot be read
+   */
+  private HtmlTokenizer.Token nextTag() throws IOException {
+    HtmlTokenizer.Token token = this.tokenizer.next();
+    while (token != HtmlTokenizer.Token.START_TAG && token != HtmlTokenizer.Token.END_TAG
+            && token != HtmlTokenizer.Token.END) {
+      token = this.tokenizer.next();
+    }
+    return token;
+  }
+
+  /**
+   * Heading that holds a link target, whose siblings are being looked at
+   */
+  private static final class Watch {
+
+    /** Id of the link target */
+    final String id;
+
+    /** Position of the start tag of the heading */
+    final int start;
+
+    /** Serial of the parent of the heading */
+    final long parent;
+
+    /** Number of siblings that followed the heading so far */
+    int siblings;
+
+    /** Serial of the sibling that decides the episode table (the table, or the last sibling looked at), -1 if none */
+    long decisive = -1;
+
+    /**
+     * Constructor
+     * @param id Id of the link target
+     * @param start Position of the start tag of the heading
+     * @param parent Serial of the parent of the heading
+     */
+    Watch(String id, int start, long parent) {
+      this.id = id;
+      this.start = start;
+      this.parent = parent;
+    }
+
+  }
+
+}
@@ -0,0 +1,966 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.mikujo.series.wiki;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the episode tables of a page as the page is read, without reading it into a document<br>
+ * The page is tokenized (see {@link HtmlTokenizer}) and only the elements that are open are tracked. The table of
+ * contents, the headings linked from it and the tables that follow those headings are picked up as they go by, the
+ * same way {@link WikiParser} looks them up in the document, the cells of the rows are read straight into text and the
+ * page is read only until the last of those tables ends<br>
+ * Only pages that are well formed are extracted this way. Whenever the parser would have to fix the structure of the
+ * page (e.g. an element that is still open when its parent is closed, or a row that is not in a table body), the
+ * document could be structured differently than the page reads, so the page is reported as unsupported and has to be
+ * read into a document instead
+ * @author mithun.gonsalvez
+ */
+final class WikiStreamParser implements EpisodeTables {
+
+  /** Number of siblings following a heading that are looked at for the episode table, as by the document */
+  private static final int TABLE_LOOKAHEAD = 3;
+
+  /** Layouts that can be extracted, anything else is looked up through selectors that the stream does not mimic */
+  private static final Pattern SIMPLE_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+  /** Links to the episodes that can be extracted */
+  private static final Pattern SIMPLE_LINK = Pattern.compile("#?[A-Za-z0-9_.:%-]+");
+
+  /** Marks the links whose heading is not followed by a table */
+  private static final Capture NO_TABLE = new Capture();
+
+  /** Elements whose contents end up as text that is not normalized (or as raw text), in the text of a cell */
+  private static final Set<String> UNSUPPORTED_IN_CELL = set("pre", "listing", "textarea", "title", "xmp", "iframe",
+          "noembed", "noframes");
+
+  /** Elements that the parser treats specially */
+  private static final Set<String> UNSUPPORTED = set("plaintext", "template", "image", "frameset", "select",
+          "isindex");
+
+  /** Elements that are kept in the head */
+  private static final Set<String> HEAD_CONTENT = set("base", "basefont", "bgsound", "link", "meta", "title",
+          "noscript", "noframes", "style", "script");
+
+  /** Elements that are kept in a noscript element of the head */
+  private static final Set<String> NOSCRIPT_CONTENT = set("link", "meta", "style", "noframes", "basefont", "bgsound");
+
+  /** Headings */
+  private static final Set<String> HEADINGS = set("h1", "h2", "h3", "h4", "h5", "h6");
+
+  /** Elements that can be within each of the table elements, anything else is moved out of the table */
+  private static final Map<String, Set<String>> TABLE_CONTENT = new HashMap<>();
+
+  static {
+    TABLE_CONTENT.put("table", set("caption", "colgroup", "tbody", "thead", "tfoot", "script", "style"));
+    TABLE_CONTENT.put("tbody", set("tr", "script", "style"));
+    TABLE_CONTENT.put("thead", set("tr", "script", "style"));
+    TABLE_CONTENT.put("tfoot", set("tr", "script", "style"));
+    TABLE_CONTENT.put("tr", set("td", "th", "script", "style"));
+    TABLE_CONTENT.put("colgroup", set("col"));
+  }
+
+  /** Table of contents Id */
+  private final String tocId;
+
+  /** Link to the episodes section */
+  private final String epClz;
+
+  /** Class of the episode rows (can be null if the rows do not have a class) */
+  private final String rowClass;
+
+  /** Elements that are open, the first one is the document itself, frames are reused as elements are closed */
+  private Frame[] stack = new Frame[64];
+
+  /** Position of the current element in the stack */
+  private int depth;
+
+  /** Number of elements opened so far, each element is identified by its serial */
+  private long serials;
+
+  /** Position of the body in the stack, -1 if it is not open */
+  private int bodyDepth = -1;
+
+  /** Set once the head has been opened */
+  private boolean headSeen;
+
+  /** Number of open elements with the id of the table of contents */
+  private int tocDepth;
+
+  /** Links within the table of contents, until the links of the seasons are known */
+  private List<TocLink> tocLinks = new ArrayList<>();
+
+  /** Link to the episodes in the table of contents, null if not found (yet) */
+  private String episodesLink;
+
+  /** Serial of the parent of the link to the episodes, the links to the seasons are within it */
+  private long episodesParent = -1;
+
+  /** Links to the seasons, null until the table of contents has been read */
+  private List<String> links;
+
+  /** Ids of the link targets whose episode table is needed */
+  private final Set<String> wanted = new HashSet<>();
+
+  /** Ids of the elements opened before the links to the seasons were known, null afterwards */
+  private Set<String> seen = new HashSet<>();
+
+  /** Ids of the link targets that have been found */
+  private final Set<String> anchored = new HashSet<>();
+
+  /** Episode tables, keyed by the id of the link target whose heading they follow */
+  private final Map<String, Capture> found = new HashMap<>();
+
+  /** Headings, whose next siblings are being looked at for the episode table */
+  private final List<Watch> watches = new ArrayList<>();
+
+  /** Episode tables that are open */
+  private final List<Capture> openTables = new ArrayList<>();
+
+  /** Rows being read (along with the rows that may turn out to be the header row) that are open */
+  private final List<Row> openRows = new ArrayList<>();
+
+  /** Position in the stack of the parent of a block element that has just been closed within a cell, -1 if none */
+  private int tailDepth = -1;
+
+  /** Tokenizer of the page */
+  private final HtmlTokenizer tokenizer;
+
+  /** Id attribute of the current tag */
+  private String attrId;
+
+  /** Class attribute of the current tag */
+  private String attrClass;
+
+  /** Role attribute of the current tag */
+  private String attrRole;
+
+  /** Link attribute of the current tag */
+  private String attrHref;
+
+  /** Set if the current tag is self closing */
+  private boolean selfClosing;
+
+  /**
+   * Constructor
+   * @param in Stream with the contents of the page
+   * @param tocId Table of contents Id
+   * @param epClz Link to the episodes section
+   * @param rowClass Class of the episode rows (can be null if the rows do not have a class)
+   */
+  private WikiStreamParser(InputStream in, String tocId, String epClz, String rowClass) {
+    this.tokenizer = new HtmlTokenizer(in, false);
+    this.tocId = tocId;
+    this.epClz = epClz;
+    this.rowClass = rowClass;
+    for (int i = 0; i < this.stack.length; i++) {
+      this.stack[i] = new Frame();
+    }
+    this.stack[0].reset("#root", 0);
+    this.wanted.add(strip(epClz));
+  }
+
+  /**
+   * Check if the episodes of a layout can be extracted out of the stream
+   * @param tocId Table of contents Id
+   * @param epClz Link to the episodes section
+   * @param rowClass Class of the episode rows (can be null if the rows do not have a class)
+   * @return true, if the layout is supported
+   */
+  static boolean supports(String tocId, String epClz, String rowClass) {
+    return tocId != null && SIMPLE_ID.matcher(tocId).matches() && epClz != null
+            && SIMPLE_LINK.matcher(epClz).matches() && !epClz.equals("#")
+            && (rowClass == null || SIMPLE_ID.matcher(rowClass).matches());
+  }
+
+  /**
+   * Read the episode tables out of the page, see {@link #supports(String, String, String)}
+   * @param in Stream with the contents of the page, it is read only as far as needed and is not closed
+   * @param tocId Table of contents Id
+   * @param epClz Link to the episodes section
+   * @param rowClass Class of the episode rows (can be null if the rows do not have a class)
+   * @return Episode tables of the page
+   * @throws IOException If the page cannot be read
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  static WikiStreamParser parse(InputStream in, String tocId, String epClz, String rowClass)
+          throws IOException, UnsupportedPageException {
+    WikiStreamParser parser = new WikiStreamParser(in, tocId, epClz, rowClass);
+    parser.read();
+    return parser;
+  }
+
+  /**
+   * Check if the table of contents links to the episodes, i.e. whether the episodes are split into seasons
+   * @return true, if the links to the seasons are known, see {@link #getLinks()}
+   */
+  boolean isTocFound() {
+    return this.links != null;
+  }
+
+  /**
+   * Returns the links to the seasons
+   * @return Links, in order
+   */
+  List<String> getLinks() {
+    return this.links;
+  }
+
+  /**
+   * Returns the link to the episodes, as it is in the table of contents
+   * @return Link
+   */
+  String getEpisodesLink() {
+    return this.episodesLink;
+  }
+
+  @Override
+  public EpisodeTable find(String id) {
+    Capture capture = this.found.get(id);
+    return capture == NO_TABLE ? null : capture;
+  }
+
+  /**
+   * Read the page, until all the episode tables are known
+   * @throws IOException If the page cannot be read
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void read() throws IOException, UnsupportedPageException {
+    while (!isDone()) {
+      switch (this.tokenizer.next()) {
+        case START_TAG:
+          readAttributes();
+          onStartTag(this.tokenizer.getName());
+          break;
+        case END_TAG:
+          readAttributes();
+          onEndTag(this.tokenizer.getName());
+          break;
+        case TEXT:
+          onText(this.tokenizer.getText());
+          break;
+        case COMMENT:
+          onComment();
+          break;
+        case CHARACTER_DATA:
+          throw new UnsupportedPageException("character data");
+        case END:
+          while (this.depth > 0) {
+            pop();
+          }
+          return;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Keep the attributes of the current tag
+   */
+  private void readAttributes() {
+    this.attrId = this.tokenizer.getId();
+    this.attrClass = this.tokenizer.getClassName();
+    this.attrRole = this.tokenizer.getRole();
+    this.attrHref = this.tokenizer.getHref();
+    this.selfClosing = this.tokenizer.isSelfClosing();
+  }
+
+  /**
+   * Check if all the episode tables are known, the rest of the page does not need to be read
+   * @return true, if done
+   */
+  private boolean isDone() {
+    return this.links != null && this.found.size() == this.wanted.size() && this.openTables.isEmpty()
+            && this.watches.isEmpty();
+  }
+
+  /**
+   * A start tag has been read
+   * @param name Name of the element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void onStartTag(String name) throws UnsupportedPageException {
+    this.tailDepth = -1;
+    if (UNSUPPORTED.contains(name)) {
+      throw new UnsupportedPageException("<" + name + ">");
+    }
+    String current = this.stack[this.depth].name;
+    if (this.depth == 0) {
+      if (!name.equals("html")) {
+        throw new UnsupportedPageException("<" + name + "> outside of <html>");
+      }
+      push(name);
+      return;
+    } else if (name.equals("html")) {
+      return;
+    } else if (name.equals("body")) {
+      if (this.bodyDepth < 0) {
+        if (!current.equals("html")) {
+          throw new UnsupportedPageException("<body> within <" + current + ">");
+        }
+        push(name);
+        this.bodyDepth = this.depth;
+      }
+      return;
+    } else if (name.equals("head")) {
+      if (this.bodyDepth < 0 && !this.headSeen && current.equals("html")) {
+        this.headSeen = true;
+        push(name);
+      }
+      return;
+    } else if (this.bodyDepth < 0) {
+      Set<String> allowed = current.equals("head") ? HEAD_CONTENT : current.equals("noscript") ? NOSCRIPT_CONTENT
+              : Collections.emptySet();
+      if (!allowed.contains(name)) {
+        throw new UnsupportedPageException("<" + name + "> outside of <body>");
+      }
+      push(name);
+      return;
+    }
+
+    closeImplied(name, current);
+    current = this.stack[this.depth].name;
+    Set<String> allowed = TABLE_CONTENT.get(current);
+    if (allowed != null && !allowed.contains(name)) {
+      throw new UnsupportedPageException("<" + name + "> within <" + current + ">");
+    }
+    if (!this.openRows.isEmpty() && UNSUPPORTED_IN_CELL.contains(name)) {
+      throw new UnsupportedPageException("<" + name + "> within a row");
+    }
+    push(name);
+  }
+
+  /**
+   * Close the elements whose end tag is implied by the start tag, the way the parser does, those that the parser
+   * would close in some other way are reported as unsupported
+   * @param name Name of the element that is being opened
+   * @param current Name of the current element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void closeImplied(String name, String current) throws UnsupportedPageException {
+    if (HtmlTokenizer.CLOSES_P.contains(name) && inScope("p")) {
+      throw new UnsupportedPageException("<" + name + "> within <p>");
+    } else if (HEADINGS.contains(name) && HEADINGS.contains(current)) {
+      throw new UnsupportedPageException("<" + name + "> within <" + current + ">");
+    } else if ((name.equals("a") || name.equals("nobr") || name.equals("button") || name.equals("form"))
+            && inScope(name)) {
+      throw new UnsupportedPageException("<" + name + "> within <" + name + ">");
+    }
+
+    for (HtmlTokenizer.ImpliedEnd end : HtmlTokenizer.impliedByStart(name)) {
+      closeNearest(end);
+    }
+    if (name.equals("tr") && this.stack[this.depth].name.equals("table")) {
+      pushImplied("tbody");
+    } else if (name.equals("table") && TABLE_CONTENT.containsKey(current)) {
+      throw new UnsupportedPageException("<table> within <" + current + ">");
+    }
+  }
+
+  /**
+   * Close the nearest of the elements if it is the current element, if it is open but is not the current element,
+   * then the parser would close the elements within it as well, which is reported as unsupported
+   * @param end Elements to close, and the elements beyond which they are not looked for
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void closeNearest(HtmlTokenizer.ImpliedEnd end) throws UnsupportedPageException {
+    if (end.boundaries == null) {
+      if (end.names.contains(this.stack[this.depth].name)) {
+        pop();
+      }
+      return;
+    }
+    for (int i = this.depth; i > this.bodyDepth; i--) {
+      String name = this.stack[i].name;
+      if (end.boundaries.contains(name)) {
+        return;
+      } else if (end.names.contains(name)) {
+        if (i != this.depth) {
+          throw new UnsupportedPageException("<" + name + "> is not the current element");
+        }
+        pop();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Check if an element is open, within the scope of the current element (i.e. not beyond a table or a cell)
+   * @param name Name of the element
+   * @return true, if it is open
+   */
+  private boolean inScope(String name) {
+    for (int i = this.depth; i > 0; i--) {
+      String open = this.stack[i].name;
+      if (open.equals(name)) {
+        return true;
+      } else if (HtmlTokenizer.SCOPE.contains(open)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * An end tag has been read
+   * @param name Name of the element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void onEndTag(String name) throws UnsupportedPageException {
+    if (name.equals("html") || name.equals("body")) {
+      return; // the parser keeps them open, whatever follows goes into the body
+    } else if (name.equals("br") || (name.equals("p") && !inScope("p"))) {
+      throw new UnsupportedPageException("</" + name + "> without <" + name + ">");
+    }
+    int open = this.depth;
+    while (open > 0 && !this.stack[open].name.equals(name)) {
+      open--;
+    }
+    if (open == 0) {
+      return; // the parser ignores it as well
+    }
+    while (this.depth > open && HtmlTokenizer.IMPLIED_END.contains(this.stack[this.depth].name)) {
+      pop();
+    }
+    for (HtmlTokenizer.ImpliedEnd end : HtmlTokenizer.impliedByEnd(name)) {
+      closeNearest(end);
+    }
+    if (this.depth != open) {
+      throw new UnsupportedPageException("</" + name + "> within <" + this.stack[this.depth].name + ">");
+    }
+    pop();
+  }
+
+  /**
+   * A comment has been read, it separates the nodes before and after it
+   */
+  private void onComment() {
+    this.tailDepth = -1;
+  }
+
+  /**
+   * Text has been read
+   * @param text Text, entities are not decoded
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void onText(CharSequence text) throws UnsupportedPageException {
+    String current = this.stack[this.depth].name;
+    if ((this.bodyDepth < 0 || TABLE_CONTENT.containsKey(current)) && !HtmlTokenizer.isBlank(text)) {
+      throw new UnsupportedPageException("text within <" + current + ">");
+    }
+    if (!this.openRows.isEmpty()) {
+      String value = text.toString();
+      if (value.indexOf('&') != -1) {
+        value = Parser.unescapeEntities(value, false);
+      }
+      for (Row row : this.openRows) {
+        if (this.depth > row.depth) {
+          if (this.tailDepth == this.depth && this.tailDepth > row.depth) {
+            row.space(true);
+          }
+          row.text(value);
+        }
+      }
+    }
+    this.tailDepth = -1;
+  }
+
+  /**
+   * Open an element
+   * @param name Name of the element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void push(String name) throws UnsupportedPageException {
+    this.tailDepth = -1;
+    Frame parent = this.stack[this.depth];
+    Capture capture = null;
+    for (int i = this.watches.size() - 1; i >= 0; i--) {
+      Watch watch = this.watches.get(i);
+      if (watch.serial == parent.serial) {
+        watch.remaining--;
+        if (name.equals("table") && !"presentation".equals(this.attrRole)) {
+          capture = capture == null ? new Capture() : capture;
+          bind(watch, capture);
+          this.watches.remove(i);
+        } else if (watch.remaining == 0) {
+          bind(watch, NO_TABLE);
+          this.watches.remove(i);
+        }
+      }
+    }
+
+    if (++this.depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+      for (int i = this.depth; i < this.stack.length; i++) {
+        this.stack[i] = new Frame();
+      }
+    }
+    Frame frame = this.stack[this.depth];
+    frame.reset(name, ++this.serials);
+
+    if (this.tocDepth > 0 && name.equals("a") && this.links == null) {
+      onTocLink(frame, parent);
+    }
+    if (this.attrId != null) {
+      onId(this.attrId);
+      if (this.attrId.equals(this.tocId)) {
+        frame.toc = true;
+        this.tocDepth++;
+      }
+    }
+    if (!this.openRows.isEmpty()) {
+      Tag tag = Tag.valueOf(name);
+      boolean spaced = tag.isBlock() || name.equals("br");
+      for (Row row : this.openRows) {
+        if (this.depth == row.depth + 1) {
+          row.startCell();
+        } else {
+          row.space(spaced);
+        }
+      }
+    }
+    if (capture != null) {
+      frame.capture = capture;
+      this.openTables.add(capture);
+    }
+    if (name.equals("tr") && !this.openTables.isEmpty()) {
+      onRow(frame, parent);
+    }
+    if (this.selfClosing || Tag.valueOf(name).isEmpty()) {
+      pop();
+    }
+  }
+
+  /**
+   * Open an element whose start tag is implied, the way the parser does (e.g. the body of a table, for its rows)
+   * @param name Name of the element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void pushImplied(String name) throws UnsupportedPageException {
+    String id = this.attrId;
+    String clz = this.attrClass;
+    String role = this.attrRole;
+    String href = this.attrHref;
+    boolean closed = this.selfClosing;
+    this.attrId = this.attrClass = this.attrRole = this.attrHref = null;
+    this.selfClosing = false;
+    push(name);
+    this.attrId = id;
+    this.attrClass = clz;
+    this.attrRole = role;
+    this.attrHref = href;
+    this.selfClosing = closed;
+  }
+
+  /**
+   * Close the current element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void pop() throws UnsupportedPageException {
+    Frame frame = this.stack[this.depth];
+    for (Watch watch : this.watches) {
+      if (watch.serial == frame.serial) {
+        // the document would run out of siblings while looking for the table (see WikiParser.findNextTable(..))
+        throw new UnsupportedPageException("fewer than " + TABLE_LOOKAHEAD + " siblings follow the heading of "
+            + watch.ids);
+      }
+    }
+    Frame parent = this.stack[this.depth - 1];
+    if (frame.anchors != null) {
+      if (this.bodyDepth < 0 || this.depth - 1 < this.bodyDepth) {
+        throw new UnsupportedPageException("heading of " + frame.anchors + " outside of <body>");
+      }
+      this.watches.add(new Watch(parent.serial, frame.anchors));
+    }
+    if (frame.toc) {
+      this.tocDepth--;
+    }
+    if (frame.serial == this.episodesParent) {
+      resolve();
+    }
+    if (frame.row != null) {
+      frame.row.finishCell();
+      this.openRows.remove(this.openRows.size() - 1);
+    }
+    if (frame.capture != null) {
+      this.openTables.remove(frame.capture);
+    }
+    if (this.depth == this.bodyDepth) {
+      this.bodyDepth = -1;
+    }
+    parent.hasPrevious = true;
+    parent.previous = frame.row;
+    this.depth--;
+    this.tailDepth = !this.openRows.isEmpty() && Tag.valueOf(frame.name).isBlock() ? this.depth : -1;
+  }
+
+  /**
+   * An element with an id has been opened, the first element with the id of a link target is the one looked up
+   * @param id Id of the element
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void onId(String id) throws UnsupportedPageException {
+    if (this.wanted.contains(id) && this.anchored.add(id)) {
+      if (this.depth < 2) {
+        throw new UnsupportedPageException("[" + id + "] outside of <body>");
+      }
+      Frame heading = this.stack[this.depth - 1];
+      if (heading.anchors == null) {
+        heading.anchors = new ArrayList<>(1);
+      }
+      heading.anchors.add(id);
+    }
+    if (this.seen != null) {
+      this.seen.add(id);
+    }
+  }
+
+  /**
+   * A link within the table of contents has been opened
+   * @param frame Link
+   * @param parent Parent of the link
+   */
+  private void onTocLink(Frame frame, Frame parent) {
+    String href = this.attrHref == null ? "" : this.attrHref;
+    Frame grandParent = this.stack[this.depth - 2];
+    boolean listItem = parent.name.equals("li") && grandParent.name.equals("ul");
+    this.tocLinks.add(new TocLink(href, frame.serial, parent.serial, listItem));
+    if (this.episodesParent < 0 && href.trim().equalsIgnoreCase(this.epClz)) {
+      this.episodesLink = href;
+      this.episodesParent = parent.serial;
+    }
+  }
+
+  /**
+   * The links to the seasons are known, i.e. the links within the parent of the link to the episodes
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void resolve() throws UnsupportedPageException {
+    List<String> seasons = new ArrayList<>();
+    for (TocLink link : this.tocLinks) {
+      // the parent of the link to the episodes is where the links are selected from, it is not part of the selection
+      if (link.serial > this.episodesParent && link.parent != this.episodesParent && link.listItem) {
+        seasons.add(link.href);
+      }
+    }
+    List<String> ids = new ArrayList<>(seasons);
+    ids.add(this.episodesLink);
+    for (String link : ids) {
+      String id = strip(link);
+      if (id.isEmpty()) {
+        throw new UnsupportedPageException("empty link [" + link + "]");
+      } else if (this.wanted.add(id) && this.seen.contains(id)) {
+        throw new UnsupportedPageException("[" + id + "] precedes the table of contents");
+      }
+    }
+    this.links = seasons;
+    this.tocLinks = null;
+    this.seen = null;
+  }
+
+  /**
+   * A row has been opened within an episode table
+   * @param frame Row
+   * @param parent Parent of the row
+   * @throws UnsupportedPageException If the page has to be read into a document instead
+   */
+  private void onRow(Frame frame, Frame parent) throws UnsupportedPageException {
+    boolean matched = this.rowClass == null || hasClass(this.attrClass, this.rowClass);
+    boolean needed = matched;
+    for (Capture capture : this.openTables) {
+      needed |= capture.header == null; // any row before the first episode row can be the header row
+    }
+    if (!needed) {
+      return;
+    }
+    Row row = new Row(this.depth);
+    if (matched) {
+      for (Capture capture : this.openTables) {
+        if (capture.header == null) {
+          if (!parent.hasPrevious || parent.previous == null) {
+            throw new UnsupportedPageException("the first episode row does not follow a header row");
+          }
+          capture.header = parent.previous.cells;
+        }
+        capture.rows.add(row);
+      }
+    }
+    frame.row = row;
+    this.openRows.add(row);
+  }
+
+  /**
+   * The heading has been followed by the episode table (or not)
+   * @param watch Heading
+   * @param capture Episode table, {@link #NO_TABLE} if there is none
+   */
+  private void bind(Watch watch, Capture capture) {
+    for (String id : watch.ids) {
+      this.found.put(id, capture);
+    }
+  }
+
+  /**
+   * Strip the '#' of a link
+   * @param link Link
+   * @return Id of the link target
+   */
+  private static String strip(String link) {
+    return !link.isEmpty() && link.charAt(0) == '#' ? link.substring(1) : link;
+  }
+
+  /**
+   * Check if the class attribute holds the class (ignoring the case, as the selectors do)
+   * @param classes Class attribute, can be null
+   * @param name Class
+   * @return true, if it holds the class
+   */
+  private static boolean hasClass(String classes, String name) {
+    if (classes == null) {
+      return false;
+    }
+    int start = 0;
+    int length = classes.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || Character.isWhitespace(classes.charAt(i))) {
+        if (i - start == name.length() && classes.regionMatches(true, start, name, 0, name.length())) {
+          return true;
+        }
+        start = i + 1;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> set(String... names) {
+    return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+  }
+
+  /**
+   * Element that is open
+   */
+  private static final class Frame {
+
+    /** Name of the element */
+    String name;
+
+    /** Serial of the element */
+    long serial;
+
+    /** Set if the element has the id of the table of contents */
+    boolean toc;
+
+    /** Ids of the link targets within the element (i.e. the element is their heading), null if none */
+    List<String> anchors;
+
+    /** Row read out of the element, if it is a row that is read */
+    Row row;
+
+    /** Episode table, if the element is one */
+    Capture capture;
+
+    /** Set once an element within the element has been closed */
+    boolean hasPrevious;
+
+    /** Row read out of the last element within the element that has been closed, null if it is not a row read */
+    Row previous;
+
+    /**
+     * Reuse the frame for an element
+     * @param name Name of the element
+     * @param serial Serial of the element
+     */
+    void reset(String name, long serial) {
+      this.name = name;
+      this.serial = serial;
+      this.toc = false;
+      this.anchors = null;
+      this.row = null;
+      this.capture = null;
+      this.hasPrevious = false;
+      this.previous = null;
+    }
+
+  }
+
+  /**
+   * Link within the table of contents
+   */
+  private static final class TocLink {
+
+    /** Link */
+    final String href;
+
+    /** Serial of the link */
+    final long serial;
+
+    /** Serial of the parent of the link */
+    final long parent;
+
+    /** Set if the link is in an item of a list */
+    final boolean listItem;
+
+    /**
+     * Constructor
+     * @param href Link
+     * @param serial Serial of the link
+     * @param parent Serial of the parent of the link
+     * @param listItem Set if the link is in an item of a list
+     */
+    TocLink(String href, long serial, long parent, boolean listItem) {
+      this.href = href;
+      this.serial = serial;
+      this.parent = parent;
+      this.listItem = listItem;
+    }
+
+  }
+
+  /**
+   * Heading whose next siblings are being looked at for the episode table
+   */
+  private static final class Watch {
+
+    /** Serial of the parent of the heading */
+    final long serial;
+
+    /** Ids of the link targets within the heading */
+    final List<String> ids;
+
+    /** Number of siblings that are still looked at */
+    int remaining = TABLE_LOOKAHEAD;
+
+    /**
+     * Constructor
+     * @param serial Serial of the parent of the heading
+     * @param ids Ids of the link targets within the heading
+     */
+    Watch(long serial, List<String> ids) {
+      this.serial = serial;
+      this.ids = ids;
+    }
+
+  }
+
+  /**
+   * Row whose cells are read as text, the text of each cell is that of {@link org.jsoup.nodes.Element#text()}
+   */
+  private static final class Row {
+
+    /** Position of the row in the stack */
+    final int depth;
+
+    /** Text of the cells that have been read */
+    final List<String> cells = new ArrayList<>();
+
+    /** Text of the current cell, null before the first cell */
+    private StringBuilder cell;
+
+    /**
+     * Constructor
+     * @param depth Position of the row in the stack
+     */
+    Row(int depth) {
+      this.depth = depth;
+    }
+
+    /**
+     * A cell has been opened
+     */
+    void startCell() {
+      finishCell();
+      this.cell = new StringBuilder();
+    }
+
+    /**
+     * The current cell has ended
+     */
+    void finishCell() {
+      if (this.cell != null) {
+        this.cells.add(this.cell.toString().trim());
+        this.cell = null;
+      }
+    }
+
+    /**
+     * Separate the text that follows from the text before, as block elements and line breaks do
+     * @param spaced Set if the text is to be separated
+     */
+    void space(boolean spaced) {
+      if (spaced && this.cell != null && this.cell.length() > 0 && !endsWithSpace()) {
+        this.cell.append(' ');
+      }
+    }
+
+    /**
+     * Text within the current cell
+     * @param value Text
+     */
+    void text(String value) {
+      if (this.cell != null) {
+        StringUtil.appendNormalisedWhitespace(this.cell, value, endsWithSpace());
+      }
+    }
+
+    private boolean endsWithSpace() {
+      return this.cell.length() != 0 && this.cell.charAt(this.cell.length() - 1) == ' ';
+    }
+
+  }
+
+  /**
+   * Episode table, as it is read
+   */
+  private static final class Capture implements EpisodeTable {
+
+    /** Text of the cells of the header row, null until the first episode row */
+    List<String> header;
+
+    /** Episode rows */
+    final List<Row> rows = new ArrayList<>();
+
+    @Override
+    public int size() {
+      return this.rows.size();
+    }
+
+    @Override
+    public List<String> getHeader() {
+      return this.header;
+    }
+
+    @Override
+    public void readText(int row, int column, CellText text) {
+      text.read(this.rows.get(row).cells.get(column));
+    }
+
+  }
+
+}
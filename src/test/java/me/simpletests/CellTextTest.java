@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.wiki.WikiParser;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for reading the text of the cells of the episode tables
+ * @author mithun.gonsalvez
+ */
+public class CellTextTest {
+
+  /** Bytes that extracting an episode row may allocate, i.e. the episode, its title and its date */
+  private static final long ROW_BUDGET = 200;
+
+  /** Markup of the title cells, with the kinds of spaces, breaks and blocks found on the pages */
+  private static final String[] TITLES = {
+      "\"Pilot\"",
+      "  \"Spaced&nbsp;out\"&nbsp; ",
+      "\"Thin\u2009 space\" and\u3000more",
+      "\"Two<br>lines\"<br/>",
+      "<p>\"Para\"</p>graph <div>block</div><span>inline</span>",
+      "\"Soft\u00adhyphen\u200b\" <sup>[1]</sup>",
+      "<pre>  Pre\n  formatted  </pre> after",
+      "\"Line\u2028separator\"\t\r\n",
+      "<b>\"Bold\"</b><i> italic </i> <a href=\"#x\">link</a>",
+      " ",
+      "",
+  };
+
+  /**
+   * The text of the cells should be the text of the elements, with all the kinds of spaces normalized and trimmed
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSameTextAsElement() throws IOException {
+    Document doc = read(page(TITLES.length * 3));
+    RawInfo rawInfo = Fixtures.rawInfo("Cells", "Cells", null);
+    List<List<Episode>> seasons = WikiParser.parse(rawInfo, doc, Collections.emptySet());
+    Assert.assertEquals(1, seasons.size());
+    List<Episode> episodes = seasons.get(0);
+    List<Element> rows = doc.select("tr.vevent");
+    Assert.assertEquals(rows.size(), episodes.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Assert.assertEquals(clean(rows.get(i).child(1).text()), episodes.get(i).title);
+      Assert.assertEquals(LocalDate.of(1990, 6, i % 28 + 1), episodes.get(i).date);
+    }
+  }
+
+  /**
+   * Extracting a row should allocate little more than the episode it extracts
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testAllocationPerRow() throws IOException {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    RawInfo rawInfo = Fixtures.rawInfo("Cells", "Cells", null);
+    Document small = read(page(1000));
+    Document large = read(page(5000));
+    long perRow = Long.MAX_VALUE;
+    for (int i = 0; i < 20; i++) {
+      long start = threads.getThreadAllocatedBytes(thread);
+      WikiParser.parse(rawInfo, small, Collections.emptySet());
+      long middle = threads.getThreadAllocatedBytes(thread);
+      WikiParser.parse(rawInfo, large, Collections.emptySet());
+      long end = threads.getThreadAllocatedBytes(thread);
+      // the difference leaves out what is allocated once per page or per season
+      perRow = Math.min(perRow, ((end - middle) - (middle - start)) / 4000);
+    }
+    Assert.assertTrue("Allocated [" + perRow + "] bytes per row", perRow <= ROW_BUDGET);
+  }
+
+  /**
+   * Cleans up the text the way the air dates and titles used to be cleaned up
+   * @param text Text of an element
+   * @return Text with all the kinds of spaces replaced by a space, trimmed
+   */
+  private static String clean(String text) {
+    StringBuilder clean = new StringBuilder(text);
+    for (int i = 0; i < clean.length(); i++) {
+      if (Character.isSpaceChar(clean.charAt(i))) {
+        clean.setCharAt(i, ' ');
+      }
+    }
+    return clean.toString().trim();
+  }
+
+  private static Document read(String page) throws IOException {
+    RawInfo rawInfo = Fixtures.rawInfo("Cells", "Cells", null);
+    return WikiParser.read(rawInfo, new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String page(int episodes) {
+    StringBuilder html = new StringBuilder("<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a>")
+            .append("</li></ul></div><h2><span id=\"Episodes\">Episodes</span></h2>")
+            .append("<table><tr><th>No.</th><th>Title</th><th>Original air date</th></tr>");
+    for (int episode = 1; episode <= episodes; episode++) {
+      int day = (episode - 1) % 28 + 1;
+      html.append("<tr class=\"vevent\">\n  <td>").append(episode).append("</td>\n  <td>")
+              .append(TITLES[episode % TITLES.length]).append("</td>\n  <td>June ").append(day)
+              .append(",  1990 <span>(<span class=\"published\">1990-06-").append(day < 10 ? "0" : "")
+              .append(day).append("</span>)</span></td>\n</tr>");
+    }
+    return html.append("</table></body></html>").toString();
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.wiki.ColumnMatcher;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for identifying the columns of the episode tables through the compiled hints
+ * @author mithun.gonsalvez
+ */
+public class ColumnMatcherTest {
+
+  /**
+   * The compiled hints should identify the same columns as looking for every identifier in every header cell, also
+   * for identifiers that overlap or are contained in one another
+   */
+  @Test
+  public void testSameColumnsAsContains() {
+    Map<String, List<String>> hints = new LinkedHashMap<>();
+    hints.put(Keyz.TABLE_COL_TITLE, Arrays.asList("title", "episode", "name"));
+    hints.put(Keyz.TABLE_COL_AIRDATE, Arrays.asList("air date", "release date", "airdate", "date"));
+    hints.put("writer", Arrays.asList("written", "tit", "itle by"));
+    ColumnMatcher matcher = ColumnMatcher.compile(hints);
+
+    String[] words = {"No.", "Title", "title by", "Episode", "Original", "air date", "AIRDATE", "Release", "date",
+        "Written by", "Directed", "name", " ", "[a]", "ti", "tle", "at", "e"};
+    Random random = new Random(42);
+    for (int i = 0; i < 2_000; i++) {
+      List<String> header = new ArrayList<>();
+      for (int column = random.nextInt(8); column >= 0; column--) {
+        StringBuilder cell = new StringBuilder();
+        for (int word = random.nextInt(4); word >= 0; word--) {
+          cell.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "");
+        }
+        header.add(cell.toString());
+      }
+      Assert.assertEquals(header.toString(), contains(header, hints), matcher.match(header));
+    }
+    Assert.assertEquals(Collections.emptyMap(), matcher.match(Collections.emptyList()));
+  }
+
+  /**
+   * Season tables with the same header should get the same columns, identified only once
+   */
+  @Test
+  public void testRemembersHeader() {
+    Map<String, List<String>> hints = new HashMap<>();
+    hints.put(Keyz.TABLE_COL_TITLE, Collections.singletonList("title"));
+    hints.put(Keyz.TABLE_COL_AIRDATE, Collections.singletonList("air date"));
+    ColumnMatcher matcher = ColumnMatcher.compile(hints);
+
+    Map<String, Integer> first = matcher.match(new ArrayList<>(Arrays.asList("No.", "Title", "Original air date")));
+    Map<String, Integer> second = matcher.match(Arrays.asList("No.", "Title", "Original air date"));
+    Assert.assertSame(first, second);
+    Assert.assertEquals(Integer.valueOf(2), second.get(Keyz.TABLE_COL_TITLE));
+    Assert.assertEquals(Integer.valueOf(3), second.get(Keyz.TABLE_COL_AIRDATE));
+    Assert.assertFalse(first == matcher.match(Arrays.asList("Title", "No.", "Original air date")));
+  }
+
+  /**
+   * Identifies the columns the way they were identified before the hints were compiled
+   */
+  private static Map<String, Integer> contains(List<String> header, Map<String, List<String>> hints) {
+    Map<String, Integer> result = new HashMap<>(header.size());
+    for (Map.Entry<String, List<String>> entry : hints.entrySet()) {
+      for (int column = 0; column < header.size(); column++) {
+        String text = header.get(column).toLowerCase();
+        for (String identifier : entry.getValue()) {
+          if (text.contains(identifier)) {
+            result.put(entry.getKey(), column + 1);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.utils.DateRecognizer;
+import me.mikujo.series.utils.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for recognizing the air dates without the date time formatters
+ * @author mithun.gonsalvez
+ */
+public class DateRecognizerTest {
+
+  /**
+   * The shapes of the air dates found on the pages
+   */
+  @Test
+  public void testShapes() {
+    DateRecognizer recognizer = new DateRecognizer(-1);
+    Assert.assertEquals(LocalDate.of(2011, 10, 1), recognizer.recognizeCell("October 1, 2011 (2011-10-01)"));
+    Assert.assertEquals(DateRecognizer.ISO, recognizer.getLastPattern());
+    Assert.assertEquals(LocalDate.of(2011, 2, 28), recognizer.recognizeCell("February 30, 2011"));
+    Assert.assertEquals(DateRecognizer.MONTH_DAY_YEAR, recognizer.getLastPattern());
+    Assert.assertEquals(YearMonth.of(2012, 5), recognizer.recognizeCell("May 2012"));
+    Assert.assertEquals(Year.of(2013), recognizer.recognizeCell("(2013)"));
+    Assert.assertEquals(DateRecognizer.YEAR, recognizer.getLastPattern());
+    Assert.assertNull(recognizer.recognizeCell("TBA"));
+    Assert.assertNull(recognizer.recognizeCell("october 1, 2011"));
+    Assert.assertNull(recognizer.recognizeCell("2011-13-01"));
+    Assert.assertEquals(DateRecognizer.YEAR, recognizer.getLastPattern());
+  }
+
+  /**
+   * Dates should be recognized the way the formatters parse them, other than those that have only a month and a year
+   */
+  @Test
+  public void testSameAsFormatters() {
+    String[][] parts = {{"2011", "2012", "0000", "999", "20111"}, {"1", "01", "2", "12", "13", "0", "001"},
+        {"01", "1", "29", "30", "31", "32", "00", "011"}, {"February", "October", "May", "Oct", "october"},
+        {"-", "-", "-", " "}, {"", "", "Aired ", "x (", "(", "()", "(\n"}, {"", "", ")", ") ", " )", "\n)"},
+        {" ", " ", " ", ""}, {", ", ", ", ",", " "}};
+    int[][] shapes = {{0, 4, 1, 4, 2}, {3, 7, 2, 8, 0}, {3, 7, 0}, {0}};
+    Pattern inBracket = Pattern.compile("\\((.+?)\\)");
+    Random random = new Random(7);
+    PrintStream err = System.err;
+    System.setErr(new PrintStream(new ByteArrayOutputStream()));
+    try {
+      for (int i = 0; i < 50_000; i++) {
+        StringBuilder text = new StringBuilder(pick(random, parts[5]));
+        for (int part : shapes[random.nextInt(shapes.length)]) {
+          text.append(pick(random, parts[part]));
+        }
+        String cell = text.append(pick(random, parts[6])).toString();
+        Temporal actual = new DateRecognizer(random.nextInt(DateRecognizer.PATTERNS + 1) - 1).recognizeCell(cell);
+        if (actual instanceof YearMonth) {
+          continue;
+        }
+        Matcher matcher = inBracket.matcher(cell);
+        Temporal expected = Utils.parseDate(matcher.find() ? matcher.group(1) : cell, (DateTimeFormatter) null);
+        Assert.assertEquals(cell, expected, actual);
+      }
+    } finally {
+      System.setErr(err);
+    }
+  }
+
+  private static String pick(Random random, String[] choices) {
+    return choices[random.nextInt(choices.length)];
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.cache.EpisodeCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the cache of the parsed episodes
+ * @author mithun.gonsalvez
+ */
+public class EpisodeCacheTest {
+
+  /**
+   * Episodes should be read back exactly as they were written, and the key should depend on both of its parts
+   * @throws IOException If the cache cannot be read or written
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    EpisodeCache cache = EpisodeCache.open(Files.createTempDirectory("series-parsed"));
+    List<List<Episode>> seasons = Arrays.asList(
+            Arrays.asList(new Episode(1, 1, "Pilot", LocalDate.of(2015, 6, 24)),
+                    new Episode(1, 2, "Second", YearMonth.of(2015, 7))),
+            Collections.singletonList(new Episode(2, 1, "\"Unknown\"", Year.of(2016))),
+            Collections.singletonList(new Episode(3, 1, "TBA", null)));
+
+    String key = EpisodeCache.key("page-hash", "fingerprint");
+    Assert.assertNull(cache.get(key));
+    cache.put(key, seasons);
+    Assert.assertNotEquals(key, EpisodeCache.key("page-hash", "other-fingerprint"));
+    Assert.assertNotEquals(key, EpisodeCache.key("other-page-hash", "fingerprint"));
+
+    List<List<Episode>> cached = cache.get(key);
+    Assert.assertEquals(seasons.size(), cached.size());
+    for (int i = 0; i < seasons.size(); i++) {
+      Assert.assertEquals(seasons.get(i).size(), cached.get(i).size());
+      for (int j = 0; j < seasons.get(i).size(); j++) {
+        Episode expected = seasons.get(i).get(j);
+        Episode actual = cached.get(i).get(j);
+        Assert.assertEquals(expected.season, actual.season);
+        Assert.assertEquals(expected.episode, actual.episode);
+        Assert.assertEquals(expected.title, actual.title);
+        Assert.assertEquals(expected.date, actual.date);
+      }
+    }
+  }
+
+}
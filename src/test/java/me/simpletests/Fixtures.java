@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.Series;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.utils.Configs;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Series, pages and assertions shared by the tests
+ * @author mithun.gonsalvez
+ */
+final class Fixtures {
+
+  /**
+   * Constructor
+   */
+  private Fixtures() {
+  }
+
+  /**
+   * Returns a series laid out like the pages built by {@link #episodes(int, int, boolean)}, i.e. seasons linked from
+   * the table of contents 'toc' under '#Episodes', with 'vevent' episode rows
+   * @param title Title of the series
+   * @param page Name of the page of the series
+   * @param fetchMode Fetch mode (see {@link Keyz#FETCH_MODE}), null for the default
+   * @return Series
+   */
+  static RawInfo rawInfo(String title, String page, String fetchMode) {
+    return rawInfo(title, page, "toc", fetchMode);
+  }
+
+  /**
+   * Returns a series laid out like the pages of the wiki, i.e. seasons linked from the table of contents under
+   * '#Episodes', with 'vevent' episode rows
+   * @param title Title of the series
+   * @param page Name of the page of the series
+   * @param tocId Id of the table of contents
+   * @param fetchMode Fetch mode (see {@link Keyz#FETCH_MODE}), null for the default
+   * @return Series
+   */
+  static RawInfo rawInfo(String title, String page, String tocId, String fetchMode) {
+    Map<String, Object> layout = new HashMap<>();
+    layout.put(Keyz.TYPE, Keyz.TYPE_WIKI);
+    layout.put(Keyz.TOC_ID, tocId);
+    layout.put(Keyz.EPISODES_LINK, "#Episodes");
+    layout.put(Keyz.TABLE_ROW_CLZ, "vevent");
+    if (fetchMode != null) {
+      layout.put(Keyz.FETCH_MODE, fetchMode);
+    }
+    Map<String, Object> series = new HashMap<>();
+    series.put(Keyz.TITLE, title);
+    series.put(Keyz.PAGE, page);
+    Map<String, List<String>> hints = new HashMap<>();
+    hints.put(Keyz.TABLE_COL_TITLE, Collections.singletonList("title"));
+    hints.put(Keyz.TABLE_COL_AIRDATE, Arrays.asList("air date", "release date"));
+    return new RawInfo(series, new Configs("wiki:test", layout), hints);
+  }
+
+  /**
+   * Returns the episodes section of a page, the last episode of each season has no air date yet
+   * @param seasons Number of seasons
+   * @param count Number of episodes per season
+   * @param decorated Set to precede the table of the second season by a layout table, and to follow each episode row
+   * by a row with its summary, as the pages do
+   * @return HTML of the section
+   */
+  static String episodes(int seasons, int count, boolean decorated) {
+    StringBuilder html = new StringBuilder("<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>");
+    for (int season = 1; season <= seasons; season++) {
+      html.append("<h3><span class=\"mw-headline\" id=\"Season_").append(season).append("\">Season ").append(season)
+              .append("</span></h3>");
+      if (decorated && season == 2) {
+        html.append("<table class=\"sidebar\" role=\"presentation\"><tr><td>Main article</td></tr></table>");
+      }
+      html.append("<table class=\"wikitable\"><tbody><tr><th>No.</th><th>Title</th>")
+              .append("<th>Original air date</th></tr>");
+      for (int episode = 1; episode <= count; episode++) {
+        String date = episode == count ? "TBA" : "October " + episode + ", 201" + season
+                + " (201" + season + "-10-0" + episode + ")";
+        html.append("<tr class=\"vevent\"><th>").append(episode).append("</th><td>\"Episode ").append(episode)
+                .append("\"</td><td>").append(date).append("</td></tr>");
+        if (decorated) {
+          html.append("<tr class=\"expand-child\"><td colspan=\"3\">")
+                  .append(String.join("", Collections.nCopies(20, "What happens in the episode. ")))
+                  .append("</td></tr>");
+        }
+      }
+      html.append("</tbody></table>");
+    }
+    return html.toString();
+  }
+
+  /**
+   * Read the cached copy of a page
+   * @param page Cached copy
+   * @return Contents
+   * @throws IOException If the cached copy cannot be read
+   */
+  static String read(CachedPage page) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = page.open()) {
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Write a file
+   * @param file File
+   * @param contents Contents
+   * @return File
+   * @throws IOException If the file cannot be written
+   */
+  static Path write(Path file, String contents) throws IOException {
+    return Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Assert that the series are the same, i.e. the same page and the same episodes
+   * @param expected Expected series
+   * @param actual Actual series
+   */
+  static void assertSame(Series expected, Series actual) {
+    Assert.assertEquals(expected.url, actual.url);
+    assertSame(expected.episodes, actual.episodes);
+  }
+
+  /**
+   * Assert that the seasons hold the same episodes
+   * @param expected Expected seasons
+   * @param actual Actual seasons
+   */
+  static void assertSame(List<List<Episode>> expected, List<List<Episode>> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      List<Episode> expectedSeason = expected.get(i);
+      List<Episode> actualSeason = actual.get(i);
+      Assert.assertEquals(expectedSeason.size(), actualSeason.size());
+      for (int j = 0; j < expectedSeason.size(); j++) {
+        Assert.assertEquals(expectedSeason.get(j).season, actualSeason.get(j).season);
+        Assert.assertEquals(expectedSeason.get(j).episode, actualSeason.get(j).episode);
+        Assert.assertEquals(expectedSeason.get(j).title, actualSeason.get(j).title);
+        Assert.assertEquals(expectedSeason.get(j).date, actualSeason.get(j).date);
+      }
+    }
+  }
+
+}
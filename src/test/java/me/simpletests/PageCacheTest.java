@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.cache.CacheCodec;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the on disk storage of the page cache
+ * @author mithun.gonsalvez
+ */
+public class PageCacheTest {
+
+  /** Prefix of the URLs of the pages */
+  private static final String URL_PREFIX = "http://localhost/wiki/";
+
+  /**
+   * Pages cached (named after the title) before the index was introduced should be imported on first use, and
+   * stored compressed
+   * @throws IOException If the cache cannot be read or written
+   */
+  @Test
+  public void testImportLegacy() throws IOException {
+    String html = buildPage(1000);
+    Path dir = Files.createTempDirectory("series-cache");
+    Path legacy = dir.resolve("Series");
+    Files.write(legacy, html.getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("Series_date"), "Mon, 01 Jan 2024 00:00:00 GMT".getBytes(StandardCharsets.UTF_8));
+    long legacySize = Files.size(legacy);
+
+    try (PageCache cache = PageCache.open(dir)) {
+      Assert.assertEquals(CacheCodec.GZIP, cache.getCodec());
+      CachedPage page = cache.fetch("Series", URL_PREFIX + "Series", true);
+      Assert.assertEquals(html, Fixtures.read(page));
+      Assert.assertFalse(Files.exists(legacy));
+      Assert.assertTrue(Files.size(page.file) * 10 < legacySize);
+      Assert.assertEquals(0, cache.migrate());
+    }
+
+    // the index is persisted, and the codec recorded in the directory is retained
+    try (PageCache cache = PageCache.open(dir)) {
+      Assert.assertEquals(CacheCodec.GZIP, cache.getCodec());
+      Assert.assertEquals(html, Fixtures.read(cache.fetch("Series", URL_PREFIX + "Series", true)));
+    }
+  }
+
+  /**
+   * Pages with identical contents should be stored once, and titles need not be valid file names
+   * @throws IOException If the cache cannot be read or written
+   */
+  @Test
+  public void testContentAddressed() throws IOException {
+    String html = buildPage(10);
+    try (StubServer server = new StubServer((path, headers) -> new StubServer.Reply(200, html)
+            .header("ETag", "\"v1\""));
+         PageCache cache = PageCache.open(Files.createTempDirectory("series-cache"))) {
+      CachedPage page1 = cache.fetch("Show: Part 1/2", server.getBaseUrl() + "wiki/Show", false);
+      CachedPage page2 = cache.fetch("Show (franchise)", server.getBaseUrl() + "wiki/Franchise", false);
+      Assert.assertEquals(page1.hash, page2.hash);
+      Assert.assertEquals(page1.file, page2.file);
+      Assert.assertEquals(html, Fixtures.read(page2));
+    }
+  }
+
+  /**
+   * A downloaded page should be passed to the reader as it is downloaded, and be cached whether or not the reader
+   * succeeds, while the cached copy is used without invoking the reader
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testReadWhileDownloading() throws IOException {
+    String html = buildPage(200);
+    try (StubServer server = new StubServer((path, headers) -> new StubServer.Reply(200, html)
+            .header("ETag", "\"v1\""));
+         PageCache cache = PageCache.open(Files.createTempDirectory("series-cache"))) {
+      StringBuilder read = new StringBuilder();
+      CachedPage page = cache.fetch("Show", server.getBaseUrl() + "wiki/Show", false, 0, in -> {
+        byte[] buffer = new byte[100];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          read.append(new String(buffer, 0, count, StandardCharsets.UTF_8));
+        }
+      });
+      Assert.assertEquals(html, read.toString());
+      Assert.assertEquals(html, Fixtures.read(page));
+
+      CachedPage partial = cache.fetch("Show", server.getBaseUrl() + "wiki/Partial", false, 0, in -> {
+        in.read(new byte[100]);
+        throw new IOException("Unable to parse");
+      });
+      Assert.assertEquals(html, Fixtures.read(partial));
+
+      CachedPage cached = cache.fetch("Show", server.getBaseUrl() + "wiki/Show", false, Long.MAX_VALUE, in -> {
+        throw new AssertionError("The cached copy should have been used");
+      });
+      Assert.assertEquals(page.hash, cached.hash);
+    }
+  }
+
+  /**
+   * Least recently used and expired entries should be evicted, except those used since the cache was opened, and
+   * entries should be purged selectively by title or URL
+   * @throws Exception If the cache cannot be read or written
+   */
+  @Test
+  public void testEvictionAndPurge() throws Exception {
+    Path dir = Files.createTempDirectory("series-cache");
+    try (StubServer server = new StubServer((path, headers) -> new StubServer.Reply(200, buildPage(path.length()))
+            .header("ETag", "\"v1\""))) {
+      String urlA = server.getBaseUrl() + "wiki/A";
+      String urlB = server.getBaseUrl() + "wiki/Bb";
+      String urlC = server.getBaseUrl() + "wiki/Ccc";
+      Path fileA;
+      Path fileB;
+      try (PageCache cache = PageCache.open(dir)) {
+        fileA = cache.fetch("Series A", urlA, false).file;
+        Thread.sleep(5);
+        fileB = cache.fetch("Series B", urlB, false).file;
+        Thread.sleep(5);
+        cache.fetch("Series C", urlC, false);
+      }
+      Thread.sleep(5);
+
+      try (PageCache cache = PageCache.open(dir)) {
+        long size = cache.get(urlA).size + cache.get(urlB).size + cache.get(urlC).size;
+        cache.fetch("Series B", urlB, true); // used by this run, so it is never evicted
+
+        // the least recently used entry is evicted, just enough to fit in the size
+        Assert.assertEquals(0, cache.compact(size, Long.MAX_VALUE));
+        Assert.assertEquals(1, cache.compact(size - 1, Long.MAX_VALUE));
+        Assert.assertNull(cache.get(urlA));
+        Assert.assertFalse(Files.exists(fileA));
+
+        // expired entries are evicted, regardless of the size
+        Assert.assertEquals(1, cache.compact(Long.MAX_VALUE, 0));
+        Assert.assertNull(cache.get(urlC));
+        Assert.assertNotNull(cache.get(urlB));
+        Assert.assertTrue(Files.exists(fileB));
+
+        // purged by title, or by URL
+        Assert.assertEquals(1, cache.purge(Pattern.compile("series b", Pattern.CASE_INSENSITIVE)));
+        Assert.assertFalse(Files.exists(fileB));
+        cache.fetch("Series A", urlA, false);
+        cache.fetch("Series C", urlC, false);
+        Assert.assertEquals(1, cache.purge(Pattern.compile("/wiki/Ccc$")));
+      }
+
+      // the evictions are persisted
+      try (PageCache cache = PageCache.open(dir)) {
+        Assert.assertNotNull(cache.get(urlA));
+        Assert.assertNull(cache.get(urlB));
+        Assert.assertNull(cache.get(urlC));
+      }
+    }
+  }
+
+  /**
+   * Build a page with the provided number of rows
+   * @param rows Number of rows
+   * @return Page
+   */
+  private static String buildPage(int rows) {
+    StringBuilder page = new StringBuilder("<html><body><table>");
+    for (int i = 0; i < rows; i++) {
+      page.append("<tr class=\"vevent\"><td>").append(i).append("</td><td>Episode</td></tr>");
+    }
+    return page.append("</table></body></html>").toString();
+  }
+
+  /**
+   * Caches sharing a directory (as separate processes would) should fetch a URL only once, keep each other's entries
+   * when saving the index, and leave the compaction to whichever is the last one using the directory
+   * @throws Exception If something goes wrong
+   */
+  @Test
+  public void testSharedDirectory() throws Exception {
+    Path dir = Files.createTempDirectory("series-cache");
+    AtomicInteger requests = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      requests.incrementAndGet();
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException();
+      }
+      return new StubServer.Reply(200, buildPage(path.length())).header("ETag", "\"v1\"");
+    })) {
+      String urlA = server.getBaseUrl() + "wiki/A";
+      String urlB = server.getBaseUrl() + "wiki/Bb";
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try (PageCache cache1 = PageCache.open(dir)) {
+        try (PageCache cache2 = PageCache.open(dir)) {
+          Future<CachedPage> page1 = executor.submit(() -> cache1.fetch("Series A", urlA, false, Long.MAX_VALUE));
+          Future<CachedPage> page2 = executor.submit(() -> cache2.fetch("Series A", urlA, false, Long.MAX_VALUE));
+          Assert.assertEquals(page1.get().hash, page2.get().hash);
+          Assert.assertEquals(1, requests.get());
+
+          cache2.fetch("Series B", urlB, false);
+          Assert.assertEquals(0, cache1.compact(0, 0)); // skipped, the directory is in use by the other cache
+          Assert.assertNotNull(cache1.get(urlA));
+        }
+        Assert.assertNull(cache1.get(urlB));
+      } finally {
+        executor.shutdownNow();
+      }
+
+      try (PageCache cache = PageCache.open(dir)) {
+        Assert.assertNotNull(cache.get(urlA));
+        Assert.assertNotNull(cache.get(urlB));
+        Assert.assertEquals(2, cache.compact(0, 0));
+        Assert.assertNull(cache.get(urlA));
+      }
+      try (PageCache cache = PageCache.open(dir)) {
+        Assert.assertNull(cache.get(urlA));
+        Assert.assertNull(cache.get(urlB));
+      }
+    }
+  }
+
+  /**
+   * A process that dies while it fetches a URL leaves its lock stale, the next owner of the lock (in another process)
+   * should wait for the lock until the process is gone, report the stale lock, and pick up the copy the dead process
+   * had fetched before (recorded only in the lock file, as the dead process never saved its index)
+   * @throws Exception If something goes wrong
+   */
+  @Test
+  public void testStaleLockOfDeadProcess() throws Exception {
+    Path dir = Files.createTempDirectory("series-cache");
+    String body = buildPage(10);
+    AtomicInteger requests = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (requests.incrementAndGet() > 1) { // the revalidation hangs until the owner is killed
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException ex) {
+          throw new InterruptedIOException();
+        }
+      }
+      return new StubServer.Reply(200, body).header("ETag", "\"v1\"");
+    })) {
+      String url = server.getBaseUrl() + "wiki/A";
+      Process owner = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+              "-cp", System.getProperty("java.class.path"), LockOwner.class.getName(), dir.toString(), url)
+              .inheritIO().start();
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      PrintStream err = System.err;
+      ByteArrayOutputStream reported = new ByteArrayOutputStream();
+      try {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (requests.get() < 2) { // the owner holds the lock (marked as fetching) once it revalidates
+          Assert.assertTrue("The owner did not revalidate", owner.isAlive() && System.currentTimeMillis() < deadline);
+          Thread.sleep(50);
+        }
+
+        try (PageCache cache = PageCache.open(dir)) {
+          System.setErr(new PrintStream(reported, true));
+          Future<CachedPage> page = executor.submit(() -> cache.fetch("Series A", url, false, Long.MAX_VALUE));
+          Thread.sleep(500);
+          Assert.assertFalse(page.isDone()); // waiting for the lock held by the other process
+          owner.destroyForcibly().waitFor();
+          Assert.assertEquals(body, Fixtures.read(page.get(30, TimeUnit.SECONDS)));
+        }
+      } finally {
+        System.setErr(err);
+        executor.shutdownNow();
+        owner.destroyForcibly();
+      }
+      Assert.assertEquals(2, requests.get()); // not fetched again
+      Assert.assertTrue(reported.toString(StandardCharsets.UTF_8.name()).contains("Detected a stale lock of [" + url
+              + "]"));
+    }
+  }
+
+  /**
+   * Process that fetches a URL into the cache, and then hangs while revalidating it, until it is killed
+   */
+  public static final class LockOwner {
+
+    /**
+     * Entry point
+     * @param args Cache directory and URL
+     * @throws IOException If the URL cannot be fetched
+     */
+    public static void main(String[] args) throws IOException {
+      PageCache cache = PageCache.open(Paths.get(args[0]));
+      cache.fetch("Series A", args[1], false, Long.MAX_VALUE);
+      cache.fetch("Series A", args[1], false, 0);
+    }
+
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.cache.EpisodeCache;
+import me.mikujo.series.wiki.PageLayout;
+import me.mikujo.series.wiki.WikiParser;
+import org.jsoup.nodes.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the layout learned from the page of a series
+ * @author mithun.gonsalvez
+ */
+public class PageLayoutTest {
+
+  /**
+   * The layout learned by a parse should be stored, and a later parse of the same page should follow it without
+   * learning anything new
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testLearnedLayoutIsReused() throws IOException {
+    RawInfo rawInfo = Fixtures.rawInfo("Learned", "Learned", null);
+    Document doc = read(rawInfo, page("Original air date"));
+    PageLayout layout = new PageLayout();
+    List<List<Episode>> expected = WikiParser.parse(rawInfo, doc, Collections.emptySet(), layout);
+    Assert.assertTrue(layout.isChanged());
+    Assert.assertEquals(2, layout.getSeasons().size());
+    PageLayout.Season season = layout.get("Season_2");
+    Assert.assertEquals(Arrays.asList("No.", "Title", "Original air date"), season.header);
+    Assert.assertEquals(2, season.titleColumn);
+    Assert.assertEquals(3, season.dateColumn);
+    Assert.assertEquals(1, season.datePattern); // 'MMMM d, yyyy'
+
+    EpisodeCache cache = EpisodeCache.open(Files.createTempDirectory("series-layout"));
+    String key = EpisodeCache.layoutKey(WikiParser.getSource(rawInfo), WikiParser.fingerprint(rawInfo,
+            Collections.emptySet()));
+    cache.putLayout(key, layout);
+    PageLayout stored = cache.getLayout(key);
+    Assert.assertFalse(stored.isChanged());
+    Assert.assertEquals(layout.getSeasons(), stored.getSeasons());
+
+    List<List<Episode>> actual = WikiParser.parse(rawInfo, doc, Collections.emptySet(), stored);
+    Assert.assertFalse(stored.isChanged());
+    Assert.assertEquals(toString(expected), toString(actual));
+    Assert.assertFalse(cache.getLayout("0" + key.substring(1)).isChanged());
+  }
+
+  /**
+   * The learned columns should be used as long as the header has not changed, the columns should be identified again
+   * once it changes
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testHeaderChangeRelearns() throws IOException {
+    RawInfo rawInfo = Fixtures.rawInfo("Learned", "Learned", null);
+    PageLayout layout = new PageLayout();
+    // as learned from an older revision of the page, which had the title in the first column
+    layout.put("Season_1", new PageLayout.Season(Arrays.asList("No.", "Title", "Original air date"), 1, 3, -1));
+    layout.put("Season_2", new PageLayout.Season(Arrays.asList("No.", "Title", "Air date"), 1, 3, -1));
+
+    List<List<Episode>> seasons = WikiParser.parse(rawInfo, read(rawInfo, page("Original air date")),
+            Collections.emptySet(), layout);
+    Assert.assertEquals("1", seasons.get(0).get(0).title); // the header did not change, so the columns are used
+    Assert.assertEquals("\"Episode 2x1\"", seasons.get(1).get(0).title);
+    Assert.assertEquals(LocalDate.of(1992, 6, 1), seasons.get(1).get(0).date);
+    Assert.assertTrue(layout.isChanged());
+    Assert.assertEquals(2, layout.get("Season_2").titleColumn);
+    Assert.assertEquals(Arrays.asList("No.", "Title", "Original air date"), layout.get("Season_2").header);
+  }
+
+  private static Document read(RawInfo rawInfo, String page) throws IOException {
+    return WikiParser.read(rawInfo, new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String toString(List<List<Episode>> seasons) {
+    StringBuilder text = new StringBuilder();
+    for (List<Episode> season : seasons) {
+      for (Episode episode : season) {
+        text.append(episode.season).append('x').append(episode.episode).append(' ').append(episode.title)
+                .append(' ').append(episode.date).append('\n');
+      }
+    }
+    return text.toString();
+  }
+
+  private static String page(String dateHeader) {
+    StringBuilder html = new StringBuilder("<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a>")
+            .append("<ul><li><a href=\"#Season_1\">Season 1</a></li><li><a href=\"#Season_2\">Season 2</a></li>")
+            .append("</ul></li></ul></div><h2><span id=\"Episodes\">Episodes</span></h2>");
+    for (int season = 1; season <= 2; season++) {
+      html.append("<h3><span id=\"Season_").append(season).append("\">Season ").append(season).append("</span></h3>")
+              .append("<table><tr><th>No.</th><th>Title</th><th>").append(dateHeader).append("</th></tr>");
+      for (int episode = 1; episode <= 3; episode++) {
+        html.append("<tr class=\"vevent\"><td>").append(episode).append("</td><td>\"Episode ").append(season)
+                .append('x').append(episode).append("\"</td><td>(June ").append(episode).append(", ")
+                .append(1990 + season).append(")</td></tr>");
+      }
+      html.append("</table>");
+    }
+    return html.append("</body></html>").toString();
+  }
+
+}
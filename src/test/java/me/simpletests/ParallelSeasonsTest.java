@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.wiki.PageLayout;
+import me.mikujo.series.wiki.WikiParser;
+import org.jsoup.nodes.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for extracting the seasons of a page on a pool of threads
+ * @author mithun.gonsalvez
+ */
+public class ParallelSeasonsTest {
+
+  /** Number of seasons on the page */
+  private static final int SEASONS = 24;
+
+  /**
+   * Seasons extracted on a pool should come out in the order of the table of contents, numbered the same way as when
+   * they are extracted one after the other, also when seasons are skipped or missing
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSameSeasonsInOrder() throws IOException {
+    RawInfo rawInfo = Fixtures.rawInfo("Long Runner", "Long_Runner", null);
+    Document doc = WikiParser.read(rawInfo, new ByteArrayInputStream(page().getBytes(StandardCharsets.UTF_8)));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (Set<Integer> seasonSkip : Arrays.asList(Collections.<Integer>emptySet(), Collections.singleton(1),
+              new HashSet<>(Arrays.asList(2, 3, 10, SEASONS)))) {
+        List<List<Episode>> expected = WikiParser.parse(rawInfo, doc, seasonSkip);
+        List<List<Episode>> actual = WikiParser.parse(rawInfo, doc, seasonSkip, new PageLayout(), pool);
+
+        // season 7 is not found
+        Assert.assertEquals(SEASONS - seasonSkip.size() - 1, actual.size());
+        Fixtures.assertSame(expected, actual);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static String page() {
+    StringBuilder html = new StringBuilder("<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a>")
+            .append("<ul>");
+    for (int season = 1; season <= SEASONS; season++) {
+      html.append("<li><a href=\"#Season_").append(season).append("\">Season ").append(season).append("</a></li>");
+    }
+    html.append("</ul></li></ul></div><h2><span id=\"Episodes\">Episodes</span></h2>");
+    for (int season = 1; season <= SEASONS; season++) {
+      // season 7 is listed in the table of contents, but its heading has a different id
+      html.append("<h3><span id=\"Season_").append(season == 7 ? "Seven" : String.valueOf(season)).append("\">Season ")
+              .append(season).append("</span></h3>");
+      html.append("<table><tr><th>No.</th><th>Title</th><th>Original air date</th></tr>");
+      for (int episode = 1; episode <= 10 + season; episode++) {
+        html.append("<tr class=\"vevent\"><td>").append(episode).append("</td><td>\"Episode ").append(season)
+                .append('x').append(episode).append("\"</td><td>June ").append(episode).append(", ")
+                .append(1990 + season).append(" (").append(1990 + season).append("-06-")
+                .append(String.format("%02d", episode)).append(")</td></tr>");
+      }
+      html.append("</table>");
+    }
+    return html.append("</body></html>").toString();
+  }
+
+}
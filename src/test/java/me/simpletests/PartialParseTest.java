@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+import me.mikujo.series.wiki.WikiParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for extracting the episodes without reading the page into a document, as the page is streamed or out of
+ * slices of the page
+ * @author mithun.gonsalvez
+ */
+public class PartialParseTest {
+
+  /** Parse modes that do not read the page into a document */
+  private static final List<String> MODES = Arrays.asList(Keyz.PARSE_MODE_STREAM, Keyz.PARSE_MODE_SLICE);
+
+  /**
+   * Clear the base URL of the wiki and the parse mode
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+    System.clearProperty(Keyz.PARSE_MODE);
+  }
+
+  /**
+   * Episodes extracted as the page is streamed, or out of slices of the page, should be the same as those extracted
+   * out of its document, for pages laid out the way the wiki lays them out (older and newer skins)
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSameEpisodesAsDocument() throws IOException {
+    Map<String, String> pages = new HashMap<>();
+    pages.put("/wiki/Classic", page(false));
+    pages.put("/wiki/Modern", page(true));
+    pages.put("/wiki/Single", "<!DOCTYPE html><html><head><title>Single</title></head><body><div id=\"content\">"
+            + "<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>" + table(2, 1)
+            + "</div></body></html>");
+    for (String page : pages.keySet()) {
+      CachedPage cached = fetch(page.substring(6), pages.get(page));
+      for (Set<Integer> seasonSkip : Arrays.asList(Collections.<Integer>emptySet(), Collections.singleton(1),
+              new HashSet<>(Arrays.asList(1, 2, 3)))) {
+        RawInfo rawInfo = Fixtures.rawInfo(page.substring(6), page.substring(6), null);
+        List<List<Episode>> expected = WikiParser.parse(rawInfo, WikiParser.read(rawInfo, cached), seasonSkip);
+        for (String mode : MODES) {
+          System.setProperty(Keyz.PARSE_MODE, mode);
+          List<List<Episode>> actual = WikiParser.extract(rawInfo, cached, seasonSkip);
+          System.clearProperty(Keyz.PARSE_MODE);
+          Assert.assertNotNull(page + " " + mode, actual);
+          Fixtures.assertSame(expected, actual);
+        }
+      }
+    }
+  }
+
+  /**
+   * A page that the parser has to fix up cannot be streamed, and a heading that does not parse on its own cannot be
+   * sliced, such pages are read into a document instead, and are counted
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testFallsBackToDocument() throws IOException {
+    assertFallsBack(Keyz.PARSE_MODE_STREAM, page(false).replace("\"Episode 2\"</td>", "<b>\"Episode 2\"</td>"));
+    // the paragraph is closed by the note within it, so the heading is followed by more siblings than it seems
+    assertFallsBack(Keyz.PARSE_MODE_SLICE, page(false).replace(heading(false, 3, id(2)), heading(false, 3, id(2))
+            + "<p>Intro<div>Note</div></p>"));
+  }
+
+  /**
+   * The page should be read only until the last episode table, whatever follows does not matter, whether it is
+   * streamed or sliced
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testStopsAfterLastTable() throws IOException {
+    String page = page(false).replace("</div></body>", "<p>Unclosed <div>and broken</br></p></div></body>");
+    CachedPage cached = fetch("Trailing", page);
+    RawInfo rawInfo = Fixtures.rawInfo("Trailing", "Trailing", null);
+    List<List<Episode>> expected = WikiParser.parse(rawInfo, WikiParser.read(rawInfo, cached),
+            Collections.emptySet());
+
+    for (String mode : MODES) {
+      System.setProperty(Keyz.PARSE_MODE, mode);
+      List<List<Episode>> actual = WikiParser.extract(rawInfo, cached, Collections.emptySet());
+      Assert.assertNotNull(mode, actual);
+      Fixtures.assertSame(expected, actual);
+      Assert.assertEquals(3, actual.size());
+    }
+  }
+
+  private static void assertFallsBack(String mode, String page) throws IOException {
+    CachedPage cached = fetch("Broken", page);
+    RawInfo rawInfo = Fixtures.rawInfo("Broken", "Broken", null);
+    List<List<Episode>> expected = WikiParser.parse(rawInfo, WikiParser.read(rawInfo, cached),
+            Collections.emptySet());
+
+    System.setProperty(Keyz.PARSE_MODE, mode);
+    Assert.assertTrue(WikiParser.isPartial(rawInfo));
+    long fallbacks = WikiParser.getFallbackCount();
+    Assert.assertNull(mode, WikiParser.extract(rawInfo, cached, Collections.emptySet()));
+    Assert.assertEquals(fallbacks + 1, WikiParser.getFallbackCount());
+    Fixtures.assertSame(expected, WikiParser.parse(rawInfo, cached, Collections.emptySet()).episodes);
+  }
+
+  private static CachedPage fetch(String title, String page) throws IOException {
+    try (StubServer server = new StubServer((path, headers) -> path.equals("/wiki/" + title)
+            ? new StubServer.Reply(200, page) : new StubServer.Reply(404, "Not found: " + path))) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      PageCache cache = PageCache.open(Files.createTempDirectory("series-stream"));
+      return WikiParser.fetch(Fixtures.rawInfo(title, title, null), cache, false);
+    }
+  }
+
+  private static String page(boolean modern) {
+    StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html class=\"client-nojs\" lang=\"en\"><head>\n"
+            + "<meta charset=\"UTF-8\"><title>Show &amp; Tell - Wikipedia</title>\n"
+            + "<script>var RLCONF = {\"wgTitle\": \"<table>\"};</script>\n"
+            + "<noscript><link rel=\"stylesheet\" href=\"/w/load.php\"></noscript>\n"
+            + "<style>.vevent td { color: red; }</style></head>\n<body class=\"skin\">\n"
+            + "<!-- <table id=\"Season_1\"> -->\n<div id=\"content\" class=\"mw-body\" role=\"main\">\n");
+    html.append("<table class=\"infobox vevent\"><tbody><tr><th colspan=\"2\">Show &amp; Tell</th></tr>")
+            .append("<tr><th>Genre</th><td>Drama<br>Comedy</td></tr></tbody></table>\n")
+            .append("<p><b>Show &amp; Tell</b> is a series.<sup class=\"reference\"><a href=\"#cite-1\">[1]</a></sup>")
+            .append(" It has <i>three</i> seasons&#160;so far.</p>\n");
+    if (modern) {
+      html.append("<div id=\"toc\" class=\"vector-toc\"><ul class=\"vector-toc-contents\">")
+              .append("<li id=\"toc-Overview\" class=\"vector-toc-list-item\"><a class=\"vector-toc-link\" ")
+              .append("href=\"#Overview\"><div class=\"vector-toc-text\">Overview</div></a></li>")
+              .append("<li id=\"toc-Episodes\" class=\"vector-toc-list-item\"><a class=\"vector-toc-link\" ")
+              .append("href=\"#Episodes\"><div class=\"vector-toc-text\">Episodes</div></a>")
+              .append("<ul id=\"toc-Episodes-sublist\">");
+    } else {
+      html.append("<div id=\"toc\" class=\"toc\" role=\"navigation\"><input type=\"checkbox\" role=\"button\">")
+              .append("<div class=\"toctitle\"><h2>Contents</h2></div><ul>")
+              .append("<li class=\"toclevel-1\"><a href=\"#Overview\"><span class=\"toctext\">Overview</span></a>")
+              .append("</li>\n<li class=\"toclevel-1\"><a href=\"#Episodes\"><span class=\"tocnumber\">2</span> ")
+              .append("<span class=\"toctext\">Episodes</span></a>\n<ul>\n");
+    }
+    for (int season = 1; season <= 3; season++) {
+      html.append("<li class=\"toclevel-2\"><a href=\"#").append(id(season)).append("\">Season ").append(season)
+              .append("</a></li>\n");
+    }
+    html.append("</ul></li>\n<li><a href=\"#References\">References</a></li></ul></div>\n");
+    html.append(heading(modern, 2, "Overview")).append("<table class=\"wikitable\"><tbody><tr><th>Season</th>")
+            .append("<th>Episodes</th></tr><tr><td>1</td><td>4</td></tr></tbody></table>\n");
+    html.append(heading(modern, 2, "Episodes"));
+    for (int season = 1; season <= 3; season++) {
+      html.append(heading(modern, 3, id(season)));
+      if (season == 2) {
+        html.append("<div role=\"note\" class=\"hatnote\">Main article: <a href=\"/wiki/S2\">Season 2</a></div>")
+                .append("<table class=\"sidebar\" role=\"presentation\"><tbody><tr><td>Nav</td></tr></tbody></table>");
+      }
+      html.append(table(4, season)).append('\n');
+    }
+    html.append(heading(modern, 2, "References"))
+            .append("<table class=\"navbox\" role=\"presentation\"><tbody><tr><td>Other</td></tr></tbody></table>\n")
+            .append("</div></body></html>\n");
+    return html.toString();
+  }
+
+  private static String id(int season) {
+    return "Season_" + season + "_(201" + season + ")";
+  }
+
+  private static String heading(boolean modern, int level, String id) {
+    String text = id.replace('_', ' ');
+    if (modern) {
+      return "<div class=\"mw-heading mw-heading" + level + "\"><h" + level + " id=\"" + id + "\">" + text + "</h"
+              + level + "><span class=\"mw-editsection\"><a href=\"/edit\">edit</a></span></div>\n";
+    }
+    return "<h" + level + "><span class=\"mw-headline\" id=\"" + id + "\">" + text + "</span><span "
+            + "class=\"mw-editsection\">[<a href=\"/edit\">edit</a>]</span></h" + level + ">\n";
+  }
+
+  private static String table(int count, int season) {
+    StringBuilder html = new StringBuilder(season == 2 ? "" : "<style>.wikiepisodetable{}</style>")
+            .append("<table class=\"wikitable plainrowheaders wikiepisodetable\" style=\"width:100%\">\n")
+            .append("<tbody>\n<tr style=\"color:#000\"><th scope=\"col\">No.<br>overall</th>")
+            .append("<th scope=\"col\">Title&#160;<sup>[a]</sup></th>\n<th scope=\"col\"><div>Original</div>air date")
+            .append("<sup class=\"reference\"><a href=\"#cite-2\">[2]</a></sup></th></tr>\n");
+    for (int episode = 1; episode <= count; episode++) {
+      String date = episode == count ? "TBA" : "October&nbsp;" + episode + ", 201" + season
+              + "<span style=\"display:none\">&#160;(<span class=\"bday dtstart published updated\">201" + season
+              + "-10-0" + episode + "</span>)</span>";
+      String title = episode == 1 ? "\"Pilot\"<br><small>(Part&nbsp;1)</small>"
+              : episode == 3 ? "<div>\"Part <b>Three</b>\"</div>\nand more<!-- hidden -->"
+              : "\"Episode " + episode + "\"";
+      html.append("<tr class=\"vevent\" style=\"text-align:center\">\n<th scope=\"row\" id=\"ep").append(episode)
+              .append("\">").append(episode).append("</th>\n<td class=\"summary\" style=\"text-align:left\">")
+              .append(title).append("</td>\n<td>").append(date).append("</td></tr>\n")
+              .append("<tr class=\"expand-child\"><td class=\"description\" colspan=\"3\"><p>What happens")
+              .append("<sup>[3]</sup>.</p></td></tr>\n");
+    }
+    return html.append("</tbody></table>").toString();
+  }
+
+}
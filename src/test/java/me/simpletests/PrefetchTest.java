@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.SeriesTracker;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests for prefetching the pages into the cache, ahead of an offline run
+ * @author mithun.gonsalvez
+ */
+public class PrefetchTest {
+
+  /**
+   * Clear the settings
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+    System.clearProperty(Keyz.PREFETCH_MAX_TIME);
+  }
+
+  /**
+   * Pages that are not cached should be prefetched first, followed by the series whose next episode airs soonest, and
+   * nothing should be prefetched once the budget has run out
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testUrgencyOrder() throws IOException {
+    Map<String, Integer> nextEpisodeDays = new HashMap<>();
+    nextEpisodeDays.put("Show_A", 10);
+    nextEpisodeDays.put("Show_B", 40);
+    nextEpisodeDays.put("Show_C", 5);
+    nextEpisodeDays.put("Show_D", 20);
+    List<String> requests = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer((path, headers) -> {
+      String page = path.substring(path.lastIndexOf('/') + 1);
+      if (path.startsWith("/wiki/") && nextEpisodeDays.containsKey(page)) {
+        requests.add(page);
+        return new StubServer.Reply(200, page(nextEpisodeDays.get(page))).header("ETag", "\"" + page + "\"");
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-prefetch");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      Path output = dir.resolve("output.txt");
+
+      tracker(dir, watchedList, output, Arrays.asList("Show_A", "Show_B", "Show_C"), false).process();
+      requests.clear();
+
+      // the output is neither parsed nor written by a prefetch
+      Files.delete(output);
+      tracker(dir, watchedList, output, Arrays.asList("Show_A", "Show_B", "Show_C", "Show_D"), true).prefetch();
+      Assert.assertEquals(Arrays.asList("Show_D", "Show_C", "Show_A", "Show_B"), requests);
+      Assert.assertFalse(Files.exists(output));
+
+      System.setProperty(Keyz.PREFETCH_MAX_TIME, "0");
+      requests.clear();
+      tracker(dir, watchedList, output, Collections.singletonList("Show_A"), true).prefetch();
+      Assert.assertEquals(Collections.emptyList(), requests);
+    }
+  }
+
+  /**
+   * Pages that have no upcoming episode should be prefetched after the others, in the order they are listed, even when
+   * most pages are like that
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testManyPagesWithoutUpcomingEpisodes() throws IOException {
+    Map<String, Integer> nextEpisodeDays = new HashMap<>();
+    List<String> pages = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      // every fourth page has an upcoming episode, those listed later air sooner
+      nextEpisodeDays.put("Show_" + i, i % 4 == 0 ? 40 - i : -1);
+      pages.add("Show_" + i);
+    }
+    List<String> requests = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer((path, headers) -> {
+      String page = path.substring(path.lastIndexOf('/') + 1);
+      if (path.startsWith("/wiki/")) {
+        requests.add(page);
+        return new StubServer.Reply(200, page(nextEpisodeDays.getOrDefault(page, -1)));
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-prefetch");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      Path output = dir.resolve("output.txt");
+
+      tracker(dir, watchedList, output, pages, false).process();
+      requests.clear();
+
+      List<String> expected = new ArrayList<>();
+      expected.add("Show_New");
+      for (int i = 36; i >= 0; i -= 4) {
+        expected.add("Show_" + i);
+      }
+      for (String page : pages) {
+        if (nextEpisodeDays.get(page) < 0) {
+          expected.add(page);
+        }
+      }
+      pages.add("Show_New");
+      tracker(dir, watchedList, output, pages, true).prefetch();
+      Assert.assertEquals(expected, requests);
+    }
+  }
+
+  private static SeriesTracker tracker(Path dir, Path watchedList, Path output, List<String> pages,
+                                       boolean refreshAll) throws IOException {
+    StringBuilder series = new StringBuilder();
+    for (String page : pages) {
+      series.append(series.length() == 0 ? "" : ",").append("{ \"title\":\"").append(page)
+              .append("\", \"page\":\"").append(page).append("\", \"format\":\"wiki:test\" }");
+    }
+    Path seriesList = Fixtures.write(dir.resolve("series.json"), "{ \"formats\":{ \"wiki:test\":{ \"episodes.link\":"
+            + "\"#Episodes\", \"table.row.class\":\"vevent\", \"type\":\"wiki\", \"toc.id\":\"toc\" } },"
+            + "\"hints\":{ \"wiki:auto\":{ \"table.col.title\":[\"title\"], \"table.col.air-date\":[\"air date\"] } },"
+            + "\"series\":[" + series + "]}");
+    return new SeriesTracker(seriesList, watchedList, output, dir.resolve("cache"), "text", false, refreshAll, false);
+  }
+
+  private static String page(int nextEpisodeDays) {
+    DateTimeFormatter format = DateTimeFormatter.ofPattern("MMMM d, yyyy", Locale.ENGLISH);
+    return "<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>"
+            + "<li><a href=\"#Season_1\">Season 1</a></li></ul></li></ul></div>"
+            + "<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>"
+            + "<h3><span class=\"mw-headline\" id=\"Season_1\">Season 1</span></h3>"
+            + "<table class=\"wikitable\"><tbody><tr><th>No.</th><th>Title</th><th>Original air date</th></tr>"
+            + "<tr class=\"vevent\"><th>1</th><td>\"Pilot\"</td><td>October 1, 2010</td></tr>"
+            + "<tr class=\"vevent\"><th>2</th><td>\"Next\"</td><td>"
+            + LocalDate.now().plusDays(nextEpisodeDays).format(format) + "</td></tr></tbody></table></body></html>";
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.SeriesTracker;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for writing the output progressively, the most urgent series first
+ * @author mithun.gonsalvez
+ */
+public class ProgressiveOutputTest {
+
+  /**
+   * Clear the base URL of the wiki
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+  }
+
+  /**
+   * The series expected to come first should be written while the others are still being fetched, and the output
+   * should end up in the order of the sort even when the expectation turns out to be wrong
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testProgressiveOutput() throws IOException {
+    Map<String, Integer> nextEpisodeDays = new ConcurrentHashMap<>();
+    nextEpisodeDays.put("Show_Soon", 5);
+    nextEpisodeDays.put("Show_Later", 40);
+    AtomicBoolean hold = new AtomicBoolean();
+    AtomicBoolean seenEarly = new AtomicBoolean();
+    Path dir = Files.createTempDirectory("series-progressive");
+    Path output = dir.resolve("output.txt");
+    try (StubServer server = new StubServer((path, headers) -> {
+      String page = path.substring(path.lastIndexOf('/') + 1);
+      if (!path.startsWith("/wiki/") || !nextEpisodeDays.containsKey(page)) {
+        return new StubServer.Reply(404, "Not found: " + path);
+      }
+      if (hold.get() && page.equals("Show_Later")) { // held back until the other series has been written
+        seenEarly.set(waitFor(output, "Show_Soon"));
+      }
+      return new StubServer.Reply(200, page(nextEpisodeDays.get(page)));
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path seriesList = Fixtures.write(dir.resolve("series.json"), "{ \"formats\":{ \"wiki:test\":{ \"episodes.link\":"
+              + "\"#Episodes\", \"table.row.class\":\"vevent\", \"type\":\"wiki\", \"toc.id\":\"toc\" } },"
+              + "\"hints\":{ \"wiki:auto\":{ \"table.col.title\":[\"title\"], \"table.col.air-date\":[\"air date\"] } },"
+              + "\"series\":[{ \"title\":\"Show_Later\", \"page\":\"Show_Later\", \"format\":\"wiki:test\" },"
+              + "{ \"title\":\"Show_Soon\", \"page\":\"Show_Soon\", \"format\":\"wiki:test\" }]}");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      SeriesTracker tracker = new SeriesTracker(seriesList, watchedList, output, dir.resolve("cache"), "text", false,
+              true, false);
+
+      tracker.process();
+      assertOrder(output, "Show_Soon", "Show_Later");
+
+      hold.set(true);
+      Files.delete(output);
+      tracker.process();
+      Assert.assertTrue(seenEarly.get());
+      assertOrder(output, "Show_Soon", "Show_Later");
+
+      // the held back series now comes first, after the other series has been written
+      seenEarly.set(false);
+      nextEpisodeDays.put("Show_Later", 1);
+      Files.delete(output);
+      tracker.process();
+      Assert.assertTrue(seenEarly.get());
+      assertOrder(output, "Show_Later", "Show_Soon");
+    }
+  }
+
+  private static boolean waitFor(Path output, String text) throws IOException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (System.currentTimeMillis() < deadline) {
+      if (Files.exists(output) && new String(Files.readAllBytes(output), StandardCharsets.UTF_8).contains(text)) {
+        return true;
+      }
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static void assertOrder(Path output, String first, String second) throws IOException {
+    String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+    Assert.assertTrue(text, text.indexOf(first) >= 0 && text.indexOf(first) < text.indexOf(second));
+  }
+
+  private static String page(int nextEpisodeDays) {
+    DateTimeFormatter format = DateTimeFormatter.ofPattern("MMMM d, yyyy", Locale.ENGLISH);
+    return "<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>"
+            + "<li><a href=\"#Season_1\">Season 1</a></li></ul></li></ul></div>"
+            + "<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>"
+            + "<h3><span class=\"mw-headline\" id=\"Season_1\">Season 1</span></h3>"
+            + "<table class=\"wikitable\"><tbody><tr><th>No.</th><th>Title</th><th>Original air date</th></tr>"
+            + "<tr class=\"vevent\"><th>1</th><td>\"Next\"</td><td>"
+            + LocalDate.now().plusDays(nextEpisodeDays).format(format) + "</td></tr></tbody></table></body></html>";
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.Series;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+import me.mikujo.series.wiki.WikiParser;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for caching pages pruned down to the table of contents, the headings and the episode tables
+ * @author mithun.gonsalvez
+ */
+public class PrunedCacheTest {
+
+  /**
+   * Clear the base URL of the wiki and the pruning
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+    System.clearProperty(Keyz.CACHE_PRUNE);
+  }
+
+  /**
+   * Episodes parsed out of the pruned page should be the same as those parsed out of the whole page, and the pruned
+   * page should be revalidated with the validators of the whole page
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSameEpisodesAsPage() throws IOException {
+    String prose = "<p>" + String.join("", Collections.nCopies(200, "Lots of prose. ")) + "</p>";
+    String page = "<!DOCTYPE html><html><head><title>Show</title><script>var config = {};</script>"
+            + "<style>.vevent { color: red; }</style></head><body><div id=\"content\">"
+            + "<table class=\"infobox\"><tr><th>Genre</th><td>Drama</td></tr></table>" + prose
+            + "<div id=\"toc\"><ul><li><a href=\"#Overview\">Overview</a></li>"
+            + "<li><a href=\"#Episodes\">Episodes</a><ul>"
+            + "<li><a href=\"#Season_1\">Season 1</a></li><li><a href=\"#Season_2\">Season 2</a></li>"
+            + "<li><a href=\"#Season_3\">Season 3</a></li></ul></li></ul></div>"
+            + "<h2><span class=\"mw-headline\" id=\"Overview\">Overview</span></h2>"
+            + "<table class=\"wikitable\"><tr><th>Season</th><th>Episodes</th></tr><tr><td>1</td><td>4</td></tr>"
+            + "</table>" + prose + Fixtures.episodes(3, 4, true)
+            + "<h2><span class=\"mw-headline\" id=\"References\">References</span></h2>" + prose
+            + "<table class=\"navbox\" role=\"presentation\"><tr><td>Other shows</td></tr></table>"
+            + "</div></body></html>";
+
+    AtomicInteger requests = new AtomicInteger();
+    AtomicInteger notModified = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (path.equals("/wiki/Show")) {
+        requests.incrementAndGet();
+        if ("\"page\"".equals(headers.get("if-none-match"))) {
+          notModified.incrementAndGet();
+          return new StubServer.Reply(304, "");
+        }
+        return new StubServer.Reply(200, page).header("ETag", "\"page\"");
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      try (PageCache cache = PageCache.open(Files.createTempDirectory("series-pruned"))) {
+        RawInfo rawInfo = Fixtures.rawInfo("Show", "Show", null);
+        CachedPage wholePage = WikiParser.fetch(rawInfo, cache, false);
+        Series expected = WikiParser.parse(rawInfo, wholePage, Collections.emptySet());
+
+        System.setProperty(Keyz.CACHE_PRUNE, "true");
+        AtomicReference<Document> downloaded = new AtomicReference<>();
+        CachedPage prunedPage = WikiParser.fetch(rawInfo, cache, false, 0,
+                in -> downloaded.set(WikiParser.read(rawInfo, in)));
+        Assert.assertEquals(2, requests.get());
+        Assert.assertTrue(Fixtures.read(prunedPage).length() * 4 < Fixtures.read(wholePage).length());
+        Fixtures.assertSame(expected, WikiParser.parse(rawInfo, prunedPage, Collections.emptySet()));
+        Fixtures.assertSame(expected, new Series(expected.url, expected.title,
+                WikiParser.parse(rawInfo, downloaded.get(), Collections.emptySet())));
+
+        CachedPage revalidated = WikiParser.fetch(rawInfo, cache, false);
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(1, notModified.get());
+        Assert.assertEquals(prunedPage.hash, revalidated.hash);
+        Assert.assertEquals(prunedPage.hash, WikiParser.peek(rawInfo, cache).hash);
+        Assert.assertEquals(3, expected.episodes.size());
+      }
+    }
+  }
+
+}
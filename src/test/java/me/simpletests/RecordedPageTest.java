@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+import me.mikujo.series.wiki.PageLayout;
+import me.mikujo.series.wiki.WikiParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that extract the episodes out of whole pages (under 'pages'), in every parse mode<br>
+ * The pages are not copies of articles of the wiki: they are written for made up series in the markup the older and
+ * newer skins serve (head scripts, template styles, references, navboxes, parser report comments, footers). A saved
+ * article can be added next to them, along with a test that names its table of contents
+ * @author mithun.gonsalvez
+ */
+public class RecordedPageTest {
+
+  /** Parse modes that do not read the page into a document */
+  private static final List<String> MODES = Arrays.asList(Keyz.PARSE_MODE_STREAM, Keyz.PARSE_MODE_SLICE);
+
+  /**
+   * Clear the base URL of the wiki and the parse mode
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+    System.clearProperty(Keyz.PARSE_MODE);
+  }
+
+  /**
+   * A list of episodes in the older skin, with an overview table, a two part episode sharing its air date, a ratings
+   * table with a 'vevent' row after the seasons and a season that has not aired yet
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testClassicList() throws IOException {
+    List<List<Episode>> seasons = assertSameEpisodes("List_of_Harbor_Lights_episodes", "toc");
+    Assert.assertEquals(Arrays.asList(12, 13, 10, 8), sizes(seasons));
+    Episode pilot = seasons.get(0).get(0);
+    Assert.assertEquals("\"Pilot\"", pilot.title);
+    Assert.assertEquals(LocalDate.of(2011, 6, 3), pilot.date);
+    Assert.assertNull(seasons.get(3).get(7).date);
+  }
+
+  /**
+   * A series article in the newer skin, with the table of contents in the sidebar and headings that are not spans
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testModernArticle() throws IOException {
+    List<List<Episode>> seasons = assertSameEpisodes("Tidewater_(TV_series)", "vector-toc");
+    Assert.assertEquals(Arrays.asList(10, 9), sizes(seasons));
+    Assert.assertEquals(LocalDate.of(2024, 1, 3), seasons.get(1).get(0).date);
+  }
+
+  /**
+   * A miniseries, whose episodes are not split into seasons
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSingleSeason() throws IOException {
+    List<List<Episode>> seasons = assertSameEpisodes("Undertow_(miniseries)", "toc");
+    Assert.assertEquals(Collections.singletonList(6), sizes(seasons));
+  }
+
+  /**
+   * Assert that the episodes extracted out of the page are the same in every parse mode, skipping seasons or not,
+   * and whether the seasons are extracted on a pool or not
+   * @param page Name of the page, as saved under 'pages'
+   * @param tocId Id of the table of contents of the page
+   * @return Episodes of all the seasons, out of the document of the page
+   * @throws IOException If something goes wrong
+   */
+  private static List<List<Episode>> assertSameEpisodes(String page, String tocId) throws IOException {
+    RawInfo rawInfo = Fixtures.rawInfo(page, page, tocId, null);
+    CachedPage cached = fetch(rawInfo, page);
+    List<List<Episode>> all = null;
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for (Set<Integer> seasonSkip : Arrays.asList(Collections.<Integer>emptySet(), Collections.singleton(1),
+              new HashSet<>(Arrays.asList(1, 2)))) {
+        List<List<Episode>> expected = WikiParser.parse(rawInfo, WikiParser.read(rawInfo, cached), seasonSkip);
+        Fixtures.assertSame(expected, WikiParser.parse(rawInfo, WikiParser.read(rawInfo, cached), seasonSkip,
+                new PageLayout(), pool));
+        for (String mode : MODES) {
+          System.setProperty(Keyz.PARSE_MODE, mode);
+          List<List<Episode>> actual = WikiParser.extract(rawInfo, cached, seasonSkip);
+          List<List<Episode>> pooled = WikiParser.extract(rawInfo, cached, seasonSkip, new PageLayout(), pool);
+          System.clearProperty(Keyz.PARSE_MODE);
+          Assert.assertNotNull(page + " " + mode, actual);
+          Fixtures.assertSame(expected, actual);
+          Fixtures.assertSame(expected, pooled);
+        }
+        all = all == null ? expected : all;
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return all;
+  }
+
+  private static CachedPage fetch(RawInfo rawInfo, String page) throws IOException {
+    byte[] contents = load(page + ".html");
+    try (StubServer server = new StubServer((path, headers) -> path.equals("/wiki/" + page)
+            ? new StubServer.Reply(200, contents) : new StubServer.Reply(404, "Not found: " + path))) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      PageCache cache = PageCache.open(Files.createTempDirectory("series-recorded"));
+      return WikiParser.fetch(rawInfo, cache, false);
+    }
+  }
+
+  private static byte[] load(String name) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = RecordedPageTest.class.getResourceAsStream("pages/" + name)) {
+      Assert.assertNotNull(name, in);
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<Integer> sizes(List<List<Episode>> seasons) {
+    Integer[] sizes = new Integer[seasons.size()];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = seasons.get(i).size();
+    }
+    return Arrays.asList(sizes);
+  }
+
+}
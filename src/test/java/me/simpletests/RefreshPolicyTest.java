@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RefreshPolicy;
+import me.mikujo.series.SeriesTracker;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the policy that decides how often the page of a series is refreshed
+ * @author mithun.gonsalvez
+ */
+public class RefreshPolicyTest {
+
+  /** Today, as far as the tests are concerned */
+  private static final LocalDate TODAY = LocalDate.of(2016, 1, 15);
+
+  /**
+   * Clear the settings
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+    System.clearProperty(Keyz.OUTPUT_COMPLETED);
+  }
+
+  /**
+   * The closer the next air date, the more often the page should be refreshed
+   */
+  @Test
+  public void testSchedule() {
+    Assert.assertEquals(0, maxAge(TODAY.plusDays(3)));
+    Assert.assertEquals(0, maxAge(TODAY.minusDays(10), TODAY.minusDays(5), null));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(1), maxAge(TODAY.minusDays(20), TODAY.plusDays(20)));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(1), maxAge(TODAY.minusDays(20), YearMonth.of(2016, 2)));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(3), maxAge(TODAY.plusDays(60)));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(7), maxAge(TODAY.plusDays(200), YearMonth.of(2016, 6)));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(7), maxAge(TODAY.minusDays(20), Year.of(2016), null));
+
+    // unknown episodes (nothing cached yet) are always refreshed
+    Assert.assertEquals(0, RefreshPolicy.getMaxAge(null, null, TODAY));
+  }
+
+  /**
+   * The setting of the series should take precedence over the schedule
+   */
+  @Test
+  public void testOverride() {
+    List<List<Episode>> episodes = episodes(TODAY);
+    Assert.assertEquals(Long.MAX_VALUE, RefreshPolicy.getMaxAge(RefreshPolicy.NEVER, episodes, TODAY));
+    Assert.assertEquals(0, RefreshPolicy.getMaxAge("Always", null, TODAY));
+    Assert.assertEquals(TimeUnit.HOURS.toMillis(12), RefreshPolicy.getMaxAge("12h", episodes, TODAY));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(3), RefreshPolicy.getMaxAge("3d", episodes, TODAY));
+    Assert.assertEquals(TimeUnit.DAYS.toMillis(14), RefreshPolicy.getMaxAge("2w", episodes, TODAY));
+    for (String invalid : new String[]{"", "d", "often", "3y"}) {
+      try {
+        RefreshPolicy.getMaxAge(invalid, episodes, TODAY);
+        Assert.fail("Accepted [" + invalid + "]");
+      } catch (IllegalArgumentException ex) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Completed series should be left out unless asked for, and then never be refreshed, while an invalid setting should
+   * fall back to the schedule instead of failing the run
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSeriesList() throws IOException {
+    List<String> requests = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (path.startsWith("/wiki/")) { // the revisions are looked up through the API beforehand
+        requests.add(path);
+      }
+      return new StubServer.Reply(200, "<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>"
+              + "<li><a href=\"#Season_1\">Season 1</a></li></ul></li></ul></div>" + Fixtures.episodes(1, 2, false)
+              + "</body></html>");
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-refresh");
+      Path seriesList = Fixtures.write(dir.resolve("series.json"), "{ \"formats\":{ \"wiki:test\":{ "
+              + "\"episodes.link\":\"#Episodes\", \"table.row.class\":\"vevent\", \"type\":\"wiki\", "
+              + "\"toc.id\":\"toc\" } }, \"hints\":{ \"wiki:auto\":{ \"table.col.title\":[\"title\"], "
+              + "\"table.col.air-date\":[\"air date\"] } }, \"series\":[{ \"title\":\"Show_A\", \"page\":\"Show_A\", "
+              + "\"format\":\"wiki:test\", \"refresh\":\"often\" }], \"completed-series\":[{ \"title\":\"Show_Done\", "
+              + "\"page\":\"Show_Done\", \"format\":\"wiki:test\" }]}");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      Path output = dir.resolve("output.txt");
+
+      process(seriesList, watchedList, output, dir);
+      Assert.assertEquals(Collections.singletonList("/wiki/Show_A"), requests);
+      String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+      Assert.assertTrue(text, text.contains("Show_A") && !text.contains("Show_Done"));
+
+      // the page of the other series is fresh as per its schedule
+      System.setProperty(Keyz.OUTPUT_COMPLETED, "true");
+      requests.clear();
+      process(seriesList, watchedList, output, dir);
+      Assert.assertEquals(Collections.singletonList("/wiki/Show_Done"), requests);
+      text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+      Assert.assertTrue(text, text.contains("Show_A") && text.contains("Show_Done"));
+
+      requests.clear();
+      process(seriesList, watchedList, output, dir);
+      Assert.assertEquals(Collections.emptyList(), requests);
+    }
+  }
+
+  private static void process(Path seriesList, Path watchedList, Path output, Path dir) throws IOException {
+    new SeriesTracker(seriesList, watchedList, output, dir.resolve("cache"), "text", false, false, false).process();
+  }
+
+  private static long maxAge(Temporal... dates) {
+    return RefreshPolicy.getMaxAge(null, episodes(dates), TODAY);
+  }
+
+  private static List<List<Episode>> episodes(Temporal... dates) {
+    Episode[] episodes = new Episode[dates.length];
+    for (int i = 0; i < dates.length; i++) {
+      episodes[i] = new Episode(1, i + 1, "Episode " + (i + 1), dates[i]);
+    }
+    return Collections.singletonList(Arrays.asList(episodes));
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.SeriesTracker;
+import me.mikujo.series.wiki.Keyz;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for revalidating the cached pages in batches, through the revisions of the pages
+ * @author mithun.gonsalvez
+ */
+public class RevisionTest {
+
+  /** Number of series, more than fit in a single revision query */
+  private static final int SERIES = 60;
+
+  /**
+   * Clear the base URL of the wiki
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+  }
+
+  /**
+   * Once the revisions of the pages are recorded, only the pages that have been edited should be fetched, and the
+   * revisions of all the pages should be looked up with a couple of requests
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testBatchedRevalidation() throws IOException {
+    Map<String, Long> revisions = new ConcurrentHashMap<>();
+    AtomicInteger pageRequests = new AtomicInteger();
+    AtomicInteger queryRequests = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (path.startsWith("/wiki/List_of_Show_")) {
+        pageRequests.incrementAndGet();
+        String page = path.substring("/wiki/".length());
+        return new StubServer.Reply(200, page(page, revisions.get(page)));
+      } else if (path.startsWith("/w/api.php?action=query&")) {
+        queryRequests.incrementAndGet();
+        return new StubServer.Reply(200, query(path, revisions));
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-revisions");
+      StringBuilder series = new StringBuilder();
+      for (int i = 0; i < SERIES; i++) {
+        revisions.put("List_of_Show_" + i, 100L + i);
+        series.append(i == 0 ? "" : ",").append("{ \"title\":\"Show ").append(i).append("\", \"page\":\"List_of_Show_")
+                .append(i).append("\", \"format\":\"wiki:test\" }");
+      }
+      Path seriesList = Fixtures.write(dir.resolve("series.json"), "{ \"formats\":{ \"wiki:test\":{ \"episodes.link\":"
+              + "\"#Episodes\", \"table.row.class\":\"vevent\", \"type\":\"wiki\", \"toc.id\":\"toc\" } },"
+              + "\"hints\":{ \"wiki:auto\":{ \"table.col.title\":[\"title\"], \"table.col.air-date\":[\"air date\"] } },"
+              + "\"series\":[" + series + "]}");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      Path output = dir.resolve("output.txt");
+
+      // the first run fetches every page and records the revisions looked up for them
+      run(seriesList, watchedList, output, dir);
+      Assert.assertEquals(SERIES, pageRequests.get());
+      Assert.assertEquals(2, queryRequests.get());
+
+      // nothing has been edited, so nothing is fetched
+      run(seriesList, watchedList, output, dir);
+      Assert.assertEquals(SERIES, pageRequests.get());
+      Assert.assertEquals(4, queryRequests.get());
+
+      // only the edited page is fetched
+      revisions.put("List_of_Show_7", 1000L);
+      run(seriesList, watchedList, output, dir);
+      Assert.assertEquals(SERIES + 1, pageRequests.get());
+      Assert.assertEquals(6, queryRequests.get());
+      String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+      Assert.assertTrue(text.contains("01 Oct 2010"));
+      Assert.assertTrue(text.contains("02 Oct 2010"));
+
+      // without the revisions, the pages are revalidated one by one
+      revisions.clear();
+      run(seriesList, watchedList, output, dir);
+      Assert.assertEquals(2 * SERIES + 1, pageRequests.get());
+    }
+  }
+
+  private static void run(Path seriesList, Path watchedList, Path output, Path dir) throws IOException {
+    new SeriesTracker(seriesList, watchedList, output, dir.resolve("cache"), "text", false, true, false).process();
+  }
+
+  /**
+   * Answer a revision query the way the wiki does, i.e. the titles are normalized (underscores to spaces) and listed
+   * as such
+   */
+  private static String query(String path, Map<String, Long> revisions) throws UnsupportedEncodingException {
+    String titles = path.substring(path.indexOf("&titles=") + "&titles=".length());
+    StringBuilder normalized = new StringBuilder();
+    StringBuilder pages = new StringBuilder();
+    for (String title : URLDecoder.decode(titles, StandardCharsets.UTF_8.name()).split("\\|")) {
+      String name = title.replace('_', ' ');
+      normalized.append(normalized.length() == 0 ? "" : ",").append("{\"from\":\"").append(title)
+              .append("\",\"to\":\"").append(name).append("\"}");
+      Long revision = revisions.get(title);
+      pages.append(pages.length() == 0 ? "" : ",").append("{\"title\":\"").append(name).append('"')
+              .append(revision == null ? ",\"missing\":true" : ",\"lastrevid\":" + revision).append('}');
+    }
+    return "{\"batchcomplete\":true,\"query\":{\"normalized\":[" + normalized + "],\"pages\":[" + pages + "]}}";
+  }
+
+  private static String page(String page, Long revision) {
+    return "<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>"
+            + "<li><a href=\"#Season_1\">Season 1</a></li></ul></li></ul></div>"
+            + "<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>"
+            + "<h3><span class=\"mw-headline\" id=\"Season_1\">Season 1</span></h3>"
+            + "<table class=\"wikitable\"><tbody><tr><th>No.</th><th>Title</th><th>Original air date</th></tr>"
+            + "<tr class=\"vevent\"><th>1</th><td>\"" + page + "\"</td>"
+            + "<td>October " + (revision != null && revision >= 1000 ? 2 : 1) + ", 2010</td></tr></tbody></table>"
+            + "</body></html>";
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.simpletests;
+
+import me.mikujo.series.Episode;
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.SeriesTracker;
+import me.mikujo.series.SharedPage;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.EpisodeCache;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+import me.mikujo.series.wiki.WikiParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for sharing the fetch and the parse of a page among the series that are parsed out of it
+ * @author mithun.gonsalvez
+ */
+public class SharedPageTest {
+
+  /**
+   * Clear the base URL of the wiki
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+  }
+
+  /**
+   * Series pointing to the same page, even if spelt differently, should fetch it only once per run
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testOneFetchPerPage() throws IOException {
+    AtomicInteger pageRequests = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (path.equals("/wiki/List_of_Show")) {
+        pageRequests.incrementAndGet();
+        return new StubServer.Reply(200, page(3)).header("ETag", "\"page\"");
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-shared");
+      Path seriesList = Fixtures.write(dir.resolve("series.json"), "{ \"formats\":{ \"wiki:test\":{ \"episodes.link\":"
+              + "\"#Episodes\", \"table.row.class\":\"vevent\", \"type\":\"wiki\", \"toc.id\":\"toc\" } },"
+              + "\"hints\":{ \"wiki:auto\":{ \"table.col.title\":[\"title\"], \"table.col.air-date\":[\"air date\"] } },"
+              + "\"series\":["
+              + "{ \"title\":\"Show\", \"page\":\"List_of_Show\", \"format\":\"wiki:test\" },"
+              + "{ \"title\":\"Show Again\", \"page\":\"List of Show\", \"format\":\"wiki:test\" },"
+              + "{ \"title\":\"Show Later\", \"page\":\"List_of_Show\", \"format\":\"wiki:test\", \"season.skip\":\"1\" }"
+              + "]}");
+      Path watchedList = Fixtures.write(dir.resolve("watched.json"), "{ \"watched\":[] }");
+      Path output = dir.resolve("output.txt");
+
+      for (int run = 1; run <= 2; run++) {
+        new SeriesTracker(seriesList, watchedList, output, dir.resolve("cache"), "text", false, true, false)
+                .process();
+        Assert.assertEquals(run, pageRequests.get());
+        String text = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+        Assert.assertTrue(text.contains("Show Again"));
+        Assert.assertTrue(text.contains("Show Later"));
+      }
+    }
+  }
+
+  /**
+   * Series spelling the name of the page differently should use the same cached copy of it
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testOneCachedCopyPerPage() throws IOException {
+    List<String> requests = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer((path, headers) -> {
+      requests.add(path);
+      return new StubServer.Reply(200, page(2)).header("ETag", "\"page\"");
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-shared");
+      try (PageCache cache = PageCache.open(dir.resolve("wiki"))) {
+        RawInfo spaced = Fixtures.rawInfo("Show", "List of Show", null);
+        RawInfo underscored = Fixtures.rawInfo("Show Again", "List_of_Show", null);
+        CachedPage page = WikiParser.fetch(spaced, cache, false);
+        Assert.assertEquals(Collections.singletonList("/wiki/List_of_Show"), requests);
+
+        Assert.assertEquals(page.hash, WikiParser.peek(underscored, cache).hash);
+        Assert.assertTrue(WikiParser.getFetchTime(underscored, cache) > 0);
+        Assert.assertEquals(page.hash, WikiParser.fetch(underscored, cache, false, Long.MAX_VALUE).hash);
+        Assert.assertEquals(1, requests.size());
+      }
+    }
+  }
+
+  /**
+   * The document should be read only once for all the series, and series with the same settings should share the
+   * episodes
+   * @throws Exception If something goes wrong
+   */
+  @Test
+  public void testOneReadPerPage() throws Exception {
+    try (StubServer server = new StubServer((path, headers) -> new StubServer.Reply(200, page(4))
+            .header("ETag", "\"page\""))) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      Path dir = Files.createTempDirectory("series-shared");
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try (PageCache cache = PageCache.open(dir.resolve("wiki"))) {
+        EpisodeCache episodeCache = EpisodeCache.open(dir.resolve("parsed"));
+        RawInfo rawInfo = Fixtures.rawInfo("Show", "List_of_Show", null);
+        CachedPage page = WikiParser.fetch(rawInfo, cache, false);
+
+        List<Set<Integer>> seasonSkips = Arrays.asList(Collections.emptySet(), Collections.singleton(1),
+                Collections.emptySet(), Collections.singleton(2));
+        SharedPage shared = new SharedPage();
+        seasonSkips.forEach(seasonSkip -> shared.add(rawInfo, seasonSkip));
+        List<Future<List<List<Episode>>>> parses = new ArrayList<>();
+        for (Set<Integer> seasonSkip : seasonSkips) {
+          parses.add(executor.submit(() -> shared.parse(rawInfo, page, seasonSkip, episodeCache)));
+        }
+
+        Assert.assertSame(parses.get(0).get(), parses.get(2).get());
+        Assert.assertEquals(4, parses.get(0).get().size());
+        Assert.assertEquals(3, parses.get(1).get().size());
+        Assert.assertEquals(3, parses.get(3).get().size());
+        Assert.assertEquals(1, shared.getReads());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private static String page(int seasons) {
+    StringBuilder toc = new StringBuilder("<div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>");
+    StringBuilder html = new StringBuilder("<h2><span class=\"mw-headline\" id=\"Episodes\">Episodes</span></h2>");
+    for (int season = 1; season <= seasons; season++) {
+      toc.append("<li><a href=\"#Season_").append(season).append("\">Season ").append(season).append("</a></li>");
+      html.append("<h3><span class=\"mw-headline\" id=\"Season_").append(season).append("\">Season ").append(season)
+              .append("</span></h3><table class=\"wikitable\"><tbody><tr><th>No.</th><th>Title</th>")
+              .append("<th>Original air date</th></tr>");
+      for (int episode = 1; episode <= 3; episode++) {
+        html.append("<tr class=\"vevent\"><th>").append(episode).append("</th><td>\"Episode ").append(episode)
+                .append("\"</td><td>October ").append(episode).append(", 201").append(season).append("</td></tr>");
+      }
+      html.append("</tbody></table>");
+    }
+    return "<html><body>" + toc + "</ul></li></ul></div>" + html + "</body></html>";
+  }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal HTTP/1.1 server with persistent connections, used to stand in for wikipedia in the tests<br>
+ * Unlike the server shipped with the JDK, it keeps connections open after responses without a body (like 304)
+ * @author mithun.gonsalvez
+ */
+public class StubServer implements Closeable {
+
+  /**
+   * Handles a single request
+   */
+  public interface Handler {
+
+    /**
+     * Handle the request
+     * @param path Path (including the query) of the request
+     * @param headers Request headers, the names are in lower case
+     * @return Reply to send
+     * @throws IOException If the request cannot be handled
+     */
+    Reply handle(String path, Map<String, String> headers) throws IOException;
+
+  }
+
+  /**
+   * Reply to a request
+   */
+  public static class Reply {
+
+    /** Status code */
+    public final int status;
+
+    /** Response headers */
+    public final Map<String, String> headers = new LinkedHashMap<>();
+
+    /** Body */
+    public final byte[] body;
+
+    /**
+     * Constructor
+     * @param status Status code
+     * @param body Body, can be null
+     */
+    public Reply(int status, byte[] body) {
+      this.status = status;
+      this.body = body == null ? new byte[0] : body;
+    }
+
+    /**
+     * Constructor
+     * @param status Status code
+     * @param body Body
+     */
+    public Reply(int status, String body) {
+      this(status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add a header
+     * @param name Name of the header
+     * @param value Value of the header
+     * @return this instance
+     */
+    public Reply header(String name, String value) {
+      this.headers.put(name, value);
+      return this;
+    }
+
+  }
+
+  /** Server socket */
+  private final ServerSocket serverSocket;
+
+  /** Threads serving the connections */
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  /** Handler for the requests */
+  private final Handler handler;
+
+  /** Number of connections accepted */
+  private final AtomicInteger connections = new AtomicInteger();
+
+  /** Number of requests served */
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /**
+   * Starts the server on a free port of the loop back interface
+   * @param handler Handler for the requests
+   * @throws IOException If the server cannot be started
+   */
+  public StubServer(Handler handler) throws IOException {
+    this.handler = handler;
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    this.executor.execute(this::acceptLoop);
+  }
+
+  /**
+   * Returns the base URL of the server
+   * @return Base URL, ends with a '/'
+   */
+  public String getBaseUrl() {
+    return "http://localhost:" + this.serverSocket.getLocalPort() + "/";
+  }
+
+  /**
+   * Returns the number of connections accepted so far
+   * @return Number of connections
+   */
+  public int getConnectionCount() {
+    return this.connections.get();
+  }
+
+  /**
+   * Returns the number of requests served so far
+   * @return Number of requests
+   */
+  public int getRequestCount() {
+    return this.requests.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.serverSocket.close();
+    this.executor.shutdownNow();
+  }
+
+  private void acceptLoop() {
+    try {
+      while (true) {
+        Socket socket = this.serverSocket.accept();
+        this.connections.incrementAndGet();
+        this.executor.execute(() -> serve(socket));
+      }
+    } catch (IOException ex) {
+      // closed
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket s = socket) {
+      InputStream in = new BufferedInputStream(s.getInputStream());
+      OutputStream out = s.getOutputStream();
+      String requestLine;
+      while ((requestLine = readLine(in)) != null && !requestLine.isEmpty()) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+          int idx = line.indexOf(':');
+          headers.put(line.substring(0, idx).trim().toLowerCase(Locale.ROOT), line.substring(idx + 1).trim());
+        }
+        this.requests.incrementAndGet();
+        Reply reply = this.handler.handle(requestLine.split(" ")[1], headers);
+
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(reply.status).append(" Stub\r\n");
+        reply.headers.forEach((k, v) -> head.append(k).append(": ").append(v).append("\r\n"));
+        if (reply.status != 304 && reply.status != 204) {
+          head.append("Content-Length: ").append(reply.body.length).append("\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.write(reply.body);
+        out.flush();
+      }
+    } catch (SocketException ex) {
+      // client went away
+    } catch (IOException ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int c;
+    while ((c = in.read()) != -1 && c != '\n') {
+      if (c != '\r') {
+        line.write(c);
+      }
+    }
+    return c == -1 && line.size() == 0 ? null : new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.net.HostThrottle;
+import me.mikujo.series.net.RetryPolicy;
+import me.mikujo.series.net.WebClient;
+import me.mikujo.series.net.WebResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the throttling and the retries of the requests, against a local stub server
+ * @author mithun.gonsalvez
+ */
+public class ThrottleTest {
+
+  /**
+   * A 429 should be retried after the time asked for by the host, and should halve the concurrency limit
+   * @throws IOException If the request fails
+   */
+  @Test
+  public void testRetryAfter() throws IOException {
+    AtomicInteger count = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> count.incrementAndGet() == 1
+            ? new StubServer.Reply(429, "slow down").header("Retry-After", "1")
+            : new StubServer.Reply(200, "ok"))) {
+      WebClient client = new WebClient(1000, 1000, new RetryPolicy(3, 10, 5000),
+              () -> new HostThrottle(0, 1, 4, 16, 2000));
+      long start = System.nanoTime();
+      try (WebResponse response = client.get(server.getBaseUrl() + "wiki/Series", Collections.emptyMap())) {
+        Assert.assertEquals(200, response.getStatus());
+      }
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+      Assert.assertEquals(2, server.getRequestCount());
+      Assert.assertEquals(2, client.getThrottle("localhost").getLimit());
+    }
+  }
+
+  /**
+   * Once the retries are exhausted, the last response should be returned
+   * @throws IOException If the request fails
+   */
+  @Test
+  public void testRetriesExhausted() throws IOException {
+    try (StubServer server = new StubServer((path, headers) -> new StubServer.Reply(503, "unavailable"))) {
+      WebClient client = new WebClient(1000, 1000, new RetryPolicy(2, 10, 100),
+              () -> new HostThrottle(0, 1, 4, 16, 2000));
+      try (WebResponse response = client.get(server.getBaseUrl() + "wiki/Series", Collections.emptyMap())) {
+        Assert.assertEquals(503, response.getStatus());
+      }
+      Assert.assertEquals(3, server.getRequestCount());
+    }
+  }
+
+  /**
+   * The number of requests in flight to a host should never exceed the concurrency limit
+   * @throws Exception If a request fails
+   */
+  @Test
+  public void testConcurrencyLimit() throws Exception {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      inFlight.decrementAndGet();
+      return new StubServer.Reply(200, "ok");
+    })) {
+      WebClient client = new WebClient(1000, 1000, new RetryPolicy(0, 10, 100),
+              () -> new HostThrottle(0, 1, 2, 2, 2000));
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        String url = server.getBaseUrl() + "wiki/Series_" + i;
+        results.add(executor.submit(() -> {
+          try (WebResponse response = client.get(url, Collections.emptyMap())) {
+            return response.getStatus();
+          }
+        }));
+      }
+      for (Future<Integer> result : results) {
+        Assert.assertEquals(200, (int) result.get());
+      }
+      executor.shutdown();
+      Assert.assertEquals(2, maxInFlight.get());
+    }
+  }
+
+  /**
+   * The concurrency limit should grow additively while the host answers quickly, and the token bucket should pace
+   * the requests
+   * @throws IOException If the thread is interrupted
+   */
+  @Test
+  public void testAdditiveIncreaseAndRate() throws IOException {
+    HostThrottle throttle = new HostThrottle(50, 1, 2, 8, 2000);
+    long start = System.nanoTime();
+    for (int i = 0; i < 50; i++) {
+      throttle.acquire();
+      throttle.release();
+      throttle.onResponse(200, 10);
+    }
+    // 50 requests at 50 per second, with a burst of a single request
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 900);
+    Assert.assertEquals(8, throttle.getLimit());
+
+    throttle.onResponse(200, 5000);
+    Assert.assertEquals(4, throttle.getLimit());
+    // the same congestion event is accounted for only once
+    throttle.onFailure();
+    Assert.assertEquals(4, throttle.getLimit());
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests that the pages of many series are fetched over a pooled connection
+ * @author mithun.gonsalvez
+ */
+public class WebClientTest {
+
+  /** Number of series fetched in each test */
+  private static final int SERIES_COUNT = 50;
+
+  /** Local server standing in for wikipedia */
+  private StubServer server;
+
+  /** Page cache */
+  private PageCache cache;
+
+  /**
+   * Start the local server
+   * @throws IOException If the server cannot be started
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.cache = PageCache.open(Files.createTempDirectory("series-cache"));
+    this.server = new StubServer((path, headers) -> {
+      if (headers.containsKey("if-modified-since")) {
+        return new StubServer.Reply(304, (byte[]) null);
+      }
+      return new StubServer.Reply(200, "<html><body>" + path + "</body></html>")
+              .header("Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT");
+    });
+  }
+
+  /**
+   * Stop the local server
+   * @throws IOException If the server cannot be stopped
+   */
+  @After
+  public void tearDown() throws IOException {
+    this.server.close();
+  }
+
+  /**
+   * Fetching many series one after the other should reuse a single connection, for both full downloads and
+   * conditional requests answered with 304
+   * @throws IOException If a fetch fails
+   */
+  @Test
+  public void testConnectionReuse() throws IOException {
+    String prefix = this.server.getBaseUrl() + "wiki/";
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < SERIES_COUNT; i++) {
+        CachedPage page = this.cache.fetch("Series " + i, prefix + "Series_" + i, false);
+        Assert.assertTrue(Fixtures.read(page).contains("/wiki/Series_" + i));
+      }
+    }
+
+    Assert.assertEquals(2 * SERIES_COUNT, this.server.getRequestCount());
+    Assert.assertEquals(1, this.server.getConnectionCount());
+  }
+
+  /**
+   * A page that only provides an ETag should be revalidated with it, and a gzip transfer should be decoded
+   * @throws IOException If a fetch fails
+   */
+  @Test
+  public void testETagAndCompressedTransfer() throws IOException {
+    String page = "<html><body>Episodes</body></html>";
+    AtomicInteger notModified = new AtomicInteger();
+    try (StubServer eTagServer = new StubServer((path, headers) -> {
+      if ("\"v1\"".equals(headers.get("if-none-match"))) {
+        notModified.incrementAndGet();
+        return new StubServer.Reply(304, (byte[]) null).header("ETag", "\"v1\"");
+      }
+      Assert.assertEquals("gzip", headers.get("accept-encoding"));
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out = new GZIPOutputStream(compressed)) {
+        out.write(page.getBytes(StandardCharsets.UTF_8));
+      }
+      return new StubServer.Reply(200, compressed.toByteArray()).header("Content-Encoding", "gzip")
+              .header("ETag", "\"v1\"");
+    })) {
+      String url = eTagServer.getBaseUrl() + "wiki/Series";
+      for (int pass = 0; pass < 2; pass++) {
+        Assert.assertEquals(page, Fixtures.read(this.cache.fetch("Series", url, false)));
+      }
+      Assert.assertEquals(2, eTagServer.getRequestCount());
+      Assert.assertEquals(1, notModified.get());
+      Assert.assertEquals(1, eTagServer.getConnectionCount());
+    }
+  }
+
+}
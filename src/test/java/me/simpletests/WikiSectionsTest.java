@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.simpletests;
+
+import me.mikujo.series.RawInfo;
+import me.mikujo.series.Series;
+import me.mikujo.series.cache.CachedPage;
+import me.mikujo.series.cache.PageCache;
+import me.mikujo.series.wiki.Keyz;
+import me.mikujo.series.wiki.WikiParser;
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for fetching only the episode sections of a page, through the parse API of the wiki
+ * @author mithun.gonsalvez
+ */
+public class WikiSectionsTest {
+
+  /**
+   * Clear the base URL of the wiki
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(Keyz.WIKI_URL);
+  }
+
+  /**
+   * Episodes parsed out of the sections should be the same as those parsed out of the whole page, and the sections of
+   * a revision should be fetched only once
+   * @throws IOException If something goes wrong
+   */
+  @Test
+  public void testSameEpisodesAsPage() throws IOException {
+    String episodes = Fixtures.episodes(3, 4, false);
+    String page = "<html><body><div id=\"toc\"><ul><li><a href=\"#Episodes\">Episodes</a><ul>"
+            + "<li><a href=\"#Season_1\">Season 1</a></li><li><a href=\"#Season_2\">Season 2</a></li>"
+            + "<li><a href=\"#Season_3\">Season 3</a></li></ul></li></ul></div>"
+            + "<h2><span class=\"mw-headline\" id=\"Overview\">Overview</span></h2><p>" + String.join("", Collections
+            .nCopies(200, "Lots of prose. ")) + "</p>" + episodes
+            + "<h2><span class=\"mw-headline\" id=\"References\">References</span></h2></body></html>";
+    String sections = "{\"parse\":{\"title\":\"Show\",\"pageid\":7,\"revid\":42,\"sections\":["
+            + "{\"toclevel\":1,\"level\":\"2\",\"line\":\"Overview\",\"index\":\"1\",\"anchor\":\"Overview\"},"
+            + "{\"toclevel\":1,\"level\":\"2\",\"line\":\"Episodes\",\"index\":\"2\",\"anchor\":\"Episodes\"},"
+            + "{\"toclevel\":2,\"level\":\"3\",\"line\":\"Season 1\",\"index\":\"3\",\"anchor\":\"Season_1\"}]}}";
+    String text = "{\"parse\":{\"title\":\"Show\",\"pageid\":7,\"revid\":42,\"text\":\""
+            + JSONValue.escape("<div class=\"mw-parser-output\">" + episodes + "</div>") + "\"}}";
+
+    AtomicInteger sectionRequests = new AtomicInteger();
+    AtomicInteger textRequests = new AtomicInteger();
+    try (StubServer server = new StubServer((path, headers) -> {
+      if (path.equals("/wiki/Show")) {
+        return new StubServer.Reply(200, page).header("ETag", "\"page\"");
+      } else if (path.startsWith("/w/api.php?") && path.contains("&prop=sections%7Crevid&")
+              && path.endsWith("&page=Show")) {
+        sectionRequests.incrementAndGet();
+        return new StubServer.Reply(200, sections);
+      } else if (path.startsWith("/w/api.php?") && path.contains("&oldid=42&section=2")) {
+        textRequests.incrementAndGet();
+        return new StubServer.Reply(200, text);
+      }
+      return new StubServer.Reply(404, "Not found: " + path);
+    })) {
+      System.setProperty(Keyz.WIKI_URL, server.getBaseUrl());
+      try (PageCache cache = PageCache.open(Files.createTempDirectory("series-sections"))) {
+        RawInfo pageInfo = Fixtures.rawInfo("Show", "Show", null);
+        CachedPage wholePage = WikiParser.fetch(pageInfo, cache, false);
+        Series expected = WikiParser.parse(pageInfo, wholePage, Collections.singleton(2));
+
+        RawInfo sectionsInfo = Fixtures.rawInfo("Show", "Show", Keyz.FETCH_MODE_SECTIONS);
+        for (int pass = 0; pass < 2; pass++) {
+          CachedPage sectionsPage = WikiParser.fetch(sectionsInfo, cache, false);
+          Assert.assertTrue(Files.size(sectionsPage.file) < Files.size(wholePage.file));
+          Series actual = WikiParser.parse(sectionsInfo, sectionsPage, Collections.singleton(2));
+          Fixtures.assertSame(expected, actual);
+        }
+        Assert.assertEquals(2, expected.episodes.size());
+        Assert.assertEquals(2, sectionRequests.get());
+        Assert.assertEquals(1, textRequests.get());
+      }
+    }
+  }
+
+}